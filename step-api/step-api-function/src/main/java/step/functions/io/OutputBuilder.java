@@ -24,16 +24,29 @@ import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
 
 import javax.json.*;
 import javax.json.spi.JsonProvider;
 
+import step.core.metrics.BucketLayout;
+import step.core.metrics.CounterFamily;
 import step.core.metrics.CounterMetric;
+import step.core.metrics.DoubleGaugeMetric;
+import step.core.metrics.DoubleHistogramMetric;
 import step.core.metrics.GaugeMetric;
+import step.core.metrics.HistogramFamily;
 import step.core.metrics.HistogramMetric;
 import step.core.metrics.Metric;
+import step.core.metrics.MetricFamilies;
 import step.core.metrics.MetricSample;
 import step.core.metrics.MetricSamplesCollector;
+import step.core.metrics.ObservableDoubleGaugeMetric;
+import step.core.metrics.ObservableGaugeMetric;
+import step.core.metrics.SummaryMetric;
+import step.core.metrics.TimerMetric;
 import step.core.reports.Error;
 import step.core.reports.ErrorType;
 import step.core.reports.Measure;
@@ -55,6 +68,7 @@ public class OutputBuilder {
     private final MeasurementsBuilder measureHelper;
 
     private final MetricSamplesCollector metricSamplesCollector;
+    private final MetricFamilies metricFamilies = new MetricFamilies();
 
     private Error error;
 
@@ -441,6 +455,170 @@ public class OutputBuilder {
         return metric;
     }
 
+    /**
+     * Creates an observable gauge, registers it for inclusion in the output, and returns it.
+     * The supplier is polled at every flush interval until the output is built.
+     *
+     * @param name          the metric name
+     * @param labels        key-value labels attached to this metric
+     * @param valueSupplier called once per flush interval to obtain the current value
+     * @return the new observable gauge
+     */
+    public ObservableGaugeMetric newObservableGauge(String name, Map<String, String> labels, LongSupplier valueSupplier) {
+        ObservableGaugeMetric metric = new ObservableGaugeMetric(name, labels, valueSupplier);
+        addMetric(metric);
+        return metric;
+    }
+
+    /**
+     * Creates an observable gauge, registers it for inclusion in the output, and returns it.
+     * The supplier is polled at every flush interval until the output is built.
+     *
+     * @param name          the metric name
+     * @param labels        key-value labels attached to this metric
+     * @param valueSupplier called once per flush interval to obtain the current value
+     * @return the new observable gauge
+     */
+    public ObservableDoubleGaugeMetric newObservableGauge(String name, Map<String, String> labels, DoubleSupplier valueSupplier) {
+        ObservableDoubleGaugeMetric metric = new ObservableDoubleGaugeMetric(name, labels, valueSupplier);
+        addMetric(metric);
+        return metric;
+    }
+
+    /**
+     * Creates a floating-point gauge metric with labels, registers it for inclusion in the output, and returns it.
+     *
+     * @param name   the metric name
+     * @param labels key-value labels attached to this metric
+     * @return the new gauge metric
+     */
+    public DoubleGaugeMetric newDoubleGauge(String name, Map<String, String> labels) {
+        DoubleGaugeMetric metric = new DoubleGaugeMetric(name, labels);
+        addMetric(metric);
+        return metric;
+    }
+
+    /**
+     * Creates a floating-point histogram metric with labels, registers it for inclusion in the output, and returns it.
+     *
+     * @param name   the metric name
+     * @param labels key-value labels attached to this metric
+     * @return the new histogram metric
+     */
+    public DoubleHistogramMetric newDoubleHistogram(String name, Map<String, String> labels) {
+        DoubleHistogramMetric metric = new DoubleHistogramMetric(name, labels);
+        addMetric(metric);
+        return metric;
+    }
+
+    /**
+     * Creates a summary metric with labels, registers it for inclusion in the output, and returns it.
+     * Summaries track quantiles with a sketch that can be merged accurately across agents.
+     *
+     * @param name   the metric name
+     * @param labels key-value labels attached to this metric
+     * @return the new summary metric
+     */
+    public SummaryMetric newSummary(String name, Map<String, String> labels) {
+        SummaryMetric metric = new SummaryMetric(name, labels);
+        addMetric(metric);
+        return metric;
+    }
+
+    /**
+     * Creates a timer metric, registers it for inclusion in the output, and returns it.
+     *
+     * @param name the metric name
+     * @param unit the unit in which the durations are recorded
+     * @return the new timer metric
+     */
+    public TimerMetric newTimer(String name, TimeUnit unit) {
+        TimerMetric metric = new TimerMetric(name, unit);
+        addMetric(metric);
+        return metric;
+    }
+
+    /**
+     * Creates a timer metric with labels, registers it for inclusion in the output, and returns it.
+     *
+     * @param name   the metric name
+     * @param labels key-value labels attached to this metric
+     * @param unit   the unit in which the durations are recorded
+     * @return the new timer metric
+     */
+    public TimerMetric newTimer(String name, Map<String, String> labels, TimeUnit unit) {
+        TimerMetric metric = new TimerMetric(name, labels, unit);
+        addMetric(metric);
+        return metric;
+    }
+
+    /**
+     * Returns the counter family with the given name, creating it on first use. Each child returned by
+     * {@link CounterFamily#withLabels(String...)} is included in the output.
+     *
+     * @param name       the name of the metric
+     * @param labelNames the ordered names of the labels identifying each counter of the family
+     * @return the counter family, always the same instance for the same name
+     */
+    public CounterFamily newCounterFamily(String name, String... labelNames) {
+        List<String> names = List.of(labelNames);
+        return metricFamilies.getOrCreate(name, CounterFamily.class, names,
+            () -> new CounterFamily(name, names, this::addMetric));
+    }
+
+    /**
+     * Returns the histogram family with the given name, creating it with the default bucket layout on first use.
+     * Each child returned by {@link HistogramFamily#withLabels(String...)} is included in the output.
+     *
+     * @param name       the name of the metric
+     * @param labelNames the ordered names of the labels identifying each histogram of the family
+     * @return the histogram family, always the same instance for the same name
+     */
+    public HistogramFamily newHistogramFamily(String name, String... labelNames) {
+        return newHistogramFamily(name, null, labelNames);
+    }
+
+    /**
+     * Returns the histogram family with the given name, creating it on first use.
+     *
+     * @param name         the name of the metric
+     * @param bucketLayout the bucket layout of the histograms; {@code null} for the default one
+     * @param labelNames   the ordered names of the labels identifying each histogram of the family
+     * @return the histogram family, always the same instance for the same name
+     */
+    public HistogramFamily newHistogramFamily(String name, BucketLayout bucketLayout, String... labelNames) {
+        List<String> names = List.of(labelNames);
+        return metricFamilies.getOrCreate(name, HistogramFamily.class, names,
+            () -> new HistogramFamily(name, names, bucketLayout, this::addMetric));
+    }
+
+    /**
+     * Limits the number of distinct metric series (name and labels) included in the output. The samples of
+     * further series are reported in an overflow series, see {@link MetricSamplesCollector#withMaxSeries(int)}.
+     * Applies to the metrics added after this call.
+     *
+     * @param maxSeries the maximum number of distinct series; must be positive
+     * @return this instance
+     */
+    public OutputBuilder setMaxMetricSeries(int maxSeries) {
+        metricSamplesCollector.withMaxSeries(maxSeries);
+        return this;
+    }
+
+    /**
+     * Merges the metric samples of the same series (name, labels and type) included in the output, so that
+     * rate-limited intermediate samples and samples merged from other outputs don't each become a separate entry.
+     * See {@link MetricSamplesCollector#withCoalescing(long)}.
+     *
+     * @param windowMs the duration of the windows within which samples are merged, e.g. {@link Long#MAX_VALUE}
+     *                 for a single sample per series; {@code 0} disables the coalescing
+     * @return this instance
+     */
+    public OutputBuilder setMetricCoalescingWindow(long windowMs) {
+        metricSamplesCollector.withCoalescing(windowMs);
+        return this;
+    }
+
     /**
      * Registers a metric for inclusion in the output. A {@link MetricSample} is produced
      * on every observation ({@code increment()}, {@code observe()}) and collected until
@@ -485,6 +663,8 @@ public class OutputBuilder {
         }
         message.setPayload(payload);
         message.setMeasures(measureHelper.getMeasures());
+        // observable gauges are polled by scheduled flushes, which end with the output
+        metricSamplesCollector.stopScheduledFlush();
         List<MetricSample> samples = metricSamplesCollector.getSamples();
         if (!samples.isEmpty()) {
             message.setMetrics(samples);
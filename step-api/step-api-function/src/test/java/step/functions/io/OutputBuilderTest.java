@@ -203,6 +203,27 @@ public class OutputBuilderTest {
         Assert.assertEquals("prod", s.getLabels().get("env"));
     }
 
+    @Test
+    public void newCounterFamily_oneSamplePerLabelSet() {
+        OutputBuilder b = new OutputBuilder();
+        b.newCounterFamily("req", "status").withLabels("200").increment();
+        b.newCounterFamily("req", "status").withLabels("200").increment();
+        b.newCounterFamily("req", "status").withLabels("500").increment();
+        List<MetricSample> metrics = b.build().getMetrics();
+        Assert.assertEquals(2, metrics.size());
+        Assert.assertEquals(3, metrics.stream().mapToLong(MetricSample::getSum).sum());
+    }
+
+    @Test
+    public void newObservableGauge_polledValueAppearsInOutput() {
+        OutputBuilder b = new OutputBuilder();
+        b.newObservableGauge("pool", Map.of("name", "db"), () -> 42);
+        MetricSample s = b.build().getMetrics().get(0);
+        Assert.assertEquals("pool", s.getName());
+        Assert.assertEquals(InstrumentType.GAUGE, s.getType());
+        Assert.assertEquals(42, s.getLast());
+    }
+
     @Test
     public void newGauge_observationsAppearInOutput() {
         OutputBuilder b = new OutputBuilder();
@@ -323,6 +344,41 @@ public class OutputBuilderTest {
         Assert.assertEquals(5, metrics.get(0).getSum());
     }
 
+    @Test
+    public void setMetricCoalescingWindow_mergesSamplesOfTheSameSeries() {
+        OutputBuilder source = new OutputBuilder();
+        source.newHistogram("h").observe(10);
+        Output<JsonObject> sourceOutput = source.build();
+
+        OutputBuilder target = new OutputBuilder().setMetricCoalescingWindow(Long.MAX_VALUE);
+        target.newHistogram("h").observe(30);
+        target.mergeOutput(sourceOutput);
+
+        List<MetricSample> metrics = target.build().getMetrics();
+        Assert.assertEquals(1, metrics.size());
+        Assert.assertEquals(2, metrics.get(0).getCount());
+        Assert.assertEquals(10, metrics.get(0).getMin());
+        Assert.assertEquals(30, metrics.get(0).getMax());
+    }
+
+    @Test
+    public void setMetricCoalescingWindow_rebasesCountersOfChildAndParent() {
+        OutputBuilder source = new OutputBuilder();
+        source.newCounter("c").increment(5);
+        Output<JsonObject> sourceOutput = source.build();
+
+        OutputBuilder target = new OutputBuilder().setMetricCoalescingWindow(Long.MAX_VALUE);
+        target.newCounter("c").increment(3);
+        target.mergeOutput(sourceOutput);
+
+        List<MetricSample> metrics = target.build().getMetrics();
+        Assert.assertEquals(1, metrics.size());
+        Assert.assertEquals(8, metrics.get(0).getSum());
+        Assert.assertEquals(0, metrics.get(0).getMin());
+        Assert.assertEquals(8, metrics.get(0).getMax());
+        Assert.assertEquals(8, metrics.get(0).getLast());
+    }
+
     @Test
     public void mergeOutput_mergesError() {
         OutputBuilder source = new OutputBuilder();
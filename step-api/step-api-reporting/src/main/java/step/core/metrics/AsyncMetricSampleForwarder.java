@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Asynchronous, batching stage between a {@link MetricSamplesCollector} and the consumer delivering
+ * its samples (e.g. over the network).
+ * <p>
+ * Used as the collector's forward consumer, it only enqueues each sample into a bounded lock-free queue
+ * and returns, so a slow destination doesn't add latency to the keyword thread that happened to trigger
+ * a flush. A dedicated daemon thread delivers the queued samples to the batch consumer, as soon as
+ * {@code maxBatchSize} samples are pending or the oldest pending sample is {@code maxBatchAgeMs} old.
+ * <p>
+ * When the queue is full, the configured {@link OverflowPolicy} applies. The queue depth and the number
+ * of dropped and aggregated samples are exposed for monitoring.
+ * <p>
+ * {@link #close()} delivers all pending samples and stops the delivery thread; it must be called after
+ * the collector has been closed so that the final flush is delivered too.
+ */
+public final class AsyncMetricSampleForwarder implements Consumer<MetricSample>, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncMetricSampleForwarder.class);
+
+    public static final int DEFAULT_CAPACITY = 10_000;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 500;
+    public static final long DEFAULT_MAX_BATCH_AGE_MS = 1000;
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long CLOSE_TIMEOUT_MS = 10_000;
+
+    /**
+     * Behaviour of {@link #accept(MetricSample)} when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait until the delivery thread has made room in the queue. No data is lost, but the calling
+         * thread is slowed down to the pace of the destination.
+         */
+        BLOCK,
+        /**
+         * Discard the oldest queued sample to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * Merge the new sample into a pending sample of the same series (same name, labels and type),
+         * which is delivered with the next batch. No observation is lost, only the time resolution of
+         * the overflowing samples.
+         */
+        AGGREGATE
+    }
+
+    private final Consumer<List<MetricSample>> batchConsumer;
+    private final int capacity;
+    private final int maxBatchSize;
+    private final long maxBatchAgeMs;
+    private final OverflowPolicy overflowPolicy;
+
+    private final ConcurrentLinkedQueue<MetricSample> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final ConcurrentHashMap<MetricSamples.SeriesKey, MetricSample> aggregatedSamples = new ConcurrentHashMap<>();
+    private final LongAdder droppedCount = new LongAdder();
+    private final LongAdder aggregatedCount = new LongAdder();
+    private final LongAdder deliveredCount = new LongAdder();
+
+    private final Thread deliveryThread;
+    private volatile boolean closed;
+
+    /**
+     * Creates a forwarder with the default capacity ({@value #DEFAULT_CAPACITY}), batch size
+     * ({@value #DEFAULT_MAX_BATCH_SIZE}), batch age ({@value #DEFAULT_MAX_BATCH_AGE_MS} ms) and the
+     * {@link OverflowPolicy#AGGREGATE} overflow policy.
+     *
+     * @param batchConsumer receives the batches of samples, always from the delivery thread
+     */
+    public AsyncMetricSampleForwarder(Consumer<List<MetricSample>> batchConsumer) {
+        this(batchConsumer, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH_SIZE, DEFAULT_MAX_BATCH_AGE_MS, OverflowPolicy.AGGREGATE);
+    }
+
+    /**
+     * @param batchConsumer  receives the batches of samples, always from the delivery thread
+     * @param capacity       maximum number of samples waiting in the queue; must be positive
+     * @param maxBatchSize   maximum number of samples per batch, a batch is delivered as soon as this many
+     *                       samples are pending; must be positive
+     * @param maxBatchAgeMs  maximum time a sample waits before its batch is delivered; must be positive
+     * @param overflowPolicy what to do when the queue is full
+     */
+    public AsyncMetricSampleForwarder(Consumer<List<MetricSample>> batchConsumer, int capacity, int maxBatchSize,
+                                      long maxBatchAgeMs, OverflowPolicy overflowPolicy) {
+        if (capacity <= 0 || maxBatchSize <= 0 || maxBatchAgeMs <= 0) {
+            throw new IllegalArgumentException("capacity, maxBatchSize and maxBatchAgeMs must be positive");
+        }
+        this.batchConsumer = Objects.requireNonNull(batchConsumer, "batchConsumer must not be null");
+        this.capacity = capacity;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchAgeMs = maxBatchAgeMs;
+        this.overflowPolicy = Objects.requireNonNull(overflowPolicy, "overflowPolicy must not be null");
+        this.deliveryThread = Thread.ofPlatform().name("step-metrics-forwarder").daemon(true).start(this::deliveryLoop);
+    }
+
+    /**
+     * Enqueues a sample for asynchronous delivery. Never blocks, except with {@link OverflowPolicy#BLOCK}
+     * when the queue is full. Samples received after {@link #close()} are dropped.
+     */
+    @Override
+    public void accept(MetricSample sample) {
+        if (closed) {
+            droppedCount.increment();
+            return;
+        }
+        while (!tryEnqueue(sample)) {
+            switch (overflowPolicy) {
+                case DROP_OLDEST:
+                    if (queue.poll() != null) {
+                        // the slot of the dropped sample is taken over by the new one
+                        droppedCount.increment();
+                        queue.add(sample);
+                        return;
+                    }
+                    break;
+                case AGGREGATE:
+                    aggregatedSamples.merge(MetricSamples.SeriesKey.of(sample), sample, MetricSamples::merge);
+                    aggregatedCount.increment();
+                    return;
+                case BLOCK:
+                    if (closed) {
+                        droppedCount.increment();
+                        return;
+                    }
+                    LockSupport.unpark(deliveryThread);
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                    break;
+            }
+        }
+    }
+
+    private boolean tryEnqueue(MetricSample sample) {
+        int depth = queueDepth.incrementAndGet();
+        if (depth > capacity) {
+            queueDepth.decrementAndGet();
+            return false;
+        }
+        queue.add(sample);
+        if (depth >= maxBatchSize) {
+            LockSupport.unpark(deliveryThread);
+        }
+        return true;
+    }
+
+    private void deliveryLoop() {
+        while (true) {
+            if (isEmpty()) {
+                if (closed) {
+                    return;
+                }
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(maxBatchAgeMs));
+                continue;
+            }
+            // wait until the batch is full or its oldest sample is maxBatchAgeMs old
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxBatchAgeMs);
+            long remaining;
+            while (queueDepth.get() < maxBatchSize && !closed && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, remaining);
+            }
+            deliver(nextBatch());
+        }
+    }
+
+    private boolean isEmpty() {
+        return queueDepth.get() == 0 && aggregatedSamples.isEmpty();
+    }
+
+    private List<MetricSample> nextBatch() {
+        List<MetricSample> batch = new ArrayList<>(Math.min(maxBatchSize, capacity));
+        MetricSample sample;
+        while (batch.size() < maxBatchSize && (sample = queue.poll()) != null) {
+            queueDepth.decrementAndGet();
+            batch.add(sample);
+        }
+        for (MetricSamples.SeriesKey key : aggregatedSamples.keySet()) {
+            // samples merged concurrently either make it into the removed sample or start a new pending one
+            MetricSample aggregated = aggregatedSamples.remove(key);
+            if (aggregated != null) {
+                batch.add(aggregated);
+            }
+        }
+        return batch;
+    }
+
+    private void deliver(List<MetricSample> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            batchConsumer.accept(batch);
+            deliveredCount.add(batch.size());
+        } catch (Exception e) {
+            droppedCount.add(batch.size());
+            logger.error("Unable to deliver a batch of {} metric samples, discarding it", batch.size(), e);
+        }
+    }
+
+    /**
+     * Returns the number of samples currently waiting in the queue.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Returns the number of samples dropped so far: discarded by {@link OverflowPolicy#DROP_OLDEST},
+     * received after {@link #close()}, or part of a batch whose delivery failed.
+     */
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    /**
+     * Returns the number of samples merged into pending samples by {@link OverflowPolicy#AGGREGATE}.
+     */
+    public long getAggregatedCount() {
+        return aggregatedCount.sum();
+    }
+
+    /**
+     * Returns the number of samples successfully handed over to the batch consumer.
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.sum();
+    }
+
+    /**
+     * Delivers all pending samples and stops the delivery thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(deliveryThread);
+        try {
+            deliveryThread.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (deliveryThread.isAlive()) {
+            logger.warn("Metric sample delivery did not complete within {} ms, {} samples may be lost", CLOSE_TIMEOUT_MS, getQueueDepth());
+        }
+    }
+}
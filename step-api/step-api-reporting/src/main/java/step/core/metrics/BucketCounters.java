@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+/**
+ * Thread-safe accumulator of per-bucket observation counts, created by a {@link BucketLayout}.
+ */
+abstract class BucketCounters {
+
+    /**
+     * Counts one observation of {@code value} in its bucket.
+     */
+    abstract void record(long value);
+
+    /**
+     * Returns the non-empty buckets (keyed by the lowest value of the bucket) and resets all counts.
+     */
+    abstract BucketCounts drain();
+
+    /**
+     * Returns the non-empty buckets without resetting the counts. Concurrent records may or may not be included.
+     */
+    abstract BucketCounts peek();
+}
@@ -0,0 +1,297 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Immutable bucketed distribution: the non-empty buckets of a histogram, stored as two parallel primitive arrays
+ * sorted by bucket key.
+ * <p>
+ * This is the representation of {@link MetricSample#getDistribution()} produced by metrics, so that flushing a
+ * histogram doesn't box a key, a count and an entry per bucket. It is exposed as a read-only {@code Map<Long, Long>}
+ * for serialization and existing consumers, but allocation-free access is available through {@link #size()},
+ * {@link #keyAt(int)}, {@link #countAt(int)} and {@link #forEachBucket(BucketConsumer)}.
+ */
+public final class BucketCounts extends AbstractMap<Long, Long> {
+
+    /**
+     * An empty distribution.
+     */
+    public static final BucketCounts EMPTY = new BucketCounts(new long[0], new long[0], 0);
+
+    /**
+     * Receives the buckets of a distribution without boxing.
+     */
+    @FunctionalInterface
+    public interface BucketConsumer {
+        void accept(long key, long count);
+    }
+
+    private final long[] keys;
+    private final long[] counts;
+    private final int size;
+    private Set<Entry<Long, Long>> entrySet;
+
+    // the arrays must be sorted by key, without duplicates, and are not copied
+    private BucketCounts(long[] keys, long[] counts, int size) {
+        this.keys = keys;
+        this.counts = counts;
+        this.size = size;
+    }
+
+    /**
+     * Returns the given distribution as {@code BucketCounts}, converting it if needed.
+     *
+     * @param distribution the distribution to convert, without {@code null} keys or counts
+     * @return the distribution itself if it already is a {@code BucketCounts}, otherwise a sorted copy
+     */
+    public static BucketCounts of(Map<Long, Long> distribution) {
+        if (distribution instanceof BucketCounts) {
+            return (BucketCounts) distribution;
+        }
+        Appender appender = new Appender(distribution.size());
+        distribution.forEach((key, count) -> {
+            if (key == null || count == null) {
+                throw new IllegalArgumentException("Distributions must not contain null keys or counts");
+            }
+            appender.append(key, count);
+        });
+        return appender.toSortedBucketCounts();
+    }
+
+    /**
+     * Merges two distributions by summing the counts of buckets having the same key.
+     *
+     * @return a new distribution, or one of the arguments if the other one is empty
+     */
+    public static BucketCounts merge(BucketCounts a, BucketCounts b) {
+        if (a.size == 0 || b.size == 0) {
+            return a.size == 0 ? b : a;
+        }
+        long[] keys = new long[a.size + b.size];
+        long[] counts = new long[a.size + b.size];
+        int i = 0, j = 0, n = 0;
+        while (i < a.size || j < b.size) {
+            if (j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+                keys[n] = a.keys[i];
+                counts[n++] = a.counts[i++];
+            } else if (i == a.size || b.keys[j] < a.keys[i]) {
+                keys[n] = b.keys[j];
+                counts[n++] = b.counts[j++];
+            } else {
+                keys[n] = a.keys[i];
+                counts[n++] = a.counts[i++] + b.counts[j++];
+            }
+        }
+        return new BucketCounts(keys, counts, n);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the key of the bucket at the given position, buckets being sorted by ascending key.
+     */
+    public long keyAt(int index) {
+        return keys[checkIndex(index)];
+    }
+
+    /**
+     * Returns the count of the bucket at the given position, buckets being sorted by ascending key.
+     */
+    public long countAt(int index) {
+        return counts[checkIndex(index)];
+    }
+
+    /**
+     * Returns the sum of the counts of all buckets.
+     */
+    public long totalCount() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    /**
+     * Returns the count of the bucket with the given key, or 0 if there is none.
+     */
+    public long getCount(long key) {
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        return index >= 0 ? counts[index] : 0;
+    }
+
+    /**
+     * Passes all buckets, in ascending key order, to the given consumer.
+     */
+    public void forEachBucket(BucketConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(keys[i], counts[i]);
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key instanceof Long && Arrays.binarySearch(keys, 0, size, (Long) key) >= 0;
+    }
+
+    @Override
+    public Long get(Object key) {
+        if (!(key instanceof Long)) {
+            return null;
+        }
+        int index = Arrays.binarySearch(keys, 0, size, (Long) key);
+        return index >= 0 ? counts[index] : null;
+    }
+
+    @Override
+    public Set<Entry<Long, Long>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Long, Long>> iterator() {
+                    return new Iterator<>() {
+                        private int next;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < size;
+                        }
+
+                        @Override
+                        public Entry<Long, Long> next() {
+                            if (next >= size) {
+                                throw new NoSuchElementException();
+                            }
+                            Entry<Long, Long> entry = new SimpleImmutableEntry<>(keys[next], counts[next]);
+                            next++;
+                            return entry;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+        return entrySet;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Bucket index " + index + " out of bounds for size " + size);
+        }
+        return index;
+    }
+
+    /**
+     * Collects buckets into growing primitive arrays, used by the {@link BucketCounters} when draining.
+     */
+    static final class Appender {
+        private long[] keys;
+        private long[] counts;
+        private int size;
+
+        Appender(int expectedSize) {
+            keys = new long[Math.max(expectedSize, 8)];
+            counts = new long[keys.length];
+        }
+
+        void append(long key, long count) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            keys[size] = key;
+            counts[size++] = count;
+        }
+
+        /**
+         * Returns the appended buckets, which must have been appended in ascending key order.
+         */
+        BucketCounts toBucketCounts() {
+            return size == 0 ? EMPTY : new BucketCounts(keys, counts, size);
+        }
+
+        /**
+         * Returns the appended buckets, sorting them and summing the counts of duplicate keys.
+         */
+        BucketCounts toSortedBucketCounts() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            sort(0, size - 1);
+            int n = 0;
+            for (int i = 1; i < size; i++) {
+                if (keys[i] == keys[n]) {
+                    counts[n] += counts[i];
+                } else {
+                    n++;
+                    keys[n] = keys[i];
+                    counts[n] = counts[i];
+                }
+            }
+            return new BucketCounts(keys, counts, n + 1);
+        }
+
+        // quicksort of the parallel arrays by key
+        private void sort(int low, int high) {
+            while (low < high) {
+                long pivot = keys[(low + high) >>> 1];
+                int i = low, j = high;
+                while (i <= j) {
+                    while (keys[i] < pivot) i++;
+                    while (keys[j] > pivot) j--;
+                    if (i <= j) {
+                        swap(i++, j--);
+                    }
+                }
+                // recurse into the smaller half to bound the stack depth
+                if (j - low < high - i) {
+                    sort(low, j);
+                    low = i;
+                } else {
+                    sort(i, high);
+                    high = j;
+                }
+            }
+        }
+
+        private void swap(int i, int j) {
+            long key = keys[i];
+            keys[i] = keys[j];
+            keys[j] = key;
+            long count = counts[i];
+            counts[i] = counts[j];
+            counts[j] = count;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Describes how the values observed by a {@link SampledMetric} are grouped into distribution buckets.
+ * <p>
+ * A layout is an immutable description and can be shared between metrics; each metric creates its own
+ * counters from it. The bucket keys reported in {@link MetricSample#getDistribution()} are always the
+ * lowest value of the corresponding bucket; {@link #upperBound(long)} gives its highest value.
+ * <ul>
+ *   <li>{@link #linear(long)}: equal-width buckets. Precise for small value ranges, but the number of
+ *       buckets grows with the range of observed values.</li>
+ *   <li>{@link #logLinear(int, long)}: HDR-style buckets whose width grows with the magnitude of the
+ *       value, keeping a fixed number of significant digits. The relative error is bounded and the
+ *       counters are allocated once, as a fixed-size array.</li>
+ *   <li>{@link #explicit(long...)}: buckets delimited by given boundaries, e.g. the bands of a service
+ *       level objective. The counters are allocated once, one per boundary plus one for the values below the
+ *       first boundary.</li>
+ * </ul>
+ * To protect the agent heap and the controller storage from unbounded value ranges, the number of linear buckets
+ * can be capped with {@link #linear(long, int)}: observations that would open a bucket beyond the limit are
+ * counted in the {@link #OVERFLOW_BUCKET overflow bucket} instead.
+ */
+public abstract class BucketLayout {
+
+    /**
+     * Default highest value tracked by {@link #logLinear(int)}: one hour, expressed in milliseconds.
+     */
+    public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = 3_600_000L;
+
+    /**
+     * Key of the distribution bucket counting the observations folded because of a bucket limit.
+     * Being the highest possible key, it is always the last bucket of a distribution.
+     */
+    public static final long OVERFLOW_BUCKET = Long.MAX_VALUE;
+
+    /**
+     * Key of the distribution bucket counting the observations below the first boundary of an
+     * {@link #explicit(long...) explicit} layout, which has no lower bound.
+     * Being the lowest possible key, it is always the first bucket of a distribution.
+     */
+    public static final long UNDERFLOW_BUCKET = Long.MIN_VALUE;
+
+    BucketLayout() {
+    }
+
+    /**
+     * Creates a layout with equal-width buckets: observed values are rounded down to the nearest
+     * multiple of {@code precision} before being counted.
+     *
+     * @param precision the bucket width; must be positive
+     * @return the layout
+     */
+    public static BucketLayout linear(long precision) {
+        return new LinearBucketLayout(precision, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a layout with equal-width buckets and a maximum number of buckets per reporting interval.
+     * Once {@code maxBuckets} buckets were opened during an interval, observations falling into a new bucket are
+     * counted in the {@link #OVERFLOW_BUCKET} and reported by {@link SampledMetric#getFoldedObservationCount()}.
+     * The buckets are released at every flush, so the next interval starts with no bucket.
+     * The limit may be exceeded by a few buckets when new buckets are opened concurrently.
+     *
+     * @param precision  the bucket width; must be positive
+     * @param maxBuckets the maximum number of regular buckets; must be positive
+     * @return the layout
+     */
+    public static BucketLayout linear(long precision, int maxBuckets) {
+        return new LinearBucketLayout(precision, maxBuckets);
+    }
+
+    /**
+     * Creates a log-linear layout tracking values up to {@value #DEFAULT_HIGHEST_TRACKABLE_VALUE}.
+     *
+     * @param significantDigits see {@link #logLinear(int, long)}
+     * @return the layout
+     */
+    public static BucketLayout logLinear(int significantDigits) {
+        return new LogLinearBucketLayout(significantDigits, DEFAULT_HIGHEST_TRACKABLE_VALUE);
+    }
+
+    /**
+     * Creates a log-linear (HDR-style) layout. Each power-of-two range of values is split into
+     * enough linear sub-buckets to keep {@code significantDigits} decimal digits, so that the
+     * bucket a value falls into never differs from it by more than {@code 10^-significantDigits}
+     * relative to the value.
+     * <p>
+     * Counters are allocated once, their number only depends on the two parameters (e.g. about
+     * 2'000 counters for 2 significant digits up to one hour in milliseconds). Negative values are
+     * counted in the first bucket, values above {@code highestTrackableValue} in the last one;
+     * {@code min} and {@code max} of the samples remain exact.
+     *
+     * @param significantDigits     number of significant decimal digits to keep, between 1 and 5
+     * @param highestTrackableValue highest value that is bucketed with the requested precision; must be at least 2
+     * @return the layout
+     */
+    public static BucketLayout logLinear(int significantDigits, long highestTrackableValue) {
+        return new LogLinearBucketLayout(significantDigits, highestTrackableValue);
+    }
+
+    /**
+     * Creates a layout with explicit bucket boundaries, e.g. {@code explicit(50, 100, 250, 500, 1000)} for
+     * latency bands in milliseconds. Each boundary is the lowest value of its bucket, which extends up to the next
+     * boundary (excluded); the last bucket has no upper bound. Values below the first boundary are counted in the
+     * {@link #UNDERFLOW_BUCKET}: with the boundaries above, a 10 ms value is counted in the underflow bucket, a 60 ms
+     * value in the bucket {@code 50}. {@code min} and {@code max} of the samples remain exact.
+     * <p>
+     * Finding the bucket of a value is a binary search over the boundaries, and the counters are allocated once,
+     * one per boundary plus the underflow one.
+     *
+     * @param boundaries the bucket boundaries, strictly increasing; at least one is required
+     * @return the layout
+     */
+    public static BucketLayout explicit(long... boundaries) {
+        return new ExplicitBucketLayout(boundaries);
+    }
+
+    /**
+     * Returns the highest value counted in the bucket of the given key, as reported in
+     * {@link MetricSample#getDistribution()}, e.g. for the {@code le} label of a Prometheus histogram bucket.
+     * The bound only depends on the layout, not on the other buckets observed.
+     *
+     * @param key the key of a bucket of this layout
+     * @return the highest value of the bucket, or {@link Long#MAX_VALUE} if it has no upper bound, like the
+     * {@link #OVERFLOW_BUCKET}
+     */
+    public abstract long upperBound(long key);
+
+    /**
+     * Creates a new, empty set of counters for this layout.
+     */
+    BucketCounters newCounters() {
+        return newCounters(new LongAdder());
+    }
+
+    /**
+     * Creates a new, empty set of counters for this layout.
+     *
+     * @param foldedObservations incremented for each observation counted in the {@link #OVERFLOW_BUCKET}
+     */
+    abstract BucketCounters newCounters(LongAdder foldedObservations);
+}
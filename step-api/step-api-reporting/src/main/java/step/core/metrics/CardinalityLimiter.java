@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the number of distinct series (metric name and labels) reported through a
+ * {@link MetricSamplesCollector} or {@link step.reporting.LiveMetrics}, protecting the agent heap and
+ * the controller storage from labels with unbounded values (e.g. a request ID).
+ * <p>
+ * The first {@code maxSeries} distinct series are admitted. Further series are folded: their observations
+ * are reported under the same name with the {@link #OVERFLOW_LABELS} instead of their own labels, and
+ * {@link #getFoldedCount()} counts how many times this happened.
+ */
+public final class CardinalityLimiter {
+
+    /**
+     * Name of the label identifying the overflow series.
+     */
+    public static final String OVERFLOW_LABEL = "overflow";
+
+    /**
+     * Labels of the overflow series, replacing the labels of the folded series.
+     */
+    public static final Map<String, String> OVERFLOW_LABELS = Map.of(OVERFLOW_LABEL, "true");
+
+    private final int maxSeries;
+    private final ConcurrentHashMap<List<Object>, Boolean> series = new ConcurrentHashMap<>();
+    private final AtomicInteger seriesCount = new AtomicInteger();
+    private final LongAdder foldedCount = new LongAdder();
+
+    /**
+     * @param maxSeries the maximum number of distinct series; must be positive
+     */
+    public CardinalityLimiter(int maxSeries) {
+        if (maxSeries <= 0) throw new IllegalArgumentException("maxSeries must be positive");
+        this.maxSeries = maxSeries;
+    }
+
+    /**
+     * Returns whether the given series may be reported with its own labels: either it was already admitted,
+     * or the limit isn't reached yet. Otherwise, the folded count is incremented.
+     */
+    public boolean tryAdmit(String name, Map<String, String> labels) {
+        List<Object> key = List.of(name, labels);
+        if (series.containsKey(key)) {
+            return true;
+        }
+        // reserve a slot first so that concurrent registrations can't exceed the limit
+        if (seriesCount.incrementAndGet() <= maxSeries) {
+            if (series.putIfAbsent(key, Boolean.TRUE) != null) {
+                seriesCount.decrementAndGet();
+            }
+            return true;
+        }
+        seriesCount.decrementAndGet();
+        if (series.containsKey(key)) {
+            return true;
+        }
+        foldedCount.increment();
+        return false;
+    }
+
+    /**
+     * Returns the maximum number of distinct series.
+     */
+    public int getMaxSeries() {
+        return maxSeries;
+    }
+
+    /**
+     * Returns the number of distinct series admitted so far.
+     */
+    public int getSeriesCount() {
+        return series.size();
+    }
+
+    /**
+     * Returns how many times a series was folded into the overflow series since this limiter was created.
+     */
+    public long getFoldedCount() {
+        return foldedCount.sum();
+    }
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A {@link MetricFamily} of {@link CounterMetric}s.
+ */
+public class CounterFamily extends MetricFamily<CounterMetric> {
+
+    /**
+     * @see MetricFamily#MetricFamily(String, List, Consumer)
+     */
+    public CounterFamily(String name, List<String> labelNames, Consumer<? super CounterMetric> registrar) {
+        super(name, labelNames, registrar);
+    }
+
+    /**
+     * @see MetricFamily#MetricFamily(String, List, CardinalityLimiter, Consumer)
+     */
+    public CounterFamily(String name, List<String> labelNames, CardinalityLimiter cardinalityLimiter,
+                         Consumer<? super CounterMetric> registrar) {
+        super(name, labelNames, cardinalityLimiter, registrar);
+    }
+
+    @Override
+    protected CounterMetric newMetric(String name, Map<String, String> labels) {
+        return new CounterMetric(name, labels);
+    }
+}
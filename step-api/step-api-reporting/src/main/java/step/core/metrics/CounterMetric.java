@@ -18,8 +18,9 @@
  ******************************************************************************/
 package step.core.metrics;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 
 /**
@@ -39,15 +40,25 @@ import java.util.concurrent.atomic.LongAdder;
  *       absolute count.</li>
  * </ul>
  * Use {@link #increment()} or {@link #increment(long)} to record values.
+ * Like {@link SampledMetric}, the interval accumulators are double-buffered so that
+ * {@code count} and {@code sum} of a sample always belong to the same increments.
  * Flushing is handled by the framework; call {@link step.reporting.LiveMetrics#registerCounter}
  * to register this metric for live reporting, or pass it to
  * {@code OutputBuilder.addMetric} for end-of-keyword reporting.
+ * <p>
+ * {@link #enableEventTime(long, long)} groups increments into time slices by their own timestamp, as
+ * described for {@link SampledMetric#enableEventTime(long, long)}; the running total then accumulates the
+ * slices in chronological order.
  */
 public class CounterMetric extends Metric {
 
-    private final LongAdder countAdder = new LongAdder();
-    private final AtomicLong diffAccumulator = new AtomicLong(0);
-    private final AtomicLong totalAccumulator = new AtomicLong(0);
+    private final IntervalPhaser<Interval> intervals = new IntervalPhaser<>(new Interval(), new Interval());
+    /**
+     * Running total of all flushed increments; only accessed by {@link #flush()}, which is synchronized.
+     * Keeping it out of the increment path leaves a single striped adder per value to update.
+     */
+    private long total;
+    private volatile EventTimeSlices<Interval> eventTimeSlices;
 
     public CounterMetric(String name) {
         super(name);
@@ -77,7 +88,7 @@ public class CounterMetric extends Metric {
      * @param amount positive increment value
      */
     public CounterMetric increment(long amount) {
-        increment(amount, System.currentTimeMillis());
+        increment(amount, getClock().currentTimeMillis());
         return this;
     }
 
@@ -92,22 +103,98 @@ public class CounterMetric extends Metric {
         if (amount < 0) {
             throw new IllegalArgumentException("Counter increment amount must be non-negative");
         }
-        countAdder.increment();
-        diffAccumulator.addAndGet(amount);
-        totalAccumulator.addAndGet(amount);
+        EventTimeSlices<Interval> slices = eventTimeSlices;
+        if (slices == null) {
+            IntervalPhaser.Phase<Interval> phase = intervals.enter();
+            try {
+                Interval.record(phase.value(), amount);
+            } finally {
+                phase.exit();
+            }
+        } else if (!slices.record(observationTimestampMs, amount, Interval::record)) {
+            return this;
+        }
         notifyObserved(observationTimestampMs);
         return this;
     }
 
+    /**
+     * Returns the running total including the increments not flushed yet, without flushing. Increments held in
+     * event-time slices not reported yet are not included.
+     */
+    public synchronized long getTotal() {
+        long pending = 0;
+        for (Interval interval : intervals.values()) {
+            pending += interval.diffAccumulator.sum();
+        }
+        return total + pending;
+    }
+
+    /**
+     * Switches this counter to event-time aggregation, see {@link SampledMetric#enableEventTime(long, long)}.
+     *
+     * @param sliceMs           the duration of a time slice; must be positive
+     * @param allowedLatenessMs how long a slice remains open after its end; must not be negative
+     * @return this counter
+     */
+    public CounterMetric enableEventTime(long sliceMs, long allowedLatenessMs) {
+        eventTimeSlices = new EventTimeSlices<>(sliceMs, allowedLatenessMs, Interval::new);
+        return this;
+    }
+
+    /**
+     * Returns the number of increments dropped because they arrived after their event-time slice was reported.
+     */
+    public long getLateObservationCount() {
+        EventTimeSlices<Interval> slices = eventTimeSlices;
+        return slices != null ? slices.getLateObservationCount() : 0;
+    }
+
     /**
      * Captures the accumulated diff (then resets it to zero) and the current running total
      * into a new {@link MetricSample} and returns it.
      */
     @Override
-    public MetricSample flush() {
-        long count = countAdder.sumThenReset();
-        long diff = diffAccumulator.getAndSet(0);
-        long total = totalAccumulator.get();
-        return new MetricSample(getLastObservedTimestampMs(), getName(), getLabels(), getType(), count, diff, total - diff, total, total, null);
+    public synchronized MetricSample flush() {
+        return drain(intervals.flip(), getLastObservedTimestampMs());
+    }
+
+    /**
+     * In event-time mode, returns a sample per closed time slice, preceded by the sample of the increments
+     * recorded before the mode was enabled, if any.
+     */
+    @Override
+    public synchronized List<MetricSample> flushSamples(boolean finalFlush) {
+        EventTimeSlices<Interval> slices = eventTimeSlices;
+        if (slices == null) {
+            return List.of(flush());
+        }
+        List<MetricSample> samples = new ArrayList<>();
+        MetricSample sample = flush();
+        if (sample.getCount() > 0) {
+            samples.add(sample);
+        }
+        for (Map.Entry<Long, Interval> slice : slices.close(finalFlush)) {
+            samples.add(drain(slice.getValue(), slice.getKey()));
+        }
+        return samples;
+    }
+
+    private MetricSample drain(Interval interval, long sampleTime) {
+        long count = interval.countAdder.sumThenReset();
+        long diff = interval.diffAccumulator.sumThenReset();
+        long previousTotal = total;
+        total += diff;
+        return new MetricSample(sampleTime, getName(), getLabels(), getType(), count, diff, previousTotal, total, total, null);
+    }
+
+    private static final class Interval {
+        private final LongAdder countAdder = new LongAdder();
+        private final LongAdder diffAccumulator = new LongAdder();
+
+        private static void record(Interval interval, long amount) {
+            interval.countAdder.increment();
+            interval.diffAccumulator.add(amount);
+        }
     }
 }
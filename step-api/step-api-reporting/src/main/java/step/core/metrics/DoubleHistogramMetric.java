@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.Map;
+
+/**
+ * A floating-point histogram, the counterpart of {@link HistogramMetric} for {@code double} values
+ * (e.g. fractional milliseconds or payload sizes in MB).
+ * Use {@link #observe(double)} to record each measurement.
+ */
+public class DoubleHistogramMetric extends DoubleSampledMetric {
+
+    public DoubleHistogramMetric(String name) {
+        super(name);
+    }
+
+    public DoubleHistogramMetric(String name, Map<String, String> labels) {
+        super(name, labels);
+    }
+
+    /**
+     * @see DoubleSampledMetric#DoubleSampledMetric(String, Map, double, BucketLayout)
+     */
+    public DoubleHistogramMetric(String name, Map<String, String> labels, double distributionScale, BucketLayout bucketLayout) {
+        super(name, labels, distributionScale, bucketLayout);
+    }
+
+    @Override
+    public InstrumentType getType() {
+        return InstrumentType.HISTOGRAM;
+    }
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulators of a {@link DoubleSampledMetric} for one reporting interval, the floating-point
+ * counterpart of {@link SampledInterval}.
+ * <p>
+ * {@code min} and {@code max} are kept as the raw bits of the double values in {@link AtomicLong}s,
+ * updated by CAS only when the value improves.
+ */
+final class DoubleSampledInterval {
+
+    private static final long EMPTY_MIN = Double.doubleToRawLongBits(Double.POSITIVE_INFINITY);
+    private static final long EMPTY_MAX = Double.doubleToRawLongBits(Double.NEGATIVE_INFINITY);
+
+    private final LongAdder countAdder = new LongAdder();
+    private final DoubleAdder sumAdder = new DoubleAdder();
+    private final AtomicLong minBits = new AtomicLong(EMPTY_MIN);
+    private final AtomicLong maxBits = new AtomicLong(EMPTY_MAX);
+    private final BucketCounters distributionAccumulator;
+    private final double distributionScale;
+
+    DoubleSampledInterval(BucketLayout bucketLayout, double distributionScale, LongAdder foldedObservations) {
+        this.distributionAccumulator = bucketLayout.newCounters(foldedObservations);
+        this.distributionScale = distributionScale;
+    }
+
+    void record(double value) {
+        countAdder.increment();
+        sumAdder.add(value);
+        updateMin(value);
+        updateMax(value);
+        distributionAccumulator.record((long) Math.floor(value * distributionScale));
+    }
+
+    private void updateMin(double value) {
+        long current = minBits.get();
+        while (value < Double.longBitsToDouble(current)
+            && !minBits.compareAndSet(current, Double.doubleToRawLongBits(value))) {
+            current = minBits.get();
+        }
+    }
+
+    private void updateMax(double value) {
+        long current = maxBits.get();
+        while (value > Double.longBitsToDouble(current)
+            && !maxBits.compareAndSet(current, Double.doubleToRawLongBits(value))) {
+            current = maxBits.get();
+        }
+    }
+
+    /**
+     * Captures the accumulated values into a new floating-point {@link MetricSample} of the given metric and resets them.
+     */
+    MetricSample drain(Metric metric, long sampleTime, double last) {
+        long count = countAdder.sumThenReset();
+        double sum = sumAdder.sumThenReset();
+        double min = Double.longBitsToDouble(minBits.getAndSet(EMPTY_MIN));
+        double max = Double.longBitsToDouble(maxBits.getAndSet(EMPTY_MAX));
+        BucketCounts distribution = distributionAccumulator.drain();
+        return new MetricSample(sampleTime, metric.getName(), metric.getLabels(), metric.getType(),
+            count, sum, count > 0 ? min : 0, count > 0 ? max : 0, last, distribution, distributionScale);
+    }
+}
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Abstract base for sampled metrics observing floating-point values (e.g. ratios, CPU load, throughput
+ * in MB/s or fractional milliseconds), the counterpart of {@link SampledMetric} for {@code double}s.
+ * <p>
+ * {@code count}, {@code sum}, {@code min}, {@code max} and {@code last} keep full precision: they are
+ * accumulated without boxing ({@link java.util.concurrent.atomic.DoubleAdder} for the sum, CAS on the raw
+ * bits for min and max) and reported in the floating-point fields of the {@link MetricSample}
+ * (see {@link MetricSample#isFloatingPoint()}).
+ * <p>
+ * The distribution buckets hold {@code value * distributionScale} rounded down, bucketed with the
+ * {@link BucketLayout} of the metric; {@link MetricSample#getDistributionScale()} gives the scale needed
+ * to convert bucket keys back to values. By default, values are bucketed in thousandths with a
+ * {@link BucketLayout#logLinear(int, long) log-linear layout} of 2 significant digits tracking values up to
+ * one million; negative values are counted in the first bucket of log-linear layouts, use a
+ * {@link BucketLayout#linear(long) linear layout} to distinguish them.
+ * <p>
+ * Like {@link SampledMetric}, the interval accumulators are double-buffered and {@link #observe(double)}
+ * never blocks.
+ */
+public abstract class DoubleSampledMetric extends Metric {
+
+    /**
+     * Default scale applied to values before bucketing: distributions have a resolution of one thousandth.
+     */
+    public static final double DEFAULT_DISTRIBUTION_SCALE = 1000;
+
+    private static final long DEFAULT_HIGHEST_TRACKABLE_SCALED_VALUE = 1_000_000_000L;
+
+    private final BucketLayout bucketLayout;
+    private final double distributionScale;
+    private final IntervalPhaser<DoubleSampledInterval> intervals;
+    private final AtomicLong lastBits = new AtomicLong(Double.doubleToRawLongBits(0d));
+    private final LongAdder foldedObservations = new LongAdder();
+
+    protected DoubleSampledMetric(String name) {
+        this(name, new HashMap<>());
+    }
+
+    protected DoubleSampledMetric(String name, Map<String, String> labels) {
+        this(name, labels, DEFAULT_DISTRIBUTION_SCALE,
+            BucketLayout.logLinear(2, DEFAULT_HIGHEST_TRACKABLE_SCALED_VALUE));
+    }
+
+    /**
+     * @param distributionScale factor applied to values before bucketing, e.g. {@code 1000} to bucket values
+     *                          with a resolution of one thousandth; must be positive
+     * @param bucketLayout      defines how the scaled values are grouped into distribution buckets
+     */
+    protected DoubleSampledMetric(String name, Map<String, String> labels, double distributionScale,
+                                  BucketLayout bucketLayout) {
+        super(name, labels);
+        if (!(distributionScale > 0) || Double.isInfinite(distributionScale)) {
+            throw new IllegalArgumentException("distributionScale must be positive");
+        }
+        this.bucketLayout = Objects.requireNonNull(bucketLayout, "Bucket layout cannot be null");
+        this.distributionScale = distributionScale;
+        this.intervals = new IntervalPhaser<>(
+            new DoubleSampledInterval(bucketLayout, distributionScale, foldedObservations),
+            new DoubleSampledInterval(bucketLayout, distributionScale, foldedObservations));
+    }
+
+    /**
+     * Returns the layout used to bucket the scaled values of this metric.
+     */
+    public BucketLayout getBucketLayout() {
+        return bucketLayout;
+    }
+
+    /**
+     * Returns the factor applied to values before bucketing.
+     */
+    public double getDistributionScale() {
+        return distributionScale;
+    }
+
+    /**
+     * Returns the total number of observations that were counted in the {@link BucketLayout#OVERFLOW_BUCKET}
+     * because the bucket limit of the layout was reached, since this metric was created.
+     */
+    public long getFoldedObservationCount() {
+        return foldedObservations.sum();
+    }
+
+    /**
+     * Records a single observation, using the current wall-clock time as the observation
+     * timestamp for rate-limit decisions.
+     *
+     * @param value the observed value
+     */
+    public DoubleSampledMetric observe(double value) {
+        return observe(value, getClock().currentTimeMillis());
+    }
+
+    /**
+     * Records a single observation, using the supplied timestamp as the observation
+     * timestamp for rate-limit decisions.
+     *
+     * @param value                  the observed value
+     * @param observationTimestampMs epoch milliseconds of this observation
+     */
+    public DoubleSampledMetric observe(double value, long observationTimestampMs) {
+        record(value);
+        notifyObserved(observationTimestampMs);
+        return this;
+    }
+
+    /**
+     * Records an observation without notifying the observation listener, e.g. for values polled during a flush.
+     */
+    void record(double value) {
+        IntervalPhaser.Phase<DoubleSampledInterval> phase = intervals.enter();
+        try {
+            phase.value().record(value);
+        } finally {
+            phase.exit();
+        }
+        lastBits.lazySet(Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Returns the most recently observed value, without flushing.
+     */
+    public double getLast() {
+        return Double.longBitsToDouble(lastBits.get());
+    }
+
+    /**
+     * Captures the accumulated statistics into a new floating-point {@link MetricSample},
+     * resets all accumulators except {@code last}, and returns the snapshot.
+     */
+    @Override
+    public synchronized MetricSample flush() {
+        DoubleSampledInterval interval = intervals.flip();
+        return interval.drain(this, getLastObservedTimestampMs(), Double.longBitsToDouble(lastBits.get()));
+    }
+}
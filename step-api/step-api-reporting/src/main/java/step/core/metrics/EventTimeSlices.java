@@ -0,0 +1,166 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Accumulators of a metric in event-time mode: observations are grouped into fixed time slices by their own
+ * timestamp rather than by the time they are recorded.
+ * <p>
+ * The watermark is the most recent observation timestamp seen so far. A slice {@code [start, start + sliceMs)}
+ * is closed, and can be drained, once the watermark reaches {@code start + sliceMs + allowedLatenessMs}.
+ * Observations falling into an already closed slice are dropped and counted as late.
+ * <p>
+ * Like in {@link IntervalPhaser}, recording threads enter and exit the slice they record into, and closing a slice
+ * flags it as closed and waits for the writers that entered it before to exit. Writers never take a lock and
+ * only contend on the {@link LongAdder}s of the slice they record into.
+ *
+ * @param <T> the type of the slice accumulators
+ */
+final class EventTimeSlices<T> {
+
+    /**
+     * An accumulator together with the counters tracking the writers recording into it.
+     */
+    private static final class Slice<T> {
+        private final T value;
+        private final LongAdder entered = new LongAdder();
+        private final LongAdder exited = new LongAdder();
+        private volatile boolean closed;
+        /**
+         * Whether an observation was recorded. Slices created concurrently with their closing stay unused.
+         */
+        private volatile boolean used;
+
+        private Slice(T value) {
+            this.value = value;
+        }
+
+        private void awaitWriters() {
+            // exits must be summed before entries, see IntervalPhaser.Phase
+            while (exited.sum() != entered.sum()) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private final long sliceMs;
+    private final long allowedLatenessMs;
+    private final Supplier<T> sliceFactory;
+    private final ConcurrentSkipListMap<Long, Slice<T>> slices = new ConcurrentSkipListMap<>();
+    private final AtomicLong watermark = new AtomicLong(Long.MIN_VALUE);
+    private final LongAdder lateObservations = new LongAdder();
+    /**
+     * End of the most recent closed slice: observations before it are late. Only written by {@link #close},
+     * before the slices are flagged as closed.
+     */
+    private volatile long closedUntil = Long.MIN_VALUE;
+
+    EventTimeSlices(long sliceMs, long allowedLatenessMs, Supplier<T> sliceFactory) {
+        if (sliceMs <= 0) {
+            throw new IllegalArgumentException("The slice duration must be positive");
+        }
+        if (allowedLatenessMs < 0) {
+            throw new IllegalArgumentException("The allowed lateness cannot be negative");
+        }
+        this.sliceMs = sliceMs;
+        this.allowedLatenessMs = allowedLatenessMs;
+        this.sliceFactory = sliceFactory;
+    }
+
+    /**
+     * Records an observation into the slice of its timestamp.
+     *
+     * @return {@code false} if the observation was dropped because its slice was already closed
+     */
+    boolean record(long timestampMs, long value, ObjLongConsumer<T> recorder) {
+        long sliceStart = Math.floorDiv(timestampMs, sliceMs) * sliceMs;
+        while (true) {
+            if (sliceStart < closedUntil) {
+                lateObservations.increment();
+                return false;
+            }
+            Slice<T> slice = slices.computeIfAbsent(sliceStart, k -> new Slice<>(sliceFactory.get()));
+            slice.entered.increment();
+            try {
+                // the slice is being closed, or was created after closedUntil was checked: closedUntil now covers it
+                if (slice.closed || sliceStart < closedUntil) {
+                    continue;
+                }
+                if (!slice.used) {
+                    slice.used = true;
+                }
+                recorder.accept(slice.value, value);
+                break;
+            } finally {
+                slice.exited.increment();
+            }
+        }
+        long current = watermark.get();
+        while (timestampMs > current && !watermark.compareAndSet(current, timestampMs)) {
+            current = watermark.get();
+        }
+        return true;
+    }
+
+    /**
+     * Detaches the closed slices, ordered by start time. No observation is recorded into them afterwards.
+     *
+     * @param all whether to close all slices regardless of the watermark, e.g. for the final flush
+     * @return the start time and accumulator of each closed slice
+     */
+    synchronized List<Map.Entry<Long, T>> close(boolean all) {
+        long currentWatermark = watermark.get();
+        if (!all && currentWatermark == Long.MIN_VALUE) {
+            return List.of();
+        }
+        NavigableMap<Long, Slice<T>> candidates = all ? slices
+            : slices.headMap(currentWatermark - allowedLatenessMs - sliceMs, true);
+        if (candidates.isEmpty()) {
+            return List.of();
+        }
+        // slices are only removed here, so the candidates can't have been emptied in between
+        long until = Math.max(closedUntil, candidates.lastKey() + sliceMs);
+        closedUntil = until;
+        List<Map.Entry<Long, T>> result = new ArrayList<>();
+        for (Map.Entry<Long, Slice<T>> entry : slices.headMap(until).entrySet()) {
+            Slice<T> slice = entry.getValue();
+            slice.closed = true;
+            slice.awaitWriters();
+            slices.remove(entry.getKey(), slice);
+            if (slice.used) {
+                result.add(Map.entry(entry.getKey(), slice.value));
+            }
+        }
+        return result;
+    }
+
+    long getLateObservationCount() {
+        return lateObservations.sum();
+    }
+}
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Buckets delimited by explicit, strictly increasing boundaries, each being the lowest value of its bucket: the
+ * bucket of a value is found by a binary search over the boundaries and the counters are held in a single array with
+ * a first entry for the values below the first boundary, then one entry per boundary.
+ */
+final class ExplicitBucketLayout extends BucketLayout {
+
+    private final long[] boundaries;
+
+    ExplicitBucketLayout(long[] boundaries) {
+        if (boundaries.length == 0) {
+            throw new IllegalArgumentException("At least one bucket boundary is required");
+        }
+        if (boundaries[0] == UNDERFLOW_BUCKET) {
+            throw new IllegalArgumentException("The first bucket boundary must be above Long.MIN_VALUE");
+        }
+        for (int i = 1; i < boundaries.length; i++) {
+            if (boundaries[i] <= boundaries[i - 1]) {
+                throw new IllegalArgumentException("Bucket boundaries must be strictly increasing");
+            }
+        }
+        this.boundaries = boundaries.clone();
+    }
+
+    /**
+     * Returns the number of buckets, including the underflow one.
+     */
+    int getBucketCount() {
+        return boundaries.length + 1;
+    }
+
+    /**
+     * Returns the index of the bucket of the value: {@code 0} for the underflow bucket, {@code i + 1} for the
+     * bucket of the boundary {@code i}, i.e. the last boundary not above the value.
+     */
+    int indexOf(long value) {
+        int index = Arrays.binarySearch(boundaries, value);
+        // not found: (-(insertion point) - 1), the insertion point being the index of the first greater boundary
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private long keyAt(int index) {
+        return index == 0 ? UNDERFLOW_BUCKET : boundaries[index - 1];
+    }
+
+    @Override
+    public long upperBound(long key) {
+        int index = key == UNDERFLOW_BUCKET ? 0 : indexOf(key);
+        // the last bucket has no upper bound
+        return index == boundaries.length ? Long.MAX_VALUE : boundaries[index] - 1;
+    }
+
+    @Override
+    BucketCounters newCounters(LongAdder foldedObservations) {
+        // the number of buckets is fixed by the boundaries, nothing is ever folded
+        return new Counters();
+    }
+
+    private final class Counters extends BucketCounters {
+
+        private final AtomicLongArray counts = new AtomicLongArray(getBucketCount());
+
+        @Override
+        void record(long value) {
+            counts.incrementAndGet(indexOf(value));
+        }
+
+        @Override
+        BucketCounts drain() {
+            BucketCounts.Appender distribution = new BucketCounts.Appender(counts.length());
+            for (int i = 0; i < counts.length(); i++) {
+                if (counts.get(i) != 0) {
+                    long val = counts.getAndSet(i, 0);
+                    if (val > 0) {
+                        distribution.append(keyAt(i), val);
+                    }
+                }
+            }
+            return distribution.toBucketCounts();
+        }
+
+        @Override
+        BucketCounts peek() {
+            BucketCounts.Appender distribution = new BucketCounts.Appender(counts.length());
+            for (int i = 0; i < counts.length(); i++) {
+                long val = counts.get(i);
+                if (val > 0) {
+                    distribution.append(keyAt(i), val);
+                }
+            }
+            return distribution.toBucketCounts();
+        }
+    }
+}
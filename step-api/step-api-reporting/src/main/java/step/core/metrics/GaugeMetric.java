@@ -53,6 +53,20 @@ public class GaugeMetric extends SampledMetric {
         super(name, labels, percentilePrecision);
     }
 
+    /**
+     * @param bucketLayout see {@link SampledMetric#SampledMetric(String, BucketLayout)}
+     */
+    public GaugeMetric(String name, BucketLayout bucketLayout) {
+        super(name, bucketLayout);
+    }
+
+    /**
+     * @param bucketLayout see {@link SampledMetric#SampledMetric(String, BucketLayout)}
+     */
+    public GaugeMetric(String name, Map<String, String> labels, BucketLayout bucketLayout) {
+        super(name, labels, bucketLayout);
+    }
+
     @Override
     public InstrumentType getType() {
         return InstrumentType.GAUGE;
@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A {@link MetricFamily} of {@link HistogramMetric}s, all children sharing the same {@link BucketLayout}.
+ */
+public class HistogramFamily extends MetricFamily<HistogramMetric> {
+
+    private final BucketLayout bucketLayout;
+
+    /**
+     * Creates a family whose children use the default bucket layout.
+     *
+     * @see MetricFamily#MetricFamily(String, List, Consumer)
+     */
+    public HistogramFamily(String name, List<String> labelNames, Consumer<? super HistogramMetric> registrar) {
+        this(name, labelNames, null, registrar);
+    }
+
+    /**
+     * @param bucketLayout the bucket layout of the children; {@code null} for the default one
+     * @see MetricFamily#MetricFamily(String, List, Consumer)
+     */
+    public HistogramFamily(String name, List<String> labelNames, BucketLayout bucketLayout,
+                           Consumer<? super HistogramMetric> registrar) {
+        this(name, labelNames, bucketLayout, null, registrar);
+    }
+
+    /**
+     * @param bucketLayout the bucket layout of the children; {@code null} for the default one
+     * @see MetricFamily#MetricFamily(String, List, CardinalityLimiter, Consumer)
+     */
+    public HistogramFamily(String name, List<String> labelNames, BucketLayout bucketLayout,
+                           CardinalityLimiter cardinalityLimiter, Consumer<? super HistogramMetric> registrar) {
+        super(name, labelNames, cardinalityLimiter, registrar);
+        this.bucketLayout = bucketLayout;
+    }
+
+    @Override
+    protected HistogramMetric newMetric(String name, Map<String, String> labels) {
+        return bucketLayout != null ? new HistogramMetric(name, labels, bucketLayout) : new HistogramMetric(name, labels);
+    }
+}
@@ -54,6 +54,20 @@ public class HistogramMetric extends SampledMetric {
         super(name, labels, percentilePrecision);
     }
 
+    /**
+     * @param bucketLayout see {@link SampledMetric#SampledMetric(String, BucketLayout)}
+     */
+    public HistogramMetric(String name, BucketLayout bucketLayout) {
+        super(name, bucketLayout);
+    }
+
+    /**
+     * @param bucketLayout see {@link SampledMetric#SampledMetric(String, BucketLayout)}
+     */
+    public HistogramMetric(String name, Map<String, String> labels, BucketLayout bucketLayout) {
+        super(name, labels, bucketLayout);
+    }
+
     @Override
     public InstrumentType getType() {
         return InstrumentType.HISTOGRAM;
@@ -30,7 +30,11 @@ package step.core.metrics;
 public enum InstrumentType {
     COUNTER,
     GAUGE,
-    HISTOGRAM;
+    HISTOGRAM,
+    /**
+     * Quantiles tracked with a mergeable {@link QuantileSketch}, see {@link SummaryMetric}.
+     */
+    SUMMARY;
 
     public String toLowerCase() {
         return name().toLowerCase();
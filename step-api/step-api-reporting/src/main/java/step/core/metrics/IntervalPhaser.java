@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Recorder-style double buffer (writer/reader phaser) used to take consistent interval snapshots
+ * of metric accumulators without blocking the recording threads.
+ * <p>
+ * Writers {@link #enter()} the active phase, record into its value and {@link Phase#exit()} it.
+ * The reader {@link #flip() flips} the phases: new writers are directed to the other value, and the
+ * flip waits until the writers still recording into the previous value have exited, after which that
+ * value can be read and reset without concurrent modification.
+ * <p>
+ * Writers are wait-free with respect to the reader: they never wait for a flip to complete, and only
+ * retry (once) when they happen to enter a phase that is being retired. Enter and exit are tracked with
+ * {@link LongAdder}s so that writers on different threads don't contend on a single counter.
+ *
+ * @param <T> type of the buffered accumulator
+ */
+final class IntervalPhaser<T> {
+
+    /**
+     * One of the two buffers, together with the counters tracking the writers recording into it.
+     */
+    static final class Phase<T> {
+        private final T value;
+        private final LongAdder entered = new LongAdder();
+        private final LongAdder exited = new LongAdder();
+
+        private Phase(T value) {
+            this.value = value;
+        }
+
+        T value() {
+            return value;
+        }
+
+        /**
+         * Must be called once the writer is done recording into {@link #value()}, typically in a finally block.
+         */
+        void exit() {
+            exited.increment();
+        }
+
+        private boolean isQuiescent() {
+            // exits must be summed before entries: every exit counted here then has its entry counted below,
+            // so equal sums guarantee that no writer that entered before the flip is still recording
+            long exitedSum = exited.sum();
+            long enteredSum = entered.sum();
+            return exitedSum == enteredSum;
+        }
+    }
+
+    private volatile Phase<T> active;
+    private Phase<T> inactive;
+
+    IntervalPhaser(T first, T second) {
+        this.active = new Phase<>(first);
+        this.inactive = new Phase<>(second);
+    }
+
+    /**
+     * Enters the active phase. The returned phase must be {@link Phase#exit() exited} after recording.
+     */
+    Phase<T> enter() {
+        while (true) {
+            Phase<T> phase = active;
+            phase.entered.increment();
+            if (phase == active) {
+                return phase;
+            }
+            // a flip happened in between: the reader may already consider this phase quiescent
+            phase.exit();
+        }
+    }
+
+    /**
+     * Returns the active and the inactive values, for reads that must not flip, e.g. non-destructive peeks.
+     * Must be serialized with {@link #flip()}, like flips are.
+     */
+    List<T> values() {
+        return List.of(active.value, inactive.value);
+    }
+
+    /**
+     * Makes the inactive value active, waits for the writers of the previously active value to exit and
+     * returns that value. The caller must reset the returned value before the next flip.
+     * <p>
+     * Must not be called concurrently; callers are expected to serialize flips (e.g. in a synchronized flush).
+     */
+    T flip() {
+        Phase<T> previous = active;
+        active = inactive;
+        inactive = previous;
+        while (!previous.isQuiescent()) {
+            Thread.onSpinWait();
+        }
+        return previous.value;
+    }
+}
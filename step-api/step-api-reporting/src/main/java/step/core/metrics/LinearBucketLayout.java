@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Equal-width buckets: a value is counted in the bucket keyed by {@code value - value % precision}.
+ * Buckets are created on demand, so their number depends on the range of observed values,
+ * up to {@code maxBuckets} per interval.
+ */
+final class LinearBucketLayout extends BucketLayout {
+
+    private final long precision;
+    private final int maxBuckets;
+
+    LinearBucketLayout(long precision, int maxBuckets) {
+        if (precision <= 0) throw new IllegalArgumentException("pclPrecision must be positive");
+        if (maxBuckets <= 0) throw new IllegalArgumentException("maxBuckets must be positive");
+        this.precision = precision;
+        this.maxBuckets = maxBuckets;
+    }
+
+    @Override
+    public long upperBound(long key) {
+        if (key == OVERFLOW_BUCKET || key > Long.MAX_VALUE - precision + 1) {
+            return Long.MAX_VALUE;
+        }
+        // keys are rounded towards zero: the bucket of a negative key extends downwards from it
+        return key < 0 ? key : key + precision - 1;
+    }
+
+    @Override
+    BucketCounters newCounters(LongAdder foldedObservations) {
+        return new Counters(foldedObservations);
+    }
+
+    private final class Counters extends BucketCounters {
+
+        private final ConcurrentHashMap<Long, LongAdder> buckets = new ConcurrentHashMap<>();
+        private final LongAdder overflow = new LongAdder();
+        private final LongAdder foldedObservations;
+
+        private Counters(LongAdder foldedObservations) {
+            this.foldedObservations = foldedObservations;
+        }
+
+        @Override
+        void record(long value) {
+            long key = value - value % precision;
+            LongAdder bucket = buckets.get(key);
+            if (bucket == null) {
+                if (buckets.size() >= maxBuckets) {
+                    overflow.increment();
+                    foldedObservations.increment();
+                    return;
+                }
+                bucket = buckets.computeIfAbsent(key, k -> new LongAdder());
+            }
+            bucket.increment();
+        }
+
+        @Override
+        BucketCounts drain() {
+            BucketCounts.Appender distribution = new BucketCounts.Appender(buckets.size());
+            buckets.forEach((k, adder) -> {
+                long val = adder.sumThenReset();
+                if (val > 0) {
+                    distribution.append(k, val);
+                }
+            });
+            // drained counters are no longer recorded into (see IntervalPhaser): clearing the buckets makes
+            // the limit apply to each interval rather than to the lifetime of the metric
+            buckets.clear();
+            long overflowCount = overflow.sumThenReset();
+            if (overflowCount > 0) {
+                distribution.append(BucketLayout.OVERFLOW_BUCKET, overflowCount);
+            }
+            return distribution.toSortedBucketCounts();
+        }
+
+        @Override
+        BucketCounts peek() {
+            BucketCounts.Appender distribution = new BucketCounts.Appender(buckets.size() + 1);
+            buckets.forEach((k, adder) -> {
+                long val = adder.sum();
+                if (val > 0) {
+                    distribution.append(k, val);
+                }
+            });
+            long overflowCount = overflow.sum();
+            if (overflowCount > 0) {
+                distribution.append(BucketLayout.OVERFLOW_BUCKET, overflowCount);
+            }
+            return distribution.toSortedBucketCounts();
+        }
+    }
+}
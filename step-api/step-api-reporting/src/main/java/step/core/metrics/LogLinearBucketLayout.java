@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HDR-style log-linear buckets: values are split into power-of-two ranges, each of which is divided
+ * into {@code subBucketHalfCount} linear sub-buckets. The bucket index is computed with a few bit
+ * operations and the counters are held in a single fixed-size array.
+ */
+final class LogLinearBucketLayout extends BucketLayout {
+
+    private final long highestTrackableValue;
+    private final int subBucketHalfCountMagnitude;
+    private final int subBucketHalfCount;
+    private final long subBucketMask;
+    private final int leadingZeroCountBase;
+    private final int countsArrayLength;
+
+    LogLinearBucketLayout(int significantDigits, long highestTrackableValue) {
+        if (significantDigits < 1 || significantDigits > 5) {
+            throw new IllegalArgumentException("significantDigits must be between 1 and 5");
+        }
+        if (highestTrackableValue < 2) {
+            throw new IllegalArgumentException("highestTrackableValue must be at least 2");
+        }
+        this.highestTrackableValue = highestTrackableValue;
+
+        long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+        int subBucketCountMagnitude = (int) Math.ceil(Math.log(largestValueWithSingleUnitResolution) / Math.log(2));
+        int subBucketCount = 1 << subBucketCountMagnitude;
+        this.subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+        this.subBucketHalfCount = subBucketCount / 2;
+        this.subBucketMask = subBucketCount - 1;
+        this.leadingZeroCountBase = 63 - subBucketHalfCountMagnitude;
+        this.countsArrayLength = (bucketsNeeded(subBucketCount, highestTrackableValue) + 1) * subBucketHalfCount;
+    }
+
+    private static int bucketsNeeded(long subBucketCount, long highestTrackableValue) {
+        long smallestUntrackableValue = subBucketCount;
+        int bucketsNeeded = 1;
+        while (smallestUntrackableValue <= highestTrackableValue) {
+            if (smallestUntrackableValue > (Long.MAX_VALUE / 2)) {
+                return bucketsNeeded + 1;
+            }
+            smallestUntrackableValue <<= 1;
+            bucketsNeeded++;
+        }
+        return bucketsNeeded;
+    }
+
+    /**
+     * Returns the fixed number of counters allocated per metric using this layout.
+     */
+    int getCountsArrayLength() {
+        return countsArrayLength;
+    }
+
+    int indexOf(long value) {
+        long v = Math.min(Math.max(value, 0), highestTrackableValue);
+        int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(v | subBucketMask);
+        int subBucketIndex = (int) (v >>> bucketIndex);
+        int index = ((bucketIndex + 1) << subBucketHalfCountMagnitude) + (subBucketIndex - subBucketHalfCount);
+        return Math.min(index, countsArrayLength - 1);
+    }
+
+    long lowestValueAt(int index) {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+        if (bucketIndex < 0) {
+            subBucketIndex -= subBucketHalfCount;
+            bucketIndex = 0;
+        }
+        return ((long) subBucketIndex) << bucketIndex;
+    }
+
+    @Override
+    public long upperBound(long key) {
+        int index = indexOf(key);
+        // values above the highest trackable value are counted in its bucket
+        return index >= indexOf(highestTrackableValue) ? Long.MAX_VALUE : lowestValueAt(index + 1) - 1;
+    }
+
+    @Override
+    BucketCounters newCounters(LongAdder foldedObservations) {
+        // the number of buckets is bounded by construction, nothing is ever folded
+        return new Counters();
+    }
+
+    private final class Counters extends BucketCounters {
+
+        private final AtomicLongArray counts = new AtomicLongArray(countsArrayLength);
+
+        @Override
+        void record(long value) {
+            counts.incrementAndGet(indexOf(value));
+        }
+
+        @Override
+        BucketCounts drain() {
+            // indexes are visited in ascending value order, so the buckets don't need sorting
+            BucketCounts.Appender distribution = new BucketCounts.Appender(16);
+            for (int i = 0; i < countsArrayLength; i++) {
+                if (counts.get(i) != 0) {
+                    long val = counts.getAndSet(i, 0);
+                    if (val > 0) {
+                        distribution.append(lowestValueAt(i), val);
+                    }
+                }
+            }
+            return distribution.toBucketCounts();
+        }
+
+        @Override
+        BucketCounts peek() {
+            BucketCounts.Appender distribution = new BucketCounts.Appender(16);
+            for (int i = 0; i < countsArrayLength; i++) {
+                long val = counts.get(i);
+                if (val > 0) {
+                    distribution.append(lowestValueAt(i), val);
+                }
+            }
+            return distribution.toBucketCounts();
+        }
+    }
+}
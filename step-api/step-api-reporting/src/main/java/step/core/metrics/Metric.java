@@ -18,9 +18,13 @@
  ******************************************************************************/
 package step.core.metrics;
 
+import step.core.time.Clock;
+
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.LongConsumer;
 
 /**
@@ -32,6 +36,12 @@ import java.util.function.LongConsumer;
  * it is time to call {@link #flush()} based on the elapsed time since the last flush, making
  * sample production rate-limited rather than one-per-observation.
  * <p>
+ * The observation path is lock-free: concurrent callers never block each other, so a metric shared
+ * by many threads does not serialize them.
+ * <p>
+ * Observations recorded without an explicit timestamp are stamped by the metric's {@link #setClock(Clock) clock},
+ * the system clock by default.
+ * <p>
  * Keyword developers interact only with the concrete subclass API
  * (e.g. {@link CounterMetric#increment()}, {@link SampledMetric#observe(long)}).
  * Listener registration and flushing are handled by the framework via {@link MetricSamplesCollector}.
@@ -41,7 +51,8 @@ public abstract class Metric {
     private final String name;
     private final Map<String, String> labels;
     private volatile LongConsumer observationListener;
-    private volatile long lastObservedTimestampMs;
+    private final AtomicLong lastObservedTimestampMs = new AtomicLong();
+    private volatile Clock clock = Clock.system();
 
     protected Metric(String name) {
         this.name = Objects.requireNonNull(name, "Metric name cannot be null");
@@ -66,6 +77,21 @@ public abstract class Metric {
      */
     public abstract MetricSample flush();
 
+    /**
+     * Flushes this metric into the samples to report: a single sample produced by {@link #flush()}, unless the
+     * metric aggregates its observations by event time, in which case one sample per closed time slice is
+     * returned (possibly none).
+     * <p>
+     * <b>Reserved for the framework.</b> Keyword developers should not call this directly.
+     *
+     * @param finalFlush {@code true} if no further flush will follow: the time slices still open are then
+     *                   returned too
+     * @return the samples, in chronological order
+     */
+    public List<MetricSample> flushSamples(boolean finalFlush) {
+        return List.of(flush());
+    }
+
     /**
      * Sets the listener that is notified after each observation. The listener decides
      * whether to call {@link #flush()} based on its own rate-limiting logic.
@@ -87,8 +113,14 @@ public abstract class Metric {
      *                               Out-of-order timestamps (e.g. from concurrent callers) are
      *                               accepted; only the maximum value is retained as lastObservedTimestampMs.
      */
-    protected synchronized void notifyObserved(long observationTimestampMs) {
-        lastObservedTimestampMs = Math.max(lastObservedTimestampMs, observationTimestampMs);
+    protected void notifyObserved(long observationTimestampMs) {
+        // Only write when the timestamp actually advances: concurrent observations within the same
+        // millisecond then only read the shared field instead of contending on it
+        long current = lastObservedTimestampMs.get();
+        while (observationTimestampMs > current
+            && !lastObservedTimestampMs.compareAndSet(current, observationTimestampMs)) {
+            current = lastObservedTimestampMs.get();
+        }
         LongConsumer l = observationListener;
         if (l != null) {
             l.accept(observationTimestampMs);
@@ -102,7 +134,26 @@ public abstract class Metric {
      * Falls back to the current wall-clock time if no observation has been recorded yet.
      */
     protected long getLastObservedTimestampMs() {
-        return lastObservedTimestampMs != 0 ? lastObservedTimestampMs : System.currentTimeMillis();
+        long last = lastObservedTimestampMs.get();
+        return last != 0 ? last : clock.currentTimeMillis();
+    }
+
+    /**
+     * Returns the clock providing the time of the observations recorded without an explicit timestamp.
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Sets the clock providing the time of the observations recorded without an explicit timestamp, e.g.
+     * {@link Clock#coarse()} to avoid reading the system time at each observation of a hot metric, or a
+     * {@link step.core.time.ManualClock} to test time-dependent behavior deterministically.
+     *
+     * @param clock the clock; must not be {@code null}
+     */
+    public void setClock(Clock clock) {
+        this.clock = Objects.requireNonNull(clock, "Clock cannot be null");
     }
 
     /**
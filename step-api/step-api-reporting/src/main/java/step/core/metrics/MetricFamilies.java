@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Caches {@link MetricFamily} instances by name, so that requesting a family twice returns the
+ * same instance (and thus the same children).
+ * <b>Reserved for the framework</b>, used by {@link step.reporting.LiveMetrics} and {@code OutputBuilder}.
+ */
+public final class MetricFamilies {
+
+    private final ConcurrentHashMap<String, MetricFamily<?>> families = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the family registered under the given name, creating it with the given factory if there is none.
+     *
+     * @throws IllegalArgumentException if a family with the same name but another type or other label names
+     *                                  already exists
+     */
+    public <F extends MetricFamily<?>> F getOrCreate(String name, Class<F> type, List<String> labelNames,
+                                                      Supplier<F> factory) {
+        MetricFamily<?> family = families.get(name);
+        if (family == null) {
+            family = families.computeIfAbsent(name, k -> factory.get());
+        }
+        if (family.getClass() != type || !family.getLabelNames().equals(labelNames)) {
+            throw new IllegalArgumentException("Metric family '" + name + "' is already defined as "
+                + family.getClass().getSimpleName() + " with labels " + family.getLabelNames());
+        }
+        return type.cast(family);
+    }
+}
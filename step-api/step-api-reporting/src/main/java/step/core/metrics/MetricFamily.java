@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * A group of metrics sharing a name and an ordered list of label names, each child metric
+ * being identified by its label values (e.g. a {@code http_requests} counter labeled by
+ * {@code endpoint} and {@code status}).
+ * <p>
+ * {@link #withLabels(String...)} returns the child for the given label values, creating and
+ * registering it on first use only. Children are cached in a tree of concurrent maps keyed by one
+ * label value per level, so that looking up an existing child neither locks nor allocates
+ * (use the one- and two-argument overloads to also avoid the varargs array).
+ * <p>
+ * When a {@link CardinalityLimiter} is given, label values beyond its limit all map to a single overflow child
+ * labeled with {@link CardinalityLimiter#OVERFLOW_LABELS}. The overflow child is cached for at most as many
+ * label value combinations as the limit; further combinations are looked up in the limiter each time.
+ * <p>
+ * Families are obtained from {@link step.reporting.LiveMetrics} or {@code OutputBuilder}, which take
+ * care of registering the created children.
+ *
+ * @param <M> the type of the child metrics
+ */
+public abstract class MetricFamily<M extends Metric> {
+
+    private final String name;
+    private final List<String> labelNames;
+    private final Consumer<? super M> registrar;
+    private final CardinalityLimiter cardinalityLimiter;
+    private final ConcurrentHashMap<String, Object> children = new ConcurrentHashMap<>();
+    private volatile M unlabeledChild;
+    private volatile M overflowChild;
+    private final AtomicInteger cachedOverflowLabelSets = new AtomicInteger();
+
+    /**
+     * @param name       the name of the metric family, shared by all children
+     * @param labelNames the ordered names of the labels identifying a child
+     * @param registrar  called once with each newly created child, to register it
+     */
+    protected MetricFamily(String name, List<String> labelNames, Consumer<? super M> registrar) {
+        this(name, labelNames, null, registrar);
+    }
+
+    /**
+     * @param name               the name of the metric family, shared by all children
+     * @param labelNames         the ordered names of the labels identifying a child
+     * @param cardinalityLimiter bounds the number of children; {@code null} for no limit
+     * @param registrar          called once with each newly created child, to register it
+     */
+    protected MetricFamily(String name, List<String> labelNames, CardinalityLimiter cardinalityLimiter,
+                           Consumer<? super M> registrar) {
+        this.name = Objects.requireNonNull(name, "Metric name cannot be null");
+        this.labelNames = List.copyOf(Objects.requireNonNull(labelNames, "Label names cannot be null"));
+        this.cardinalityLimiter = cardinalityLimiter;
+        this.registrar = Objects.requireNonNull(registrar, "Registrar cannot be null");
+    }
+
+    /**
+     * Creates a new child metric.
+     *
+     * @param name   the name of the family
+     * @param labels the labels of the child, in label name order
+     */
+    protected abstract M newMetric(String name, Map<String, String> labels);
+
+    /**
+     * Returns the name of this family.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the ordered names of the labels identifying a child.
+     */
+    public List<String> getLabelNames() {
+        return labelNames;
+    }
+
+    /**
+     * Returns the child metric for the given label values, creating and registering it if needed.
+     *
+     * @param labelValues the label values, in the order of {@link #getLabelNames()}
+     * @return the child metric, always the same instance for the same label values
+     * @throws IllegalArgumentException if the number of values doesn't match the number of label names
+     */
+    @SuppressWarnings("unchecked")
+    public M withLabels(String... labelValues) {
+        checkLabelValues(labelValues.length);
+        if (labelValues.length == 0) {
+            return unlabeledChild();
+        }
+        Map<String, Object> node = children;
+        for (int i = 0; i < labelValues.length - 1 && node != null; i++) {
+            node = (Map<String, Object>) node.get(Objects.requireNonNull(labelValues[i], "Label values cannot be null"));
+        }
+        Object child = node != null ? node.get(Objects.requireNonNull(labelValues[labelValues.length - 1],
+            "Label values cannot be null")) : null;
+        return child != null ? (M) child : createChild(labelValues);
+    }
+
+    /**
+     * Same as {@link #withLabels(String...)} for a family with a single label.
+     */
+    @SuppressWarnings("unchecked")
+    public M withLabels(String labelValue) {
+        checkLabelValues(1);
+        Object child = children.get(Objects.requireNonNull(labelValue, "Label values cannot be null"));
+        return child != null ? (M) child : createChild(new String[]{labelValue});
+    }
+
+    /**
+     * Same as {@link #withLabels(String...)} for a family with two labels.
+     */
+    @SuppressWarnings("unchecked")
+    public M withLabels(String labelValue1, String labelValue2) {
+        checkLabelValues(2);
+        Map<String, Object> node = (Map<String, Object>) children.get(
+            Objects.requireNonNull(labelValue1, "Label values cannot be null"));
+        Object child = node != null ? node.get(Objects.requireNonNull(labelValue2, "Label values cannot be null")) : null;
+        return child != null ? (M) child : createChild(new String[]{labelValue1, labelValue2});
+    }
+
+    private void checkLabelValues(int count) {
+        if (count != labelNames.size()) {
+            throw new IllegalArgumentException("Metric family '" + name + "' expects " + labelNames.size()
+                + " label values " + labelNames + " but got " + count);
+        }
+    }
+
+    private M unlabeledChild() {
+        M child = unlabeledChild;
+        if (child == null) {
+            synchronized (this) {
+                child = unlabeledChild;
+                if (child == null) {
+                    child = newMetric(name, Collections.emptyMap());
+                    unlabeledChild = child;
+                    registrar.accept(child);
+                }
+            }
+        }
+        return child;
+    }
+
+    private M overflowChild() {
+        M child = overflowChild;
+        if (child == null) {
+            synchronized (this) {
+                child = overflowChild;
+                if (child == null) {
+                    child = newMetric(name, CardinalityLimiter.OVERFLOW_LABELS);
+                    overflowChild = child;
+                    registrar.accept(child);
+                }
+            }
+        }
+        return child;
+    }
+
+    @SuppressWarnings("unchecked")
+    private M createChild(String[] labelValues) {
+        Map<String, String> labels = new LinkedHashMap<>();
+        for (int i = 0; i < labelValues.length; i++) {
+            labels.put(labelNames.get(i), labelValues[i]);
+        }
+        labels = Collections.unmodifiableMap(labels);
+        if (cardinalityLimiter != null && !cardinalityLimiter.tryAdmit(name, labels)) {
+            M overflow = overflowChild();
+            // cache the overflow child for these label values so that the next lookups neither allocate nor count
+            // them as folded again, but only for as many label sets as the limit to keep the memory bounded
+            if (cachedOverflowLabelSets.incrementAndGet() <= cardinalityLimiter.getMaxSeries()) {
+                if (parentNode(labelValues).putIfAbsent(labelValues[labelValues.length - 1], overflow) != null) {
+                    cachedOverflowLabelSets.decrementAndGet();
+                }
+            } else {
+                cachedOverflowLabelSets.decrementAndGet();
+            }
+            return overflow;
+        }
+        ConcurrentHashMap<String, Object> node = parentNode(labelValues);
+        M created = newMetric(name, labels);
+        Object existing = node.putIfAbsent(labelValues[labelValues.length - 1], created);
+        if (existing != null) {
+            // another thread created the same child concurrently, only its instance gets registered
+            return (M) existing;
+        }
+        registrar.accept(created);
+        return created;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ConcurrentHashMap<String, Object> parentNode(String[] labelValues) {
+        ConcurrentHashMap<String, Object> node = children;
+        for (int i = 0; i < labelValues.length - 1; i++) {
+            node = (ConcurrentHashMap<String, Object>) node.computeIfAbsent(labelValues[i],
+                k -> new ConcurrentHashMap<String, Object>());
+        }
+        return node;
+    }
+}
@@ -28,6 +28,12 @@ import java.util.Map;
  * plain serializable fields with no accumulator state. It contains all possible values fields
  * to avoid class hierarchy and custom deserialization (no Jackson dependencies in step-api)
  * <p>
+ * Samples of floating-point metrics (see {@link DoubleSampledMetric}) are flagged by {@link #isFloatingPoint()}:
+ * their exact values are in {@link #getDoubleSum()}, {@link #getDoubleMin()}, {@link #getDoubleMax()} and
+ * {@link #getDoubleLast()}, the long fields holding the rounded values for consumers unaware of them.
+ * <p>
+ * Samples of {@link InstrumentType#SUMMARY summaries} carry a {@link #getSketch() quantile sketch} instead of a distribution.
+ * <p>
  * Getters are exposed as bean properties for Jackson serialization.
  * Setters are provided for Jackson deserialization on the controller side
  * without requiring Jackson annotations in this module.
@@ -43,7 +49,14 @@ public class MetricSample {
     private long min;
     private long max;
     private long last;
-    private Map<Long, Long> distribution;
+    private BucketCounts distribution;
+    private boolean floatingPoint;
+    private double doubleSum;
+    private double doubleMin;
+    private double doubleMax;
+    private double doubleLast;
+    private double distributionScale = 1;
+    private QuantileSketch sketch;
 
     /** Required for Jackson deserialization. */
     public MetricSample() {
@@ -61,7 +74,40 @@ public class MetricSample {
         this.min = min;
         this.max = max;
         this.last = last;
-        this.distribution = distribution;
+        this.distribution = distribution == null ? null : BucketCounts.of(distribution);
+    }
+
+    /**
+     * Creates the sample of a floating-point metric. The long fields are set to the rounded values.
+     *
+     * @param distributionScale the factor applied to values before bucketing, see {@link #getDistributionScale()}
+     */
+    public MetricSample(long sampleTime, String name, Map<String, String> labels, InstrumentType type,
+                        long count, double sum, double min, double max, double last,
+                        Map<Long, Long> distribution, double distributionScale) {
+        this(sampleTime, name, labels, type, count, Math.round(sum), Math.round(min), Math.round(max),
+            Math.round(last), distribution);
+        this.floatingPoint = true;
+        this.doubleSum = sum;
+        this.doubleMin = min;
+        this.doubleMax = max;
+        this.doubleLast = last;
+        this.distributionScale = distributionScale;
+    }
+
+    /**
+     * Returns a copy of this sample with the given labels.
+     */
+    MetricSample withLabels(Map<String, String> labels) {
+        MetricSample copy = new MetricSample(sampleTime, name, labels, type, count, sum, min, max, last, distribution);
+        copy.floatingPoint = floatingPoint;
+        copy.doubleSum = doubleSum;
+        copy.doubleMin = doubleMin;
+        copy.doubleMax = doubleMax;
+        copy.doubleLast = doubleLast;
+        copy.distributionScale = distributionScale;
+        copy.sketch = sketch;
+        return copy;
     }
 
     /** Return the timestamp of this snapshot **/
@@ -165,13 +211,100 @@ public class MetricSample {
      * Returns the bucketed value distribution since the last flush.
      * Keys are bucket boundaries; values are observation counts per bucket.
      * Maps to {@code Bucket.percentileDistribution} on the controller side.
+     * <p>
+     * The returned map is always a read-only {@link BucketCounts}, sorted by key, which can be
+     * read without boxing. Modifying it throws an {@link UnsupportedOperationException}: copy it,
+     * or replace it with {@link #setDistribution(Map)}, to change the distribution.
      */
     public Map<Long, Long> getDistribution() {
         return distribution;
     }
 
-    /** Required for Jackson deserialization. */
+    /**
+     * Required for Jackson deserialization. The given distribution is converted to
+     * {@link BucketCounts} if needed.
+     */
     public void setDistribution(Map<Long, Long> distribution) {
-        this.distribution = distribution;
+        this.distribution = distribution == null ? null : BucketCounts.of(distribution);
+    }
+
+    /**
+     * Returns whether this sample was produced by a floating-point metric, in which case the exact values are
+     * in the {@code double*} fields.
+     */
+    public boolean isFloatingPoint() {
+        return floatingPoint;
+    }
+
+    /** Required for Jackson deserialization. */
+    public void setFloatingPoint(boolean floatingPoint) {
+        this.floatingPoint = floatingPoint;
+    }
+
+    /** Returns the exact sum of a floating-point sample. */
+    public double getDoubleSum() {
+        return doubleSum;
+    }
+
+    /** Required for Jackson deserialization. */
+    public void setDoubleSum(double doubleSum) {
+        this.doubleSum = doubleSum;
+    }
+
+    /** Returns the exact minimum of a floating-point sample. */
+    public double getDoubleMin() {
+        return doubleMin;
+    }
+
+    /** Required for Jackson deserialization. */
+    public void setDoubleMin(double doubleMin) {
+        this.doubleMin = doubleMin;
+    }
+
+    /** Returns the exact maximum of a floating-point sample. */
+    public double getDoubleMax() {
+        return doubleMax;
+    }
+
+    /** Required for Jackson deserialization. */
+    public void setDoubleMax(double doubleMax) {
+        this.doubleMax = doubleMax;
+    }
+
+    /** Returns the exact most recently observed value of a floating-point sample. */
+    public double getDoubleLast() {
+        return doubleLast;
+    }
+
+    /** Required for Jackson deserialization. */
+    public void setDoubleLast(double doubleLast) {
+        this.doubleLast = doubleLast;
+    }
+
+    /**
+     * Returns the factor applied to values before bucketing: the bucket keys of the
+     * {@link #getDistribution() distribution} divided by this scale give the values. Always 1 for
+     * samples of integer metrics.
+     */
+    public double getDistributionScale() {
+        return distributionScale;
+    }
+
+    /** Required for Jackson deserialization. */
+    public void setDistributionScale(double distributionScale) {
+        this.distributionScale = distributionScale;
+    }
+
+    /**
+     * Returns the quantile sketch of the values observed since the last flush, for samples of
+     * {@link InstrumentType#SUMMARY summaries}; {@code null} otherwise.
+     */
+    public QuantileSketch getSketch() {
+        return sketch;
+    }
+
+    /** Required for Jackson deserialization. */
+    public void setSketch(QuantileSketch sketch) {
+        this.sketch = sketch;
     }
 }
@@ -0,0 +1,356 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import step.reporting.CommonMimeTypes;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of {@link MetricSample} lists, offered as an alternative to the JSON bean form
+ * (e.g. for {@code Output.metrics} or live metric transports) where ingest bandwidth matters.
+ * <p>
+ * Transports negotiate it through the {@link #MEDIA_TYPE} content type and fall back to JSON otherwise.
+ * The encoding is self-contained and versioned:
+ * <ul>
+ *   <li>all metric names, label keys and label values are written once, in a dictionary, and referenced by index;</li>
+ *   <li>integers are written as variable-length quantities (ZigZag-encoded when they may be negative), and sample
+ *       times as the difference to the previous sample;</li>
+ *   <li>distributions are written with sorted, delta-encoded bucket keys followed by the primitive counts;</li>
+ *   <li>the values of floating-point samples are written as 8-byte IEEE 754 doubles;</li>
+ *   <li>quantile sketches are written as their relative accuracy and two distributions of bucket indexes.</li>
+ * </ul>
+ * Instances are not needed: use the static {@link #encode(List)} and {@link #decode(byte[])} methods.
+ */
+public final class MetricSampleCodec {
+
+    /**
+     * Content type identifying this encoding.
+     */
+    public static final String MEDIA_TYPE = CommonMimeTypes.APPLICATION_STEP_METRIC_SAMPLES;
+
+    private static final byte MAGIC_0 = 'S';
+    private static final byte MAGIC_1 = 'M';
+    private static final byte VERSION = 1;
+
+    private static final int FLAG_NULL_LABELS = 1;
+    private static final int FLAG_NULL_DISTRIBUTION = 1 << 1;
+    private static final int FLAG_NULL_TYPE = 1 << 2;
+    private static final int FLAG_FLOATING_POINT = 1 << 3;
+    private static final int FLAG_SKETCH = 1 << 4;
+
+    private static final InstrumentType[] TYPES = InstrumentType.values();
+
+    private MetricSampleCodec() {
+    }
+
+    /**
+     * Encodes the given samples.
+     *
+     * @param samples the samples to encode; must not be {@code null} nor contain {@code null} elements
+     * @return the encoded bytes
+     */
+    public static byte[] encode(List<MetricSample> samples) {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (MetricSample sample : samples) {
+            index(dictionary, sample.getName());
+            if (sample.getLabels() != null) {
+                sample.getLabels().forEach((k, v) -> {
+                    index(dictionary, k);
+                    index(dictionary, v);
+                });
+            }
+        }
+
+        Writer out = new Writer();
+        out.writeByte(MAGIC_0);
+        out.writeByte(MAGIC_1);
+        out.writeByte(VERSION);
+        out.writeVarLong(dictionary.size());
+        for (String entry : dictionary.keySet()) {
+            byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+            out.writeVarLong(bytes.length);
+            out.writeBytes(bytes);
+        }
+
+        out.writeVarLong(samples.size());
+        long previousSampleTime = 0;
+        for (MetricSample sample : samples) {
+            Map<String, String> labels = sample.getLabels();
+            Map<Long, Long> distribution = sample.getDistribution();
+            int flags = (labels == null ? FLAG_NULL_LABELS : 0)
+                | (distribution == null ? FLAG_NULL_DISTRIBUTION : 0)
+                | (sample.getType() == null ? FLAG_NULL_TYPE : 0)
+                | (sample.isFloatingPoint() ? FLAG_FLOATING_POINT : 0)
+                | (sample.getSketch() != null ? FLAG_SKETCH : 0);
+            out.writeByte(flags);
+            out.writeSignedVarLong(sample.getSampleTime() - previousSampleTime);
+            previousSampleTime = sample.getSampleTime();
+            out.writeVarLong(dictionary.get(sample.getName()));
+            if (sample.getType() != null) {
+                out.writeByte(sample.getType().ordinal());
+            }
+            if (labels != null) {
+                out.writeVarLong(labels.size());
+                labels.forEach((k, v) -> {
+                    out.writeVarLong(dictionary.get(k));
+                    out.writeVarLong(dictionary.get(v));
+                });
+            }
+            out.writeSignedVarLong(sample.getCount());
+            if (sample.isFloatingPoint()) {
+                // the long fields are the rounded double values and aren't written
+                out.writeDouble(sample.getDoubleSum());
+                out.writeDouble(sample.getDoubleMin());
+                out.writeDouble(sample.getDoubleMax());
+                out.writeDouble(sample.getDoubleLast());
+                out.writeDouble(sample.getDistributionScale());
+            } else {
+                out.writeSignedVarLong(sample.getSum());
+                out.writeSignedVarLong(sample.getMin());
+                out.writeSignedVarLong(sample.getMax());
+                out.writeSignedVarLong(sample.getLast());
+            }
+            if (distribution != null) {
+                writeDistribution(out, distribution);
+            }
+            if (sample.getSketch() != null) {
+                QuantileSketch sketch = sample.getSketch();
+                out.writeDouble(sketch.getRelativeAccuracy());
+                out.writeVarLong(sketch.getZeroCount());
+                writeDistribution(out, sketch.getPositiveBuckets());
+                writeDistribution(out, sketch.getNegativeBuckets());
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void index(Map<String, Integer> dictionary, String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Metric names and labels must not be null");
+        }
+        dictionary.putIfAbsent(value, dictionary.size());
+    }
+
+    private static void writeDistribution(Writer out, Map<Long, Long> distribution) {
+        BucketCounts buckets = BucketCounts.of(distribution);
+        int size = buckets.size();
+        out.writeVarLong(size);
+        for (int k = 0; k < size; k++) {
+            // the first key is written as is, the following ones as the (positive) gap to their predecessor
+            if (k == 0) {
+                out.writeSignedVarLong(buckets.keyAt(k));
+            } else {
+                out.writeVarLong(buckets.keyAt(k) - buckets.keyAt(k - 1));
+            }
+        }
+        for (int k = 0; k < size; k++) {
+            out.writeSignedVarLong(buckets.countAt(k));
+        }
+    }
+
+    /**
+     * Decodes samples produced by {@link #encode(List)}.
+     *
+     * @param bytes the encoded samples
+     * @return the decoded samples
+     * @throws IllegalArgumentException if the bytes are not a valid encoding
+     */
+    public static List<MetricSample> decode(byte[] bytes) {
+        Reader in = new Reader(bytes);
+        if (in.readByte() != MAGIC_0 || in.readByte() != MAGIC_1) {
+            throw new IllegalArgumentException("Not an encoded list of metric samples");
+        }
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported metric samples encoding version " + version);
+        }
+        String[] dictionary = new String[in.readLength()];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = in.readString(in.readLength());
+        }
+
+        int sampleCount = in.readLength();
+        List<MetricSample> samples = new ArrayList<>(sampleCount);
+        long sampleTime = 0;
+        for (int s = 0; s < sampleCount; s++) {
+            int flags = in.readByte();
+            sampleTime += in.readSignedVarLong();
+            String name = in.lookup(dictionary);
+            InstrumentType type = null;
+            if ((flags & FLAG_NULL_TYPE) == 0) {
+                int ordinal = in.readByte();
+                if (ordinal >= TYPES.length) {
+                    throw new IllegalArgumentException("Unknown instrument type " + ordinal);
+                }
+                type = TYPES[ordinal];
+            }
+            Map<String, String> labels = null;
+            if ((flags & FLAG_NULL_LABELS) == 0) {
+                int labelCount = in.readLength();
+                labels = new HashMap<>();
+                for (int l = 0; l < labelCount; l++) {
+                    labels.put(in.lookup(dictionary), in.lookup(dictionary));
+                }
+            }
+            long count = in.readSignedVarLong();
+            MetricSample sample;
+            if ((flags & FLAG_FLOATING_POINT) != 0) {
+                double sum = in.readDouble();
+                double min = in.readDouble();
+                double max = in.readDouble();
+                double last = in.readDouble();
+                double distributionScale = in.readDouble();
+                BucketCounts distribution = (flags & FLAG_NULL_DISTRIBUTION) == 0 ? readDistribution(in) : null;
+                sample = new MetricSample(sampleTime, name, labels, type, count, sum, min, max, last,
+                    distribution, distributionScale);
+            } else {
+                long sum = in.readSignedVarLong();
+                long min = in.readSignedVarLong();
+                long max = in.readSignedVarLong();
+                long last = in.readSignedVarLong();
+                BucketCounts distribution = (flags & FLAG_NULL_DISTRIBUTION) == 0 ? readDistribution(in) : null;
+                sample = new MetricSample(sampleTime, name, labels, type, count, sum, min, max, last, distribution);
+            }
+            if ((flags & FLAG_SKETCH) != 0) {
+                double relativeAccuracy = in.readDouble();
+                long zeroCount = in.readVarLong();
+                sample.setSketch(new QuantileSketch(relativeAccuracy, zeroCount, readDistribution(in), readDistribution(in)));
+            }
+            samples.add(sample);
+        }
+        if (in.remaining() != 0) {
+            throw new IllegalArgumentException("Unexpected trailing bytes after the encoded metric samples");
+        }
+        return samples;
+    }
+
+    private static BucketCounts readDistribution(Reader in) {
+        long[] keys = new long[in.readLength()];
+        for (int k = 0; k < keys.length; k++) {
+            keys[k] = k == 0 ? in.readSignedVarLong() : keys[k - 1] + in.readVarLong();
+        }
+        BucketCounts.Appender distribution = new BucketCounts.Appender(keys.length);
+        for (long key : keys) {
+            distribution.append(key, in.readSignedVarLong());
+        }
+        // a well-formed encoding has strictly ascending keys, sorting only guards against corrupted input
+        return distribution.toSortedBucketCounts();
+    }
+
+    private static final class Writer extends ByteArrayOutputStream {
+
+        void writeByte(int b) {
+            write(b);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeSignedVarLong(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeDouble(double value) {
+            long bits = Double.doubleToRawLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                write((int) (bits >>> shift));
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int remaining() {
+            return bytes.length - position;
+        }
+
+        int readByte() {
+            if (position >= bytes.length) {
+                throw new IllegalArgumentException("Truncated metric samples encoding");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed variable-length integer");
+        }
+
+        long readSignedVarLong() {
+            long raw = readVarLong();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        double readDouble() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | readByte();
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        int readLength() {
+            long length = readVarLong();
+            if (length < 0 || length > remaining()) {
+                // every element takes at least one byte
+                throw new IllegalArgumentException("Invalid length " + length);
+            }
+            return (int) length;
+        }
+
+        String readString(int length) {
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        String lookup(String[] dictionary) {
+            long index = readVarLong();
+            if (index < 0 || index >= dictionary.length) {
+                throw new IllegalArgumentException("Invalid dictionary reference " + index);
+            }
+            return dictionary[(int) index];
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Helpers to combine {@link MetricSample}s of the same series.
+ */
+final class MetricSamples {
+
+    private MetricSamples() {
+    }
+
+    /**
+     * Identifies a time series: samples with equal keys can be merged.
+     */
+    record SeriesKey(String name, Map<String, String> labels, InstrumentType type) {
+
+        static SeriesKey of(MetricSample sample) {
+            return new SeriesKey(sample.getName(), sample.getLabels(), sample.getType());
+        }
+    }
+
+    /**
+     * Samples that can be merged by {@link #coalesce(List, long)}: same series, time window and value type.
+     */
+    private record CoalescingKey(SeriesKey series, long window, boolean floatingPoint, double distributionScale) {
+    }
+
+    /**
+     * Merges the samples of the same series whose sample times fall into the same window of {@code windowMs}
+     * milliseconds, see {@link #merge(MetricSample, MetricSample)}. The result is ordered by the first
+     * occurrence of each merged group.
+     * <p>
+     * The samples of a counter series may come from several counters (e.g. the ones of a child output and of its
+     * parent), whose running totals are unrelated: the merged counter samples are therefore rebased, window after
+     * window, onto a running total of the series starting at the lowest total before of its samples. For the
+     * samples of a single counter, this is the counter's own running total.
+     */
+    static List<MetricSample> coalesce(List<MetricSample> samples, long windowMs) {
+        Map<CoalescingKey, MetricSample> coalesced = new LinkedHashMap<>();
+        Map<SeriesKey, Long> counterTotals = new HashMap<>();
+        for (MetricSample sample : samples) {
+            SeriesKey series = SeriesKey.of(sample);
+            CoalescingKey key = new CoalescingKey(series, Math.floorDiv(sample.getSampleTime(), windowMs),
+                sample.isFloatingPoint(), sample.getDistributionScale());
+            coalesced.merge(key, sample, MetricSamples::merge);
+            if (sample.getType() == InstrumentType.COUNTER && !sample.isFloatingPoint()) {
+                counterTotals.merge(series, sample.getMin(), Math::min);
+            }
+        }
+        List<CoalescingKey> keys = new ArrayList<>(coalesced.keySet());
+        List<MetricSample> result = new ArrayList<>(coalesced.values());
+        if (!counterTotals.isEmpty()) {
+            Integer[] chronological = new Integer[keys.size()];
+            Arrays.setAll(chronological, i -> i);
+            Arrays.sort(chronological, Comparator.comparingLong(i -> keys.get(i).window()));
+            for (int i : chronological) {
+                result.set(i, rebaseCounter(result.get(i), counterTotals));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Merges two samples of the same series into a new sample covering both.
+     * <p>
+     * Counts, sums and distributions are added; {@code min}/{@code max} are combined (for samples of the same
+     * counter, this keeps the running total before the first and after the last increment; samples of different
+     * counters have unrelated totals and must be rebased, see {@link #rebaseCounter(MetricSample, Map)}); {@code last} and the sample time are
+     * taken from the most recent sample. Floating-point samples are merged on their exact values and must share
+     * the same distribution scale. Quantile sketches are merged with {@link QuantileSketch#merge(QuantileSketch, QuantileSketch)}.
+     */
+    static MetricSample merge(MetricSample a, MetricSample b) {
+        if (!Objects.equals(SeriesKey.of(a), SeriesKey.of(b))) {
+            throw new IllegalArgumentException("Cannot merge samples of different series: " + a.getName() + " and " + b.getName());
+        }
+        MetricSample latest = b.getSampleTime() >= a.getSampleTime() ? b : a;
+        if (a.isFloatingPoint() || b.isFloatingPoint()) {
+            return mergeFloatingPoint(a, b, latest);
+        }
+        long min;
+        long max;
+        if (a.getType() != InstrumentType.COUNTER && (a.getCount() == 0 || b.getCount() == 0)) {
+            // min/max of an empty sampled interval are meaningless (reported as 0)
+            MetricSample nonEmpty = a.getCount() == 0 ? b : a;
+            min = nonEmpty.getMin();
+            max = nonEmpty.getMax();
+        } else {
+            min = Math.min(a.getMin(), b.getMin());
+            max = Math.max(a.getMax(), b.getMax());
+        }
+        MetricSample merged = new MetricSample(latest.getSampleTime(), a.getName(), a.getLabels(), a.getType(),
+            a.getCount() + b.getCount(), a.getSum() + b.getSum(), min, max, latest.getLast(),
+            mergeDistributions(a.getDistribution(), b.getDistribution()));
+        merged.setSketch(mergeSketches(a.getSketch(), b.getSketch()));
+        return merged;
+    }
+
+    /**
+     * Returns a copy of a counter sample whose totals continue the running total of its series in {@code totals}
+     * rather than the total of the counter it was flushed from, and adds its sum to the running total. Used when the
+     * samples of a series come from several counters. Other samples (including floating-point counters) are
+     * returned as is.
+     */
+    static MetricSample rebaseCounter(MetricSample sample, Map<SeriesKey, Long> totals) {
+        if (sample.getType() != InstrumentType.COUNTER || sample.isFloatingPoint()) {
+            return sample;
+        }
+        long total = totals.merge(SeriesKey.of(sample), sample.getSum(), Long::sum);
+        return new MetricSample(sample.getSampleTime(), sample.getName(), sample.getLabels(), sample.getType(),
+            sample.getCount(), sample.getSum(), total - sample.getSum(), total, total, null);
+    }
+
+    private static MetricSample mergeFloatingPoint(MetricSample a, MetricSample b, MetricSample latest) {
+        if (a.isFloatingPoint() != b.isFloatingPoint() || a.getDistributionScale() != b.getDistributionScale()) {
+            throw new IllegalArgumentException("Cannot merge samples of '" + a.getName() + "' with different value types or distribution scales");
+        }
+        double min;
+        double max;
+        if (a.getCount() == 0 || b.getCount() == 0) {
+            MetricSample nonEmpty = a.getCount() == 0 ? b : a;
+            min = nonEmpty.getDoubleMin();
+            max = nonEmpty.getDoubleMax();
+        } else {
+            min = Math.min(a.getDoubleMin(), b.getDoubleMin());
+            max = Math.max(a.getDoubleMax(), b.getDoubleMax());
+        }
+        return new MetricSample(latest.getSampleTime(), a.getName(), a.getLabels(), a.getType(),
+            a.getCount() + b.getCount(), a.getDoubleSum() + b.getDoubleSum(), min, max, latest.getDoubleLast(),
+            mergeDistributions(a.getDistribution(), b.getDistribution()), a.getDistributionScale());
+    }
+
+    private static QuantileSketch mergeSketches(QuantileSketch a, QuantileSketch b) {
+        if (a == null || b == null) {
+            return a == null ? b : a;
+        }
+        return QuantileSketch.merge(a, b);
+    }
+
+    private static Map<Long, Long> mergeDistributions(Map<Long, Long> a, Map<Long, Long> b) {
+        if (a == null || b == null) {
+            return a == null ? b : a;
+        }
+        return BucketCounts.merge(BucketCounts.of(a), BucketCounts.of(b));
+    }
+}
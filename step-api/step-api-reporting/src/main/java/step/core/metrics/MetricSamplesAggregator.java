@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import step.core.time.Clock;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Long-lived aggregation stage merging the samples of many keyword invocations before they are sent.
+ * <p>
+ * Each invocation collects its own samples, so a keyword running at a high frequency produces many small samples
+ * of the same series. Meant to be shared by all invocations of an agent, this aggregator merges the samples of the
+ * same series (same name, labels, type and value type) whose sample times fall into the same interval into a single
+ * one (see {@link MetricSamplesCollector#withCoalescing(long)} for the merge semantics), and delivers the merged
+ * samples to the downstream consumer once per interval.
+ * <p>
+ * Each invocation's counters report running totals starting from zero, which can't be combined across invocations.
+ * The aggregator therefore keeps an agent-level running total per counter series: the merged counter samples are
+ * delivered with the total before ({@code min}) and after ({@code max}, {@code last}) their increments.
+ * <p>
+ * Samples are received as a forward consumer, through {@link #addSamples(List)}, or from the collectors
+ * {@link #register(MetricSamplesCollector) registered} with this aggregator, which are flushed before each
+ * delivery. The downstream consumer is called from the flushing thread and should not block for long, see
+ * {@link AsyncMetricSampleForwarder}.
+ */
+public class MetricSamplesAggregator implements Consumer<MetricSample>, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricSamplesAggregator.class);
+
+    private final long intervalMs;
+    private final Consumer<List<MetricSample>> downstream;
+    private final ConcurrentHashMap<AggregationKey, MetricSample> pendingSamples = new ConcurrentHashMap<>();
+    /**
+     * Agent-level running totals of the counter series delivered so far.
+     */
+    private final ConcurrentHashMap<MetricSamples.SeriesKey, Long> counterTotals = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<MetricSamplesCollector> collectors = new ConcurrentLinkedQueue<>();
+    private final LongAdder receivedCount = new LongAdder();
+    private final LongAdder deliveredCount = new LongAdder();
+    private volatile Clock clock = Clock.system();
+    private boolean scheduledFlush;
+    private boolean closed;
+    private ScheduledFuture<?> scheduledFlushTask;
+
+    /**
+     * Samples that are merged together: same series, interval and value type.
+     */
+    private record AggregationKey(MetricSamples.SeriesKey series, long interval, boolean floatingPoint,
+                                  double distributionScale) {
+    }
+
+    /**
+     * Creates an aggregator delivering every {@value MetricSamplesCollector#FLUSH_INTERVAL_MS} ms once
+     * {@link #startScheduledFlush() started}.
+     *
+     * @param downstream receives the merged samples of each interval
+     */
+    public MetricSamplesAggregator(Consumer<List<MetricSample>> downstream) {
+        this(MetricSamplesCollector.FLUSH_INTERVAL_MS, downstream);
+    }
+
+    /**
+     * @param intervalMs the delivery interval; must be positive
+     * @param downstream receives the merged samples of each interval
+     */
+    public MetricSamplesAggregator(long intervalMs, Consumer<List<MetricSample>> downstream) {
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("The aggregation interval must be positive");
+        }
+        this.intervalMs = intervalMs;
+        this.downstream = downstream;
+    }
+
+    /**
+     * Creates a streaming collector forwarding its samples to this aggregator, for the metrics of a single
+     * invocation, and {@link #register(MetricSamplesCollector) registers} it. The collector doesn't retain samples.
+     * It must be {@link #unregister(MetricSamplesCollector) unregistered} and closed at the end of the invocation.
+     *
+     * @return the new collector
+     */
+    public MetricSamplesCollector newCollector() {
+        MetricSamplesCollector collector = new MetricSamplesCollector(intervalMs, this)
+            .withRetention(MetricSamplesCollector.Retention.NONE);
+        register(collector);
+        return collector;
+    }
+
+    /**
+     * Registers a collector forwarding its samples to this aggregator: its metrics are flushed before each
+     * delivery, so that long-running invocations are reported at every interval too.
+     *
+     * @param collector the collector to flush
+     */
+    public void register(MetricSamplesCollector collector) {
+        collectors.add(collector);
+    }
+
+    /**
+     * Stops flushing a collector registered with {@link #register(MetricSamplesCollector)}. The samples it
+     * forwards afterwards, e.g. from its final flush on close, are still aggregated.
+     *
+     * @param collector the collector to stop flushing
+     */
+    public void unregister(MetricSamplesCollector collector) {
+        collectors.remove(collector);
+    }
+
+    /**
+     * Merges a sample into the pending sample of its series.
+     *
+     * @param sample the sample; must not be {@code null}
+     */
+    @Override
+    public void accept(MetricSample sample) {
+        receivedCount.increment();
+        AggregationKey key = new AggregationKey(MetricSamples.SeriesKey.of(sample),
+            Math.floorDiv(sample.getSampleTime(), intervalMs), sample.isFloatingPoint(), sample.getDistributionScale());
+        pendingSamples.merge(key, sample, MetricSamples::merge);
+    }
+
+    /**
+     * Merges samples collected elsewhere, e.g. those of a keyword output, into the pending samples.
+     *
+     * @param samples the samples to merge; ignored if {@code null}
+     */
+    public void addSamples(List<MetricSample> samples) {
+        if (samples != null) {
+            samples.forEach(this);
+        }
+    }
+
+    /**
+     * Returns the number of samples received since creation.
+     */
+    public long getReceivedCount() {
+        return receivedCount.sum();
+    }
+
+    /**
+     * Returns the number of merged samples delivered downstream since creation.
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.sum();
+    }
+
+    /**
+     * Sets the clock the {@link #startScheduledFlush() scheduled flushes} are aligned to, e.g. a
+     * {@link step.core.time.ManualClock} in tests.
+     *
+     * @param clock the clock; must not be {@code null}
+     * @return this aggregator
+     */
+    public MetricSamplesAggregator withClock(Clock clock) {
+        this.clock = Objects.requireNonNull(clock, "Clock cannot be null");
+        return this;
+    }
+
+    /**
+     * Starts flushing from the shared background metrics thread, aligned to the wall-clock multiples of the
+     * interval. The scheduled flushes stop when this aggregator is {@link #close() closed}.
+     *
+     * @return this aggregator
+     */
+    public synchronized MetricSamplesAggregator startScheduledFlush() {
+        if (!scheduledFlush && !closed) {
+            scheduledFlush = true;
+            scheduleNextFlush();
+        }
+        return this;
+    }
+
+    private synchronized void scheduleNextFlush() {
+        if (scheduledFlush && !closed) {
+            scheduledFlushTask = MetricsScheduler.get().schedule(this::scheduledFlush, nextFlushDelay(),
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the delay in milliseconds until the next multiple of the interval according to the clock.
+     */
+    long nextFlushDelay() {
+        return MetricsScheduler.delayToNextBoundary(clock.currentTimeMillis(), intervalMs);
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Unexpected exception during the scheduled flush of aggregated metrics", e);
+        } finally {
+            scheduleNextFlush();
+        }
+    }
+
+    /**
+     * Flushes the registered collectors, then delivers the pending merged samples, if any, downstream.
+     */
+    public void flush() {
+        for (MetricSamplesCollector collector : collectors) {
+            collector.flush();
+        }
+        List<MetricSample> samples = new ArrayList<>(pendingSamples.size());
+        for (AggregationKey key : pendingSamples.keySet()) {
+            // samples merged concurrently either make it into the removed sample or start a new pending one
+            MetricSample sample = pendingSamples.remove(key);
+            if (sample != null) {
+                samples.add(sample);
+            }
+        }
+        if (!samples.isEmpty()) {
+            // chronologically, so that the counter samples of a series follow each other's totals
+            samples.sort(Comparator.comparingLong(MetricSample::getSampleTime));
+            samples.replaceAll(sample -> MetricSamples.rebaseCounter(sample, counterTotals));
+            deliveredCount.add(samples.size());
+            downstream.accept(samples);
+        }
+    }
+
+    /**
+     * Stops the scheduled flushes, if any, and delivers the pending samples.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            scheduledFlush = false;
+            if (scheduledFlushTask != null) {
+                scheduledFlushTask.cancel(false);
+                scheduledFlushTask = null;
+            }
+        }
+        flush();
+    }
+}
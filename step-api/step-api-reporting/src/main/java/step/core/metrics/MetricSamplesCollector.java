@@ -18,9 +18,23 @@
  ******************************************************************************/
 package step.core.metrics;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import step.core.time.Clock;
+
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.LongConsumer;
@@ -36,8 +50,16 @@ import java.util.function.LongConsumer;
  * least {@value #FLUSH_INTERVAL_MS} ms have elapsed since the last flush. This prevents excessive
  * sample production for high-frequency metrics while still capturing data promptly.
  * <p>
+ * Alternatively, {@link #startScheduledFlush()} enables time-driven flushing: all registered metrics
+ * are then flushed by a background daemon thread at every wall-clock multiple of the flush interval,
+ * so that quiet metrics are reported promptly, samples of different metrics cover the same time
+ * windows, and observations never trigger a flush themselves.
+ * <p>
  * A guaranteed final flush of all registered metrics is performed by {@link #getSamples()} /
  * {@link #close()}, ensuring no accumulated values are lost at the end of a keyword execution.
+ * Metrics are flushed through {@link Metric#flushSamples(boolean)}, so that metrics in event-time mode
+ * (e.g. {@link SampledMetric#enableEventTime(long, long)}) report one sample per closed time slice and
+ * their still open slices at the final flush.
  * <p>
  * Supports two modes:
  * <ul>
@@ -45,20 +67,57 @@ import java.util.function.LongConsumer;
  *       returned via {@link #getSamples()}.</li>
  *   <li><b>Streaming mode</b> (with forward consumer): each sample is also forwarded to the
  *       supplied consumer (e.g. a {@code step.streaming.util.BatchProcessor}) in addition to
- *       being accumulated.</li>
+ *       being accumulated. The consumer runs on the thread triggering the flush; wrap it in an
+ *       {@link AsyncMetricSampleForwarder} to deliver the samples from a background thread instead.</li>
  * </ul>
+ * Registering an observable gauge ({@link ObservableGaugeMetric}, {@link ObservableDoubleGaugeMetric}) starts the scheduled flush, as its value is only polled by flushes.
+ * <p>
+ * In streaming mode, the samples kept in addition to being forwarded can be limited with
+ * {@link #withRetention(Retention)}, so that a long-running keyword doesn't accumulate them in memory.
+ * {@link #drainSince(long)} reads the retained samples incrementally. {@link #withCoalescing(long)} reduces the
+ * number of returned samples by merging those of the same series.
+ * <p>
+ * The number of distinct series can be bounded with {@link #withMaxSeries(int)}: the samples of metrics
+ * registered beyond the limit are then reported in an overflow series (see {@link CardinalityLimiter}).
  */
 public class MetricSamplesCollector implements AutoCloseable {
 
+    private static final Logger logger = LoggerFactory.getLogger(MetricSamplesCollector.class);
+
     public static final long FLUSH_INTERVAL_MS = 5000;
 
     private final long flushIntervalMs;
     private final Consumer<MetricSample> forwardConsumer;
-    private final ConcurrentLinkedQueue<MetricSample> collectedSamples = new ConcurrentLinkedQueue<>();
+    /**
+     * Retained samples, numbered in the order they were collected. Guarded by itself.
+     */
+    private final ArrayDeque<RetainedSample> retainedSamples = new ArrayDeque<>();
+    private long nextSampleSequence;
+    private volatile Retention retention = Retention.ALL;
+    private volatile int maxRetainedSamples;
+    private volatile long coalescingWindowMs;
+    private volatile Clock clock = Clock.system();
     /**
      * Kept for the final flush.
      */
     private final ConcurrentLinkedQueue<Metric> registeredMetrics = new ConcurrentLinkedQueue<>();
+    /**
+     * Registered metrics whose samples are reported in the overflow series.
+     */
+    private final Set<Metric> foldedMetrics = ConcurrentHashMap.newKeySet();
+    /**
+     * Running totals of the overflow counter series, which merge the samples of several counters.
+     */
+    private final Map<MetricSamples.SeriesKey, Long> overflowCounterTotals = new ConcurrentHashMap<>();
+    private volatile CardinalityLimiter cardinalityLimiter;
+    private volatile boolean scheduledFlush;
+    private volatile boolean closed;
+    private ScheduledFuture<?> scheduledFlushTask;
+    /**
+     * Incremented when the scheduled flushes are started or stopped, so that a flush still running from a
+     * previous start doesn't reschedule itself.
+     */
+    private int scheduledFlushGeneration;
 
     /**
      * Creates a builder in batch mode (i.e. without a forward consumer) with the default {@value #FLUSH_INTERVAL_MS} ms interval.
@@ -87,6 +146,29 @@ public class MetricSamplesCollector implements AutoCloseable {
         this.forwardConsumer = forwardConsumer;
     }
 
+    /**
+     * Defines which samples a streaming collector keeps, in addition to forwarding them, for {@link #getSamples()}
+     * and {@link #drainSince(long)}.
+     */
+    public enum Retention {
+        /**
+         * All samples are kept. This is the default, and the only policy of a collector in batch mode.
+         */
+        ALL,
+        /**
+         * Only the most recent samples are kept, up to the limit passed to {@link #withRetention(Retention, int)}.
+         */
+        BOUNDED,
+        /**
+         * Only the samples of the final flush performed by {@link #getSamples()} or {@link #close()} are kept.
+         */
+        FINAL_ONLY,
+        /**
+         * Samples are only forwarded.
+         */
+        NONE
+    }
+
     /**
      * Registers a metric with this builder. An observation listener is installed on the metric
      * that rate-limits flushing to at most once per {@link #flushIntervalMs} ms.
@@ -94,9 +176,18 @@ public class MetricSamplesCollector implements AutoCloseable {
      * @param metric the metric to track; must not be {@code null}
      */
     public void register(Metric metric) {
+        CardinalityLimiter limiter = cardinalityLimiter;
+        boolean folded = limiter != null && !limiter.tryAdmit(metric.getName(), metric.getLabels());
+        if (folded) {
+            foldedMetrics.add(metric);
+        }
         registeredMetrics.add(metric);
         AtomicLong lastFlushTime = new AtomicLong(0L);
         LongConsumer listener = observationTimestampMs -> {
+            if (scheduledFlush) {
+                // flushes are performed by the scheduler, never on the observing thread
+                return;
+            }
             long last = lastFlushTime.get();
             if (last == 0L) {
                 // First observation: start the interval clock without flushing.
@@ -104,10 +195,199 @@ public class MetricSamplesCollector implements AutoCloseable {
                 lastFlushTime.compareAndSet(0L, observationTimestampMs);
             } else if (observationTimestampMs - last >= flushIntervalMs
                 && lastFlushTime.compareAndSet(last, observationTimestampMs)) {
-                collectAndForward(metric.flush());
+                for (MetricSample sample : metric.flushSamples(false)) {
+                    if (folded) {
+                        sample.setLabels(CardinalityLimiter.OVERFLOW_LABELS);
+                    }
+                    collectAndForward(sample, false);
+                }
             }
         };
         metric.setObservationListener(listener);
+        if (metric instanceof ObservableMetric && flushIntervalMs > 0) {
+            startScheduledFlush();
+        }
+    }
+
+    /**
+     * Limits the number of distinct series (metric name and labels) reported by this collector.
+     * The samples of metrics registered once the limit is reached, as well as added samples of new series,
+     * are reported with the {@link CardinalityLimiter#OVERFLOW_LABELS} instead of their own labels.
+     * The limit applies to the metrics registered and samples added after this call.
+     *
+     * @param maxSeries the maximum number of distinct series; must be positive
+     * @return this collector
+     */
+    public MetricSamplesCollector withMaxSeries(int maxSeries) {
+        this.cardinalityLimiter = new CardinalityLimiter(maxSeries);
+        return this;
+    }
+
+    /**
+     * Returns how many metrics and samples were folded into the overflow series because of the limit
+     * set by {@link #withMaxSeries(int)}.
+     */
+    public long getFoldedSeriesCount() {
+        CardinalityLimiter limiter = cardinalityLimiter;
+        return limiter != null ? limiter.getFoldedCount() : 0;
+    }
+
+    /**
+     * Sets the retention policy of this streaming collector. Samples added with {@link #addSamples(List)} are
+     * always kept, as they aren't forwarded.
+     *
+     * @param retention the retention policy; {@link Retention#BOUNDED} requires a limit, see
+     *                  {@link #withRetention(Retention, int)}
+     * @return this collector
+     * @throws IllegalArgumentException if the policy is {@link Retention#BOUNDED}, which requires a limit
+     * @throws IllegalStateException    if this collector is in batch mode and the policy isn't {@link Retention#ALL}
+     */
+    public MetricSamplesCollector withRetention(Retention retention) {
+        if (retention == Retention.BOUNDED) {
+            throw new IllegalArgumentException("The bounded retention requires a maximum number of samples");
+        }
+        return withRetention(retention, 0);
+    }
+
+    /**
+     * Sets the retention policy of this streaming collector, see {@link #withRetention(Retention)}.
+     *
+     * @param retention  the retention policy
+     * @param maxSamples the maximum number of samples kept by the {@link Retention#BOUNDED} policy, the oldest
+     *                   being evicted first; ignored by the other policies
+     * @return this collector
+     * @throws IllegalArgumentException if the policy is {@link Retention#BOUNDED} and {@code maxSamples} isn't
+     *                                  positive
+     * @throws IllegalStateException    if this collector is in batch mode and the policy isn't {@link Retention#ALL}
+     */
+    public MetricSamplesCollector withRetention(Retention retention, int maxSamples) {
+        Objects.requireNonNull(retention, "The retention cannot be null");
+        if (forwardConsumer == null && retention != Retention.ALL) {
+            throw new IllegalStateException("A collector in batch mode must retain all samples");
+        }
+        if (retention == Retention.BOUNDED && maxSamples <= 0) {
+            throw new IllegalArgumentException("The maximum number of retained samples must be positive");
+        }
+        this.maxRetainedSamples = maxSamples;
+        this.retention = retention;
+        return this;
+    }
+
+    /**
+     * Merges the samples returned by {@link #getSamples()} and {@link #drainSince(long)} that belong to the same
+     * series (name, labels and type) and whose sample times fall into the same window of {@code windowMs}
+     * milliseconds: counts, sums and distributions are added and min/max combined, the merged sample taking the
+     * time and last value of the most recent one. Counter samples, which may come from different counters (e.g.
+     * with {@link #addSamples(List)}), report a running total of the series across the merged samples. The
+     * forwarded samples are not affected.
+     *
+     * @param windowMs the duration of the coalescing windows, e.g. {@link Long#MAX_VALUE} for a single sample per
+     *                 series; {@code 0} disables the coalescing
+     * @return this collector
+     */
+    public MetricSamplesCollector withCoalescing(long windowMs) {
+        if (windowMs < 0) {
+            throw new IllegalArgumentException("The coalescing window cannot be negative");
+        }
+        this.coalescingWindowMs = windowMs;
+        return this;
+    }
+
+    /**
+     * Sets the clock the {@link #startScheduledFlush() scheduled flushes} are aligned to, e.g. a
+     * {@link step.core.time.ManualClock} in tests. The samples are still timestamped by the metrics' own clocks.
+     *
+     * @param clock the clock; must not be {@code null}
+     * @return this collector
+     */
+    public MetricSamplesCollector withClock(Clock clock) {
+        this.clock = Objects.requireNonNull(clock, "Clock cannot be null");
+        return this;
+    }
+
+    /**
+     * Starts flushing all registered metrics from a background daemon thread, aligned to the
+     * wall-clock multiples of the flush interval (e.g. at :00, :05, :10 for the default
+     * {@value #FLUSH_INTERVAL_MS} ms). Once started, observations no longer trigger flushes.
+     * Metrics without new observations since their previous flush produce no sample.
+     * The scheduled flushes stop when this collector is {@link #close() closed}.
+     *
+     * @return this collector
+     */
+    public synchronized MetricSamplesCollector startScheduledFlush() {
+        if (flushIntervalMs <= 0) {
+            throw new IllegalStateException("Scheduled flushing requires a positive flush interval");
+        }
+        if (!scheduledFlush && !closed) {
+            scheduledFlush = true;
+            scheduleNextFlush(++scheduledFlushGeneration);
+        }
+        return this;
+    }
+
+    /**
+     * Stops the scheduled flushes started by {@link #startScheduledFlush()}, if any. Observations trigger
+     * flushes again afterwards.
+     *
+     * @return this collector
+     */
+    public synchronized MetricSamplesCollector stopScheduledFlush() {
+        scheduledFlush = false;
+        scheduledFlushGeneration++;
+        if (scheduledFlushTask != null) {
+            scheduledFlushTask.cancel(false);
+            scheduledFlushTask = null;
+        }
+        return this;
+    }
+
+    private synchronized void scheduleNextFlush(int generation) {
+        if (scheduledFlush && !closed && generation == scheduledFlushGeneration) {
+            scheduledFlushTask = MetricsScheduler.get().schedule(() -> scheduledFlush(generation), nextFlushDelay(),
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the delay in milliseconds until the next multiple of the flush interval according to the clock.
+     */
+    long nextFlushDelay() {
+        return MetricsScheduler.delayToNextBoundary(clock.currentTimeMillis(), flushIntervalMs);
+    }
+
+    private void scheduledFlush(int generation) {
+        try {
+            flushRegisteredMetrics(false);
+        } catch (Exception e) {
+            logger.error("Unexpected exception during the scheduled flush of metrics", e);
+        } finally {
+            scheduleNextFlush(generation);
+        }
+    }
+
+    private void flushRegisteredMetrics(boolean finalFlush) {
+        Map<MetricSamples.SeriesKey, MetricSample> overflowSamples = null;
+        for (Metric metric : registeredMetrics) {
+            for (MetricSample sample : metric.flushSamples(finalFlush)) {
+                if (sample.getCount() > 0) {
+                    if (foldedMetrics.contains(metric)) {
+                        // merge the folded metrics into a single overflow sample per name and type
+                        sample.setLabels(CardinalityLimiter.OVERFLOW_LABELS);
+                        if (overflowSamples == null) {
+                            overflowSamples = new HashMap<>();
+                        }
+                        overflowSamples.merge(MetricSamples.SeriesKey.of(sample), sample, MetricSamples::merge);
+                    } else {
+                        collectAndForward(sample, finalFlush);
+                    }
+                }
+            }
+        }
+        if (overflowSamples != null) {
+            for (MetricSample sample : overflowSamples.values()) {
+                collectAndForward(MetricSamples.rebaseCounter(sample, overflowCounterTotals), finalFlush);
+            }
+        }
     }
 
     /**
@@ -120,41 +400,142 @@ public class MetricSamplesCollector implements AutoCloseable {
         if (samples == null || samples.isEmpty()) {
             return;
         }
-        collectedSamples.addAll(samples);
+        CardinalityLimiter limiter = cardinalityLimiter;
+        if (limiter != null) {
+            List<MetricSample> admitted = new ArrayList<>(samples.size());
+            for (MetricSample sample : samples) {
+                // the given samples may still be used by the caller: folded ones are copied, not relabeled
+                admitted.add(limiter.tryAdmit(sample.getName(), sample.getLabels())
+                    ? sample : sample.withLabels(CardinalityLimiter.OVERFLOW_LABELS));
+            }
+            samples = admitted;
+        }
+        synchronized (retainedSamples) {
+            for (MetricSample sample : samples) {
+                retainedSamples.add(new RetainedSample(nextSampleSequence++, sample));
+            }
+        }
+    }
+
+    /**
+     * Flushes all registered metrics (regardless of the rate limit): their new samples are forwarded, and retained
+     * according to the {@link Retention retention policy}. Unlike {@link #getSamples()} and {@link #close()},
+     * this isn't a final flush: event-time slices still open are not reported, and the collector keeps running.
+     */
+    public void flush() {
+        flushRegisteredMetrics(false);
     }
 
     /**
      * Performs a final flush of all registered metrics (regardless of the rate limit),
      * appends any non-empty samples to the collected set, and returns the complete list.
      * <p>
-     * Calling this more than once is safe but will add duplicate final-flush samples
-     * for any metrics that accumulate new observations between calls.
+     * Calling this more than once is safe but returns the previously collected samples again; use
+     * {@link #drainSince(long)} to only get the new ones.
      *
-     * @return a snapshot of all collected samples including the final flush; never {@code null}
+     * @return a snapshot of all retained samples including the final flush; never {@code null}
      */
     public List<MetricSample> getSamples() {
-        for (Metric metric : registeredMetrics) {
-            MetricSample sample = metric.flush();
-            if (sample.getCount() > 0) {
-                collectAndForward(sample);
+        flushRegisteredMetrics(true);
+        synchronized (retainedSamples) {
+            List<MetricSample> samples = new ArrayList<>(retainedSamples.size());
+            for (RetainedSample retainedSample : retainedSamples) {
+                samples.add(retainedSample.sample());
             }
+            return coalesce(samples);
         }
-        return new ArrayList<>(collectedSamples);
     }
 
     /**
-     * Performs the final flush (same as {@link #getSamples()}) and discards the result.
-     * Intended for the streaming use case where the forward consumer handles delivery.
+     * Flushes all registered metrics (regardless of the rate limit), then returns the retained samples collected
+     * since the given cursor. Start with the cursor {@code 0}, then pass the {@link SampleBatch#getCursor() cursor}
+     * of the previous batch to only get new samples. Samples evicted by the {@link Retention#BOUNDED} retention
+     * before being read are skipped.
+     * <p>
+     * Unlike {@link #getSamples()}, this isn't a final flush: event-time slices still open are not reported.
+     *
+     * @param cursor the cursor returned with the previous batch, or {@code 0}
+     * @return the new samples and the cursor to pass to the next call
+     */
+    public SampleBatch drainSince(long cursor) {
+        flush();
+        synchronized (retainedSamples) {
+            List<MetricSample> samples = new ArrayList<>();
+            Iterator<RetainedSample> newestFirst = retainedSamples.descendingIterator();
+            while (newestFirst.hasNext()) {
+                RetainedSample retainedSample = newestFirst.next();
+                if (retainedSample.sequence() < cursor) {
+                    break;
+                }
+                samples.add(retainedSample.sample());
+            }
+            Collections.reverse(samples);
+            return new SampleBatch(coalesce(samples), nextSampleSequence);
+        }
+    }
+
+    private List<MetricSample> coalesce(List<MetricSample> samples) {
+        long windowMs = coalescingWindowMs;
+        return windowMs > 0 && samples.size() > 1 ? MetricSamples.coalesce(samples, windowMs) : samples;
+    }
+
+    /**
+     * Stops the scheduled flushes, if any, then performs the final flush (same as {@link #getSamples()})
+     * and discards the result. Intended for the streaming use case where the forward consumer handles delivery.
      */
     @Override
     public void close() {
+        synchronized (this) {
+            closed = true;
+            stopScheduledFlush();
+        }
         getSamples();
     }
 
-    private void collectAndForward(MetricSample sample) {
-        collectedSamples.add(sample);
+    private void collectAndForward(MetricSample sample, boolean finalFlush) {
+        Retention currentRetention = retention;
+        if (currentRetention == Retention.ALL || currentRetention == Retention.BOUNDED
+            || (currentRetention == Retention.FINAL_ONLY && finalFlush)) {
+            synchronized (retainedSamples) {
+                retainedSamples.add(new RetainedSample(nextSampleSequence++, sample));
+                if (currentRetention == Retention.BOUNDED && retainedSamples.size() > maxRetainedSamples) {
+                    retainedSamples.poll();
+                }
+            }
+        }
         if (forwardConsumer != null) {
             forwardConsumer.accept(sample);
         }
     }
+
+    private record RetainedSample(long sequence, MetricSample sample) {
+    }
+
+    /**
+     * Samples returned by {@link #drainSince(long)}, with the cursor to pass to the next call.
+     */
+    public static final class SampleBatch {
+
+        private final List<MetricSample> samples;
+        private final long cursor;
+
+        SampleBatch(List<MetricSample> samples, long cursor) {
+            this.samples = samples;
+            this.cursor = cursor;
+        }
+
+        /**
+         * Returns the samples collected since the requested cursor, in collection order.
+         */
+        public List<MetricSample> getSamples() {
+            return samples;
+        }
+
+        /**
+         * Returns the cursor to pass to the next {@link #drainSince(long)} call.
+         */
+        public long getCursor() {
+            return cursor;
+        }
+    }
 }
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+/**
+ * Read-only view of the observations of a {@link SampledMetric} over its recent sliding window, returned by
+ * {@link SampledMetric#snapshot()}. Intended for keywords adapting their behavior to their own measurements,
+ * e.g. a load ramp backing off when the 95th percentile latency exceeds an SLA.
+ */
+public final class MetricSnapshot {
+
+    private final long windowMs;
+    private final long count;
+    private final long sum;
+    private final long min;
+    private final long max;
+    private final BucketCounts distribution;
+
+    MetricSnapshot(long windowMs, long count, long sum, long min, long max, BucketCounts distribution) {
+        this.windowMs = windowMs;
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+        this.distribution = distribution;
+    }
+
+    /** Returns the duration covered by this snapshot, in milliseconds. */
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    /** Returns the number of observations in the window. */
+    public long getCount() {
+        return count;
+    }
+
+    /** Returns the sum of the observed values in the window. */
+    public long getSum() {
+        return sum;
+    }
+
+    /** Returns the minimum observed value in the window, 0 if there was no observation. */
+    public long getMin() {
+        return min;
+    }
+
+    /** Returns the maximum observed value in the window, 0 if there was no observation. */
+    public long getMax() {
+        return max;
+    }
+
+    /** Returns the mean of the observed values in the window, {@code NaN} if there was no observation. */
+    public double getMean() {
+        return count > 0 ? (double) sum / count : Double.NaN;
+    }
+
+    /** Returns the number of observations per second over the window. */
+    public double getRatePerSecond() {
+        return count * 1000d / windowMs;
+    }
+
+    /** Returns the bucketed distribution of the observed values in the window. */
+    public BucketCounts getDistribution() {
+        return distribution;
+    }
+
+    /**
+     * Estimates the value at the given percentile from the distribution: the result is the key (lowest value) of
+     * the bucket holding the percentile, bounded by {@link #getMin()} and {@link #getMax()}.
+     *
+     * @param percentile the percentile, between 0 and 100 (e.g. 95)
+     * @return the estimated value, {@code NaN} if there was no observation
+     */
+    public double getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("The percentile must be between 0 and 100");
+        }
+        long total = distribution.totalCount();
+        if (total == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.ceil(percentile / 100 * total);
+        long seen = 0;
+        for (int i = 0; i < distribution.size(); i++) {
+            seen += distribution.countAt(i);
+            if (seen >= rank) {
+                return Math.min(Math.max(distribution.keyAt(i), min), max);
+            }
+        }
+        return max;
+    }
+}
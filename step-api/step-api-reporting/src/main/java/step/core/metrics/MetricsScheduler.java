@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Holder of the single daemon thread shared by all background metric tasks of the JVM
+ * (e.g. the scheduled flushes of {@link MetricSamplesCollector}).
+ * The thread is only started when the first task is scheduled.
+ */
+final class MetricsScheduler {
+
+    private MetricsScheduler() {
+    }
+
+    private static final class Holder {
+        private static final ScheduledExecutorService INSTANCE = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("step-metrics-scheduler").daemon(true).factory());
+    }
+
+    static ScheduledExecutorService get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Returns the delay in milliseconds from {@code nowMs} to the next wall-clock multiple of {@code intervalMs}.
+     */
+    static long delayToNextBoundary(long nowMs, long intervalMs) {
+        return intervalMs - Math.floorMod(nowMs, intervalMs);
+    }
+}
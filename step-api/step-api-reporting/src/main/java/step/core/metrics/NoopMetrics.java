@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared metric instances discarding all observations, returned by {@link step.reporting.LiveMetrics} when live
+ * reporting is disabled, so that instrumented keywords don't pay for accumulating values nobody reads.
+ * <p>
+ * The instances are shared by all callers regardless of the requested name and labels, and are never flushed.
+ * Their observation methods are empty, which lets the JIT inline them away. Their name is {@link #NAME} and their
+ * labels are empty, whatever was requested, and the snapshots of no-op sampled metrics are always empty.
+ * <p>
+ * {@link step.reporting.LiveMetrics} decides whether to return a no-op instance when the metric is registered: a
+ * no-op instance never turns into a reporting metric, even if live reporting is enabled later.
+ */
+public final class NoopMetrics {
+
+    /**
+     * Name of the shared no-op instances.
+     */
+    public static final String NAME = "noop";
+
+    private static final MetricSnapshot EMPTY_SNAPSHOT = new MetricSnapshot(1, 0, 0, 0, 0, BucketCounts.EMPTY);
+
+    private static final NoopCounter COUNTER = new NoopCounter();
+    private static final NoopTimer TIMER = new NoopTimer();
+    private static final NoopObservableGauge GAUGE = new NoopObservableGauge();
+    private static final NoopObservableDoubleGauge DOUBLE_GAUGE = new NoopObservableDoubleGauge();
+    private static final NoopDoubleHistogram DOUBLE_HISTOGRAM = new NoopDoubleHistogram();
+    private static final NoopSummary SUMMARY = new NoopSummary();
+
+    private NoopMetrics() {
+    }
+
+    public static CounterMetric counter() {
+        return COUNTER;
+    }
+
+    public static GaugeMetric gauge() {
+        return GAUGE;
+    }
+
+    public static HistogramMetric histogram() {
+        return TIMER;
+    }
+
+    public static TimerMetric timer() {
+        return TIMER;
+    }
+
+    public static ObservableGaugeMetric observableGauge() {
+        return GAUGE;
+    }
+
+    public static DoubleGaugeMetric doubleGauge() {
+        return DOUBLE_GAUGE;
+    }
+
+    public static ObservableDoubleGaugeMetric observableDoubleGauge() {
+        return DOUBLE_GAUGE;
+    }
+
+    public static DoubleHistogramMetric doubleHistogram() {
+        return DOUBLE_HISTOGRAM;
+    }
+
+    public static SummaryMetric summary() {
+        return SUMMARY;
+    }
+
+    /**
+     * Returns a family whose children are all the shared no-op {@link #counter()}.
+     */
+    public static CounterFamily counterFamily(String name, List<String> labelNames) {
+        return new CounterFamily(name, labelNames, metric -> {
+        }) {
+            @Override
+            public CounterMetric withLabels(String... labelValues) {
+                return COUNTER;
+            }
+
+            @Override
+            public CounterMetric withLabels(String labelValue) {
+                return COUNTER;
+            }
+
+            @Override
+            public CounterMetric withLabels(String labelValue1, String labelValue2) {
+                return COUNTER;
+            }
+        };
+    }
+
+    /**
+     * Returns a family whose children are all the shared no-op {@link #histogram()}.
+     */
+    public static HistogramFamily histogramFamily(String name, List<String> labelNames) {
+        return new HistogramFamily(name, labelNames, metric -> {
+        }) {
+            @Override
+            public HistogramMetric withLabels(String... labelValues) {
+                return TIMER;
+            }
+
+            @Override
+            public HistogramMetric withLabels(String labelValue) {
+                return TIMER;
+            }
+
+            @Override
+            public HistogramMetric withLabels(String labelValue1, String labelValue2) {
+                return TIMER;
+            }
+        };
+    }
+
+    private static final class NoopCounter extends CounterMetric {
+
+        private NoopCounter() {
+            super(NAME, Map.of());
+        }
+
+        @Override
+        public CounterMetric increment() {
+            return this;
+        }
+
+        @Override
+        public CounterMetric increment(long amount) {
+            return this;
+        }
+
+        @Override
+        public CounterMetric increment(long amount, long observationTimestampMs) {
+            return this;
+        }
+
+        @Override
+        public CounterMetric enableEventTime(long sliceMs, long allowedLatenessMs) {
+            return this;
+        }
+    }
+
+    // also serves as the no-op histogram
+    private static final class NoopTimer extends TimerMetric {
+
+        private NoopTimer() {
+            super(NAME, Map.of(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public SampledMetric observe(long value) {
+            return this;
+        }
+
+        @Override
+        public SampledMetric observe(long value, long observationTimestampMs) {
+            return this;
+        }
+
+        @Override
+        public SampledMetric enableSnapshots(long windowMs, int sliceCount) {
+            return this;
+        }
+
+        @Override
+        public MetricSnapshot snapshot() {
+            return EMPTY_SNAPSHOT;
+        }
+
+        @Override
+        public SampledMetric enableEventTime(long sliceMs, long allowedLatenessMs) {
+            return this;
+        }
+    }
+
+    // also serves as the no-op gauge
+    private static final class NoopObservableGauge extends ObservableGaugeMetric {
+
+        private NoopObservableGauge() {
+            super(NAME, Map.of(), () -> 0);
+        }
+
+        @Override
+        public SampledMetric observe(long value) {
+            return this;
+        }
+
+        @Override
+        public SampledMetric observe(long value, long observationTimestampMs) {
+            return this;
+        }
+
+        @Override
+        public SampledMetric enableSnapshots(long windowMs, int sliceCount) {
+            return this;
+        }
+
+        @Override
+        public MetricSnapshot snapshot() {
+            return EMPTY_SNAPSHOT;
+        }
+
+        @Override
+        public SampledMetric enableEventTime(long sliceMs, long allowedLatenessMs) {
+            return this;
+        }
+    }
+
+    // also serves as the no-op floating-point gauge
+    private static final class NoopObservableDoubleGauge extends ObservableDoubleGaugeMetric {
+
+        private NoopObservableDoubleGauge() {
+            super(NAME, Map.of(), () -> 0);
+        }
+
+        @Override
+        public DoubleSampledMetric observe(double value) {
+            return this;
+        }
+
+        @Override
+        public DoubleSampledMetric observe(double value, long observationTimestampMs) {
+            return this;
+        }
+    }
+
+    private static final class NoopDoubleHistogram extends DoubleHistogramMetric {
+
+        private NoopDoubleHistogram() {
+            super(NAME, Map.of());
+        }
+
+        @Override
+        public DoubleSampledMetric observe(double value) {
+            return this;
+        }
+
+        @Override
+        public DoubleSampledMetric observe(double value, long observationTimestampMs) {
+            return this;
+        }
+    }
+
+    private static final class NoopSummary extends SummaryMetric {
+
+        private NoopSummary() {
+            super(NAME, Map.of());
+        }
+
+        @Override
+        public SummaryMetric observe(long value) {
+            return this;
+        }
+
+        @Override
+        public SummaryMetric observe(long value, long observationTimestampMs) {
+            return this;
+        }
+    }
+}
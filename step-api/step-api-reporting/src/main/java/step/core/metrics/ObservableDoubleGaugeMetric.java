@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.DoubleSupplier;
+
+/**
+ * The floating-point counterpart of {@link ObservableGaugeMetric}: a {@link DoubleGaugeMetric} whose value is
+ * polled from a {@link DoubleSupplier} once per {@link #flush()}.
+ * <p>
+ * If the callback throws, the failure is logged and the flush reports no polled value.
+ */
+public class ObservableDoubleGaugeMetric extends DoubleGaugeMetric implements ObservableMetric {
+
+    private static final Logger logger = LoggerFactory.getLogger(ObservableDoubleGaugeMetric.class);
+
+    private final DoubleSupplier valueSupplier;
+
+    /**
+     * @param valueSupplier called at each flush to obtain the current value
+     */
+    public ObservableDoubleGaugeMetric(String name, DoubleSupplier valueSupplier) {
+        this(name, new HashMap<>(), valueSupplier);
+    }
+
+    /**
+     * @param valueSupplier called at each flush to obtain the current value
+     */
+    public ObservableDoubleGaugeMetric(String name, Map<String, String> labels, DoubleSupplier valueSupplier) {
+        super(name, labels);
+        this.valueSupplier = Objects.requireNonNull(valueSupplier, "Value supplier cannot be null");
+    }
+
+    /**
+     * Polls the current value, then captures the accumulated state like {@link DoubleSampledMetric#flush()}.
+     */
+    @Override
+    public synchronized MetricSample flush() {
+        double value;
+        try {
+            value = valueSupplier.getAsDouble();
+        } catch (Exception e) {
+            logger.warn("Unable to obtain the value of the observable gauge '{}'", getName(), e);
+            return super.flush();
+        }
+        // recorded without notifying the observation listener, which could otherwise trigger another flush
+        record(value);
+        return super.flush();
+    }
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * A gauge whose value is polled from a callback instead of being observed by the keyword,
+ * e.g. a connection pool size, a queue depth or the heap usage.
+ * <p>
+ * The callback is invoked once per {@link #flush()}: a {@link MetricSamplesCollector} registering an
+ * observable gauge starts its {@link MetricSamplesCollector#startScheduledFlush() scheduled flush}, so that
+ * the value is sampled at every flush interval. There is no cost outside of flushes. Values may still be
+ * {@link #observe(long) observed} explicitly in addition to the polled ones.
+ * <p>
+ * See {@link ObservableDoubleGaugeMetric} for floating-point values.
+ * <p>
+ * If the callback throws, the failure is logged and the flush reports no polled value.
+ */
+public class ObservableGaugeMetric extends GaugeMetric implements ObservableMetric {
+
+    private static final Logger logger = LoggerFactory.getLogger(ObservableGaugeMetric.class);
+
+    private final LongSupplier valueSupplier;
+
+    /**
+     * @param valueSupplier called at each flush to obtain the current value
+     */
+    public ObservableGaugeMetric(String name, LongSupplier valueSupplier) {
+        this(name, new HashMap<>(), valueSupplier);
+    }
+
+    /**
+     * @param valueSupplier called at each flush to obtain the current value
+     */
+    public ObservableGaugeMetric(String name, Map<String, String> labels, LongSupplier valueSupplier) {
+        super(name, labels);
+        this.valueSupplier = Objects.requireNonNull(valueSupplier, "Value supplier cannot be null");
+    }
+
+    /**
+     * @param valueSupplier called at each flush to obtain the current value
+     * @param bucketLayout  see {@link SampledMetric#SampledMetric(String, BucketLayout)}
+     */
+    public ObservableGaugeMetric(String name, Map<String, String> labels, BucketLayout bucketLayout,
+                                 LongSupplier valueSupplier) {
+        super(name, labels, bucketLayout);
+        this.valueSupplier = Objects.requireNonNull(valueSupplier, "Value supplier cannot be null");
+    }
+
+    /**
+     * Polls the current value, then captures the accumulated state like {@link SampledMetric#flush()}.
+     */
+    @Override
+    public synchronized MetricSample flush() {
+        long value;
+        try {
+            value = valueSupplier.getAsLong();
+        } catch (Exception e) {
+            logger.warn("Unable to obtain the value of the observable gauge '{}'", getName(), e);
+            return super.flush();
+        }
+        // recorded without notifying the observation listener, which could otherwise trigger another flush
+        record(value, getClock().currentTimeMillis());
+        return super.flush();
+    }
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
+
+/**
+ * Reports the metrics of the same name and type folded because of a {@link CardinalityLimiter} as a single series
+ * labeled with {@link CardinalityLimiter#OVERFLOW_LABELS}: at every flush, the samples of the folded metrics are
+ * merged into one (see {@link MetricSamplesCollector#withCoalescing(long)} for the merge semantics). For counters,
+ * the merged sample's totals are the running total of this metric rather than the ones of the folded counters.
+ * <p>
+ * The folded metrics keep recording their own observations; their observation listener is the one of this
+ * metric, so that a collector flushes this metric as a whole. Used by {@link step.reporting.LiveMetrics}.
+ */
+public final class OverflowMetric extends Metric {
+
+    private final InstrumentType type;
+    private final List<Metric> folded = new CopyOnWriteArrayList<>();
+    private final Map<MetricSamples.SeriesKey, Long> counterTotals = new ConcurrentHashMap<>();
+    private volatile LongConsumer observationListener;
+
+    /**
+     * @param name the name of the folded metrics
+     * @param type the type of the folded metrics
+     */
+    public OverflowMetric(String name, InstrumentType type) {
+        super(name, CardinalityLimiter.OVERFLOW_LABELS);
+        this.type = type;
+    }
+
+    /**
+     * Adds a metric to the ones reported by this metric.
+     *
+     * @param metric a metric of the same name and type
+     */
+    public void fold(Metric metric) {
+        if (!metric.getName().equals(getName()) || metric.getType() != type) {
+            throw new IllegalArgumentException("Only metrics named '" + getName() + "' of type " + type + " can be folded");
+        }
+        metric.setObservationListener(observationListener);
+        folded.add(metric);
+    }
+
+    /**
+     * Returns the folded metrics.
+     */
+    public List<Metric> getFoldedMetrics() {
+        return List.copyOf(folded);
+    }
+
+    @Override
+    public InstrumentType getType() {
+        return type;
+    }
+
+    @Override
+    public void setObservationListener(LongConsumer listener) {
+        this.observationListener = listener;
+        folded.forEach(metric -> metric.setObservationListener(listener));
+    }
+
+    @Override
+    public MetricSample flush() {
+        return flushSamples(false).get(0);
+    }
+
+    @Override
+    public List<MetricSample> flushSamples(boolean finalFlush) {
+        List<MetricSample> samples = new ArrayList<>();
+        for (Metric metric : folded) {
+            for (MetricSample sample : metric.flushSamples(finalFlush)) {
+                sample.setLabels(getLabels());
+                samples.add(sample);
+            }
+        }
+        if (samples.isEmpty()) {
+            MetricSample empty = new MetricSample(getClock().currentTimeMillis(), getName(), getLabels(), type,
+                0, 0, 0, 0, 0, null);
+            return List.of(MetricSamples.rebaseCounter(empty, counterTotals));
+        }
+        MetricSample merged = samples.get(0);
+        for (int i = 1; i < samples.size(); i++) {
+            merged = MetricSamples.merge(merged, samples.get(i));
+        }
+        return List.of(MetricSamples.rebaseCounter(merged, counterTotals));
+    }
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.Map;
+
+/**
+ * Mergeable quantile sketch with a relative-error guarantee (DDSketch), reported by {@link SummaryMetric}s
+ * in {@link MetricSample#getSketch()}.
+ * <p>
+ * Values are counted in logarithmic buckets: a positive value {@code v} falls into the bucket of index
+ * {@code ceil(log(v) / log(gamma))} with {@code gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy)}, negative
+ * values into the same buckets of their absolute value, and values close to zero in a dedicated count.
+ * Any quantile is then estimated within {@code relativeAccuracy} of the actual value, whatever the value range,
+ * and the number of buckets only grows with the logarithm of the range of the observed values.
+ * <p>
+ * Sketches of the same series, e.g. reported by different agents, are combined with {@link #merge(QuantileSketch, QuantileSketch)},
+ * which is exact for sketches sharing the same relative accuracy. Sketches with different accuracies are merged into
+ * the buckets of the coarser one, with a weaker accuracy guarantee, see the method.
+ * <p>
+ * Like {@link MetricSample}, this is a plain bean for Jackson (de)serialization: bucket maps are keyed by bucket index.
+ */
+public class QuantileSketch {
+
+    /**
+     * Default relative accuracy of the sketches: quantiles are estimated within 1%.
+     */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    /**
+     * Values whose absolute value is below this one are counted as zero.
+     */
+    public static final double MIN_INDEXABLE_VALUE = 1e-9;
+
+    private double relativeAccuracy = DEFAULT_RELATIVE_ACCURACY;
+    private long zeroCount;
+    private BucketCounts positiveBuckets = BucketCounts.EMPTY;
+    private BucketCounts negativeBuckets = BucketCounts.EMPTY;
+
+    /** Required for Jackson deserialization. */
+    public QuantileSketch() {
+    }
+
+    /**
+     * @param relativeAccuracy the relative accuracy the buckets were computed with
+     * @param zeroCount        the number of values counted as zero
+     * @param positiveBuckets  the counts of positive values by bucket index
+     * @param negativeBuckets  the counts of negative values by bucket index of their absolute value
+     */
+    public QuantileSketch(double relativeAccuracy, long zeroCount, Map<Long, Long> positiveBuckets,
+                          Map<Long, Long> negativeBuckets) {
+        this.relativeAccuracy = checkRelativeAccuracy(relativeAccuracy);
+        this.zeroCount = zeroCount;
+        this.positiveBuckets = positiveBuckets == null ? BucketCounts.EMPTY : BucketCounts.of(positiveBuckets);
+        this.negativeBuckets = negativeBuckets == null ? BucketCounts.EMPTY : BucketCounts.of(negativeBuckets);
+    }
+
+    /** Returns the relative accuracy of the quantiles estimated by this sketch. */
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /** Required for Jackson deserialization. */
+    public void setRelativeAccuracy(double relativeAccuracy) {
+        this.relativeAccuracy = checkRelativeAccuracy(relativeAccuracy);
+    }
+
+    /** Returns the number of values counted as zero. */
+    public long getZeroCount() {
+        return zeroCount;
+    }
+
+    /** Required for Jackson deserialization. */
+    public void setZeroCount(long zeroCount) {
+        this.zeroCount = zeroCount;
+    }
+
+    /** Returns the counts of positive values by bucket index. */
+    public Map<Long, Long> getPositiveBuckets() {
+        return positiveBuckets;
+    }
+
+    /** Required for Jackson deserialization. */
+    public void setPositiveBuckets(Map<Long, Long> positiveBuckets) {
+        this.positiveBuckets = positiveBuckets == null ? BucketCounts.EMPTY : BucketCounts.of(positiveBuckets);
+    }
+
+    /** Returns the counts of negative values by bucket index of their absolute value. */
+    public Map<Long, Long> getNegativeBuckets() {
+        return negativeBuckets;
+    }
+
+    /** Required for Jackson deserialization. */
+    public void setNegativeBuckets(Map<Long, Long> negativeBuckets) {
+        this.negativeBuckets = negativeBuckets == null ? BucketCounts.EMPTY : BucketCounts.of(negativeBuckets);
+    }
+
+    /**
+     * Returns the total number of values counted by this sketch.
+     */
+    public long totalCount() {
+        return zeroCount + positiveBuckets.totalCount() + negativeBuckets.totalCount();
+    }
+
+    /**
+     * Estimates the value at the given quantile.
+     *
+     * @param quantile the quantile, between 0 and 1 (e.g. 0.99 for the 99th percentile)
+     * @return the estimated value, within the relative accuracy of the actual one; {@code NaN} if the sketch is empty
+     */
+    public double quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("The quantile must be between 0 and 1");
+        }
+        long count = totalCount();
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        double gamma = gamma(relativeAccuracy);
+        long seen = 0;
+        // negative values in ascending order, i.e. by descending index of their absolute value
+        for (int i = negativeBuckets.size() - 1; i >= 0; i--) {
+            seen += negativeBuckets.countAt(i);
+            if (seen > rank) {
+                return -valueOf(negativeBuckets.keyAt(i), gamma);
+            }
+        }
+        seen += zeroCount;
+        if (seen > rank) {
+            return 0;
+        }
+        for (int i = 0; i < positiveBuckets.size(); i++) {
+            seen += positiveBuckets.countAt(i);
+            if (seen > rank) {
+                return valueOf(positiveBuckets.keyAt(i), gamma);
+            }
+        }
+        return valueOf(positiveBuckets.keyAt(positiveBuckets.size() - 1), gamma);
+    }
+
+    /**
+     * Merges two sketches into a new one counting the values of both.
+     * <p>
+     * If the relative accuracies differ, the representative value of each bucket of the finer sketch is counted in
+     * the bucket of the coarser one it falls into, and the result is labeled with the coarser accuracy. As a fine
+     * bucket may straddle a coarse bucket boundary, its values can end up in the neighbouring coarse bucket: the
+     * quantiles of such a merge are only guaranteed within about the sum of both accuracies
+     * ({@code (1 + a) * (1 + b) - 1} for accuracies {@code a} and {@code b}), not within the coarser accuracy alone.
+     * Merge sketches of the same accuracy to keep the guarantee.
+     */
+    public static QuantileSketch merge(QuantileSketch a, QuantileSketch b) {
+        double relativeAccuracy = Math.max(a.relativeAccuracy, b.relativeAccuracy);
+        return new QuantileSketch(relativeAccuracy, a.zeroCount + b.zeroCount,
+            BucketCounts.merge(a.positiveBuckets(relativeAccuracy), b.positiveBuckets(relativeAccuracy)),
+            BucketCounts.merge(a.negativeBuckets(relativeAccuracy), b.negativeBuckets(relativeAccuracy)));
+    }
+
+    private BucketCounts positiveBuckets(double targetAccuracy) {
+        return remap(positiveBuckets, targetAccuracy);
+    }
+
+    private BucketCounts negativeBuckets(double targetAccuracy) {
+        return remap(negativeBuckets, targetAccuracy);
+    }
+
+    private BucketCounts remap(BucketCounts buckets, double targetAccuracy) {
+        if (targetAccuracy == relativeAccuracy || buckets.size() == 0) {
+            return buckets;
+        }
+        double gamma = gamma(relativeAccuracy);
+        double targetLogGamma = Math.log(gamma(targetAccuracy));
+        BucketCounts.Appender remapped = new BucketCounts.Appender(buckets.size());
+        buckets.forEachBucket((index, count) -> remapped.append(indexOf(valueOf(index, gamma), targetLogGamma), count));
+        return remapped.toSortedBucketCounts();
+    }
+
+    static double gamma(double relativeAccuracy) {
+        return (1 + relativeAccuracy) / (1 - relativeAccuracy);
+    }
+
+    static long indexOf(double absoluteValue, double logGamma) {
+        return (long) Math.ceil(Math.log(absoluteValue) / logGamma);
+    }
+
+    /**
+     * Returns the representative value of a bucket, at equal relative distance of both bucket bounds.
+     */
+    static double valueOf(long index, double gamma) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    static double checkRelativeAccuracy(double relativeAccuracy) {
+        if (!(relativeAccuracy > 0 && relativeAccuracy < 1)) {
+            throw new IllegalArgumentException("relativeAccuracy must be between 0 and 1 (exclusive)");
+        }
+        return relativeAccuracy;
+    }
+}
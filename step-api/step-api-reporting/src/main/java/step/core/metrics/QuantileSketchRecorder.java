@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe accumulator of a {@link QuantileSketch}.
+ * <p>
+ * The bucket indexes of all values between {@link QuantileSketch#MIN_INDEXABLE_VALUE} and {@code 1e19} (larger
+ * values being counted in the last bucket) form a fixed range, whose counters are allocated lazily by pages, so
+ * that only the value ranges actually observed take memory. Recording a value is a logarithm and an
+ * atomic increment.
+ */
+final class QuantileSketchRecorder {
+
+    private static final double MAX_INDEXABLE_VALUE = 1e19;
+    private static final int PAGE_SIZE = 128;
+
+    private final double relativeAccuracy;
+    private final double logGamma;
+    private final long minIndex;
+    private final long maxIndex;
+    private final LongAdder zeroCount = new LongAdder();
+    private final AtomicReferenceArray<AtomicLongArray> positivePages;
+    private final AtomicReferenceArray<AtomicLongArray> negativePages;
+
+    QuantileSketchRecorder(double relativeAccuracy) {
+        this.relativeAccuracy = QuantileSketch.checkRelativeAccuracy(relativeAccuracy);
+        this.logGamma = Math.log(QuantileSketch.gamma(relativeAccuracy));
+        this.minIndex = QuantileSketch.indexOf(QuantileSketch.MIN_INDEXABLE_VALUE, logGamma);
+        this.maxIndex = QuantileSketch.indexOf(MAX_INDEXABLE_VALUE, logGamma);
+        int pages = (int) ((maxIndex - minIndex) / PAGE_SIZE + 1);
+        this.positivePages = new AtomicReferenceArray<>(pages);
+        this.negativePages = new AtomicReferenceArray<>(pages);
+    }
+
+    void record(double value) {
+        double absoluteValue = Math.abs(value);
+        if (!(absoluteValue >= QuantileSketch.MIN_INDEXABLE_VALUE)) {
+            // also counts NaN as zero rather than corrupting the buckets
+            zeroCount.increment();
+            return;
+        }
+        long index = Math.min(QuantileSketch.indexOf(absoluteValue, logGamma), maxIndex);
+        int slot = (int) (index - minIndex);
+        AtomicReferenceArray<AtomicLongArray> pages = value > 0 ? positivePages : negativePages;
+        AtomicLongArray page = pages.get(slot / PAGE_SIZE);
+        if (page == null) {
+            pages.compareAndSet(slot / PAGE_SIZE, null, new AtomicLongArray(PAGE_SIZE));
+            page = pages.get(slot / PAGE_SIZE);
+        }
+        page.incrementAndGet(slot % PAGE_SIZE);
+    }
+
+    /**
+     * Returns the values counted so far as a sketch and resets all counts.
+     */
+    QuantileSketch drain() {
+        return new QuantileSketch(relativeAccuracy, zeroCount.sumThenReset(), drain(positivePages), drain(negativePages));
+    }
+
+    private BucketCounts drain(AtomicReferenceArray<AtomicLongArray> pages) {
+        BucketCounts.Appender buckets = new BucketCounts.Appender(16);
+        for (int p = 0; p < pages.length(); p++) {
+            AtomicLongArray page = pages.get(p);
+            if (page != null) {
+                for (int i = 0; i < PAGE_SIZE; i++) {
+                    if (page.get(i) != 0) {
+                        long count = page.getAndSet(i, 0);
+                        if (count > 0) {
+                            // pages and slots are visited in ascending index order
+                            buckets.append(minIndex + (long) p * PAGE_SIZE + i, count);
+                        }
+                    }
+                }
+            }
+        }
+        return buckets.toBucketCounts();
+    }
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulators of a {@link SampledMetric} for one reporting interval:
+ * {@code count}, {@code sum}, {@code min}, {@code max} and the bucketed distribution.
+ * <p>
+ * Recording is thread-safe. Draining is only consistent once no writer records into the
+ * interval anymore, which {@link IntervalPhaser} guarantees.
+ */
+final class SampledInterval {
+
+    private final LongAdder countAdder = new LongAdder();
+    private final LongAdder sumAdder = new LongAdder();
+    private final AtomicLong minAtomic = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxAtomic = new AtomicLong(Long.MIN_VALUE);
+    private final BucketCounters distributionAccumulator;
+
+    SampledInterval(BucketLayout bucketLayout, LongAdder foldedObservations) {
+        this.distributionAccumulator = bucketLayout.newCounters(foldedObservations);
+    }
+
+    void record(long value) {
+        countAdder.increment();
+        sumAdder.add(value);
+        updateMin(value);
+        updateMax(value);
+        distributionAccumulator.record(value);
+    }
+
+    // min and max only change rarely once an interval is warmed up: read first and only attempt
+    // a CAS when the value actually improves, so that concurrent writers don't contend on them
+    private void updateMin(long value) {
+        long current = minAtomic.get();
+        while (value < current && !minAtomic.compareAndSet(current, value)) {
+            current = minAtomic.get();
+        }
+    }
+
+    private void updateMax(long value) {
+        long current = maxAtomic.get();
+        while (value > current && !maxAtomic.compareAndSet(current, value)) {
+            current = maxAtomic.get();
+        }
+    }
+
+    /**
+     * Captures the accumulated values into a new {@link MetricSample} of the given metric without resetting them.
+     * Concurrent observations may be partially reflected.
+     */
+    MetricSample peek(Metric metric, long sampleTime, long last) {
+        long count = countAdder.sum();
+        long min = minAtomic.get();
+        long max = maxAtomic.get();
+        return new MetricSample(sampleTime, metric.getName(), metric.getLabels(), metric.getType(),
+            count, sumAdder.sum(), count > 0 ? min : 0, count > 0 ? max : 0, last, distributionAccumulator.peek());
+    }
+
+    /**
+     * Captures the accumulated values into a new {@link MetricSample} of the given metric and resets them.
+     */
+    MetricSample drain(Metric metric, long sampleTime, long last) {
+        long count = countAdder.sumThenReset();
+        long sum = sumAdder.sumThenReset();
+        long min = minAtomic.getAndSet(Long.MAX_VALUE);
+        long max = maxAtomic.getAndSet(Long.MIN_VALUE);
+        BucketCounts distribution = distributionAccumulator.drain();
+        return new MetricSample(sampleTime, metric.getName(), metric.getLabels(), metric.getType(),
+            count, sum, count > 0 ? min : 0, count > 0 ? max : 0, last, distribution);
+    }
+}
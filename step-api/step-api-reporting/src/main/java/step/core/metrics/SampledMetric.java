@@ -18,9 +18,10 @@
  ******************************************************************************/
 package step.core.metrics;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 
@@ -30,10 +31,24 @@ import java.util.concurrent.atomic.LongAdder;
  * <p>
  * Accumulates {@code count}, {@code sum}, {@code min}, {@code max}, a bucketed
  * {@code distribution}, and {@code last} (most recently observed value).
+ * How values are grouped into distribution buckets is defined by a {@link BucketLayout}
+ * (equal-width buckets of {@code percentilePrecision} by default).
  * All accumulators are thread-safe; {@code count/sum/min/max/distribution} are reset
  * on each {@link #flush()}, while {@code last} is retained across flushes.
  * <p>
+ * The interval accumulators are double-buffered: a flush switches recording threads over to a fresh
+ * set of accumulators and waits for the in-flight observations of the previous set before reading it.
+ * Each {@link MetricSample} is therefore internally consistent ({@code count} matches the distribution
+ * total, {@code min/max} belong to the same interval), while {@link #observe(long)} never blocks.
+ * <p>
  * Use {@link #observe(long)} to record values.
+ * <p>
+ * Keywords can query their own recent observations without affecting the reported samples: after
+ * {@link #enableSnapshots(long)}, {@link #snapshot()} returns percentiles, mean and rate over a sliding window.
+ * <p>
+ * By default, the timestamp passed to {@link #observe(long, long)} only drives the flush rate limit. When
+ * replaying past observations, {@link #enableEventTime(long, long)} groups them into time slices by their own
+ * timestamp instead, each slice being reported as a separate sample.
  */
 public abstract class SampledMetric extends Metric {
 
@@ -46,26 +61,21 @@ public abstract class SampledMetric extends Metric {
      */
     private static final long DEFAULT_PCL_PRECISION = 10;
 
-    /**
-     * @see #DEFAULT_PCL_PRECISION
-     */
-    private final long percentilePrecision;
+    private final BucketLayout bucketLayout;
 
-    private final LongAdder countAdder = new LongAdder();
-    private final LongAdder sumAdder = new LongAdder();
-    private final AtomicLong minAtomic = new AtomicLong(Long.MAX_VALUE);
-    private final AtomicLong maxAtomic = new AtomicLong(Long.MIN_VALUE);
-    private final ConcurrentHashMap<Long, LongAdder> distributionAccumulator = new ConcurrentHashMap<>();
-    private volatile long last;
+    private final IntervalPhaser<SampledInterval> intervals;
+    private final AtomicLong last = new AtomicLong();
+    private final LongAdder foldedObservations = new LongAdder();
+    private volatile SlidingWindow slidingWindow;
+    private volatile EventTimeSlices<EventTimeSlice> eventTimeSlices;
+    private volatile SampledInterval cumulative;
 
     protected SampledMetric(String name) {
-        super(name);
-        this.percentilePrecision = DEFAULT_PCL_PRECISION;
+        this(name, BucketLayout.linear(DEFAULT_PCL_PRECISION));
     }
 
     protected SampledMetric(String name, Map<String, String> labels) {
-        super(name, labels);
-        this.percentilePrecision = DEFAULT_PCL_PRECISION;
+        this(name, labels, BucketLayout.linear(DEFAULT_PCL_PRECISION));
     }
 
     /**
@@ -76,18 +86,54 @@ public abstract class SampledMetric extends Metric {
      *                            in the millions). Must be positive.
      */
     protected SampledMetric(String name, long percentilePrecision) {
-        super(name);
-        if (percentilePrecision <= 0) throw new IllegalArgumentException("pclPrecision must be positive");
-        this.percentilePrecision = percentilePrecision;
+        this(name, BucketLayout.linear(percentilePrecision));
     }
 
     /**
      * @param percentilePrecision see {@link #SampledMetric(String, long)}
      */
     protected SampledMetric(String name, Map<String, String> labels, long percentilePrecision) {
+        this(name, labels, BucketLayout.linear(percentilePrecision));
+    }
+
+    /**
+     * @param bucketLayout defines how observed values are grouped into distribution buckets,
+     *                     e.g. {@link BucketLayout#logLinear(int, long)} to keep a bounded relative
+     *                     error and a fixed memory footprint over large value ranges
+     */
+    protected SampledMetric(String name, BucketLayout bucketLayout) {
+        super(name);
+        this.bucketLayout = Objects.requireNonNull(bucketLayout, "Bucket layout cannot be null");
+        this.intervals = newIntervals(bucketLayout, foldedObservations);
+    }
+
+    /**
+     * @param bucketLayout see {@link #SampledMetric(String, BucketLayout)}
+     */
+    protected SampledMetric(String name, Map<String, String> labels, BucketLayout bucketLayout) {
         super(name, labels);
-        if (percentilePrecision <= 0) throw new IllegalArgumentException("pclPrecision must be positive");
-        this.percentilePrecision = percentilePrecision;
+        this.bucketLayout = Objects.requireNonNull(bucketLayout, "Bucket layout cannot be null");
+        this.intervals = newIntervals(bucketLayout, foldedObservations);
+    }
+
+    private static IntervalPhaser<SampledInterval> newIntervals(BucketLayout bucketLayout, LongAdder foldedObservations) {
+        return new IntervalPhaser<>(new SampledInterval(bucketLayout, foldedObservations),
+            new SampledInterval(bucketLayout, foldedObservations));
+    }
+
+    /**
+     * Returns the layout used to bucket the observed values of this metric.
+     */
+    public BucketLayout getBucketLayout() {
+        return bucketLayout;
+    }
+
+    /**
+     * Returns the total number of observations that were counted in the {@link BucketLayout#OVERFLOW_BUCKET}
+     * because the bucket limit of the layout was reached, since this metric was created.
+     */
+    public long getFoldedObservationCount() {
+        return foldedObservations.sum();
     }
 
     /**
@@ -97,7 +143,7 @@ public abstract class SampledMetric extends Metric {
      * @param value the observed value (e.g. a response time in ms, or a quantity)
      */
     public SampledMetric observe(long value) {
-        observe(value, System.currentTimeMillis());
+        observe(value, getClock().currentTimeMillis());
         return this;
     }
 
@@ -109,35 +155,189 @@ public abstract class SampledMetric extends Metric {
      * @param observationTimestampMs epoch milliseconds of this observation
      */
     public SampledMetric observe(long value, long observationTimestampMs) {
-        countAdder.increment();
-        sumAdder.add(value);
-        minAtomic.updateAndGet(cur -> Math.min(cur, value));
-        maxAtomic.updateAndGet(cur -> Math.max(cur, value));
-        distributionAccumulator
-            .computeIfAbsent(value - value % percentilePrecision, k -> new LongAdder())
-            .increment();
-        this.last = value;
-        notifyObserved(observationTimestampMs);
+        if (record(value, observationTimestampMs)) {
+            notifyObserved(observationTimestampMs);
+        }
+        return this;
+    }
+
+    /**
+     * Records an observation without notifying the observation listener, e.g. for values polled during a flush.
+     *
+     * @return {@code false} if the observation was discarded because its event-time slice is already closed
+     */
+    boolean record(long value, long observationTimestampMs) {
+        EventTimeSlices<EventTimeSlice> slices = eventTimeSlices;
+        if (slices == null) {
+            IntervalPhaser.Phase<SampledInterval> phase = intervals.enter();
+            try {
+                phase.value().record(value);
+            } finally {
+                phase.exit();
+            }
+        } else if (!slices.record(observationTimestampMs, value, EventTimeSlice::record)) {
+            return false;
+        }
+        SampledInterval cumulativeInterval = cumulative;
+        if (cumulativeInterval != null) {
+            cumulativeInterval.record(value);
+        }
+        SlidingWindow window = slidingWindow;
+        if (window != null) {
+            window.record(value, observationTimestampMs);
+        }
+        // Ordered store: no full fence needed, readers only require eventual visibility
+        last.lazySet(value);
+        return true;
+    }
+
+    /**
+     * Starts keeping the observations of the last {@code windowMs} milliseconds in a sliding window of 10 slices,
+     * queried by {@link #snapshot()}. Until then, observations carry no such cost.
+     *
+     * @param windowMs the duration of the window; must be positive
+     * @return this metric
+     */
+    public SampledMetric enableSnapshots(long windowMs) {
+        return enableSnapshots(windowMs, 10);
+    }
+
+    /**
+     * Starts keeping the observations of the last {@code windowMs} milliseconds in a sliding window, queried by
+     * {@link #snapshot()}. The window moves by steps of {@code windowMs / sliceCount}. Calling it again replaces
+     * the window, discarding its content.
+     *
+     * @param windowMs   the duration of the window; must be positive
+     * @param sliceCount the number of slices of the window; must be positive
+     * @return this metric
+     */
+    public SampledMetric enableSnapshots(long windowMs, int sliceCount) {
+        slidingWindow = new SlidingWindow(windowMs, sliceCount, bucketLayout, getClock().currentTimeMillis());
+        return this;
+    }
+
+    /**
+     * Returns the statistics of the observations in the sliding window enabled by {@link #enableSnapshots(long)}.
+     * Unlike {@link #flush()}, this doesn't reset anything and doesn't affect the samples reported by the framework.
+     *
+     * @return a snapshot of the sliding window
+     * @throws IllegalStateException if snapshots weren't enabled
+     */
+    public MetricSnapshot snapshot() {
+        SlidingWindow window = slidingWindow;
+        if (window == null) {
+            throw new IllegalStateException("Snapshots aren't enabled for the metric '" + getName() + "'");
+        }
+        return window.snapshot(getClock().currentTimeMillis());
+    }
+
+    /**
+     * Returns the most recently observed value, without flushing.
+     */
+    public long getLast() {
+        return last.get();
+    }
+
+    /**
+     * Starts accumulating the observations of this metric over its whole lifetime, in addition to the reporting
+     * intervals, for destinations exposing cumulative values (e.g. a Prometheus endpoint). Has no effect if
+     * already enabled.
+     * <b>Reserved for the framework.</b>
+     *
+     * @return this metric
+     */
+    public synchronized SampledMetric enableCumulative() {
+        if (cumulative == null) {
+            cumulative = new SampledInterval(bucketLayout, new LongAdder());
+        }
+        return this;
+    }
+
+    /**
+     * Returns the observations accumulated since {@link #enableCumulative()} was called, without resetting them
+     * nor affecting {@link #flush()}.
+     * <b>Reserved for the framework.</b>
+     *
+     * @return a sample whose count, sum, min, max and distribution cover all observations since then
+     * @throws IllegalStateException if the cumulative accumulation wasn't enabled
+     */
+    public MetricSample peekCumulative() {
+        SampledInterval cumulativeInterval = cumulative;
+        if (cumulativeInterval == null) {
+            throw new IllegalStateException("Cumulative accumulation isn't enabled for the metric '" + getName() + "'");
+        }
+        return cumulativeInterval.peek(this, getLastObservedTimestampMs(), last.get());
+    }
+
+    /**
+     * Switches this metric to event-time aggregation: from now on, observations are grouped into slices of
+     * {@code sliceMs} milliseconds according to the timestamp passed to {@link #observe(long, long)}, and each
+     * slice is reported as a separate sample stamped with the start of the slice.
+     * <p>
+     * A slice is reported once an observation at least {@code allowedLatenessMs} past its end has been recorded,
+     * or at the final flush. Observations arriving for an already reported slice are dropped and counted by
+     * {@link #getLateObservationCount()}.
+     *
+     * @param sliceMs           the duration of a time slice; must be positive
+     * @param allowedLatenessMs how long a slice remains open after its end; must not be negative
+     * @return this metric
+     */
+    public SampledMetric enableEventTime(long sliceMs, long allowedLatenessMs) {
+        eventTimeSlices = new EventTimeSlices<>(sliceMs, allowedLatenessMs,
+            () -> new EventTimeSlice(bucketLayout, foldedObservations));
         return this;
     }
 
+    /**
+     * Returns the number of observations dropped because they arrived after their event-time slice was reported.
+     */
+    public long getLateObservationCount() {
+        EventTimeSlices<EventTimeSlice> slices = eventTimeSlices;
+        return slices != null ? slices.getLateObservationCount() : 0;
+    }
+
     /**
      * Captures the accumulated distribution statistics into a new {@link MetricSample},
      * resets all accumulators except {@code last}, and returns the snapshot.
      */
     @Override
-    public MetricSample flush() {
-        long count = countAdder.sumThenReset();
-        long sum = sumAdder.sumThenReset();
-        long min = count > 0 ? minAtomic.getAndSet(Long.MAX_VALUE) : 0;
-        long max = count > 0 ? maxAtomic.getAndSet(Long.MIN_VALUE) : 0;
-        Map<Long, Long> distribution = new HashMap<>();
-        distributionAccumulator.forEach((k, adder) -> {
-            long val = adder.sumThenReset();
-            if (val > 0) {
-                distribution.put(k, val);
-            }
-        });
-        return new MetricSample(getLastObservedTimestampMs(), getName(), getLabels(), getType(), count, sum, min, max, last, distribution);
+    public synchronized MetricSample flush() {
+        SampledInterval interval = intervals.flip();
+        return interval.drain(this, getLastObservedTimestampMs(), last.get());
+    }
+
+    /**
+     * In event-time mode, returns a sample per closed time slice, preceded by the sample of the observations
+     * recorded before the mode was enabled, if any.
+     */
+    @Override
+    public synchronized List<MetricSample> flushSamples(boolean finalFlush) {
+        EventTimeSlices<EventTimeSlice> slices = eventTimeSlices;
+        if (slices == null) {
+            return List.of(flush());
+        }
+        List<MetricSample> samples = new ArrayList<>();
+        MetricSample sample = flush();
+        if (sample.getCount() > 0) {
+            samples.add(sample);
+        }
+        for (Map.Entry<Long, EventTimeSlice> slice : slices.close(finalFlush)) {
+            samples.add(slice.getValue().interval.drain(this, slice.getKey(), slice.getValue().last.get()));
+        }
+        return samples;
+    }
+
+    private static final class EventTimeSlice {
+        private final SampledInterval interval;
+        private final AtomicLong last = new AtomicLong();
+
+        private EventTimeSlice(BucketLayout bucketLayout, LongAdder foldedObservations) {
+            this.interval = new SampledInterval(bucketLayout, foldedObservations);
+        }
+
+        private static void record(EventTimeSlice slice, long value) {
+            slice.interval.record(value);
+            slice.last.lazySet(value);
+        }
     }
 }
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sliding window of the most recent observations of a {@link SampledMetric}, kept independently of the
+ * interval accumulators so that reading it never affects the flushed samples.
+ * <p>
+ * The window is a ring of time slices, each accumulating the observations of {@code sliceMs} milliseconds.
+ * Recording into the current slice is lock-free; a slice is only reset (under its lock) the first time it is
+ * reused for a newer period. Observations racing with that reset, or older than the window, may be dropped,
+ * which is acceptable for the approximate, local queries the window serves.
+ */
+final class SlidingWindow {
+
+    private final long sliceMs;
+    private final Slice[] slices;
+    private final long createdAtMs;
+
+    SlidingWindow(long windowMs, int sliceCount, BucketLayout bucketLayout, long nowMs) {
+        if (windowMs <= 0) throw new IllegalArgumentException("windowMs must be positive");
+        if (sliceCount <= 0) throw new IllegalArgumentException("sliceCount must be positive");
+        this.sliceMs = Math.max(1, windowMs / sliceCount);
+        this.slices = new Slice[sliceCount];
+        for (int i = 0; i < sliceCount; i++) {
+            slices[i] = new Slice(bucketLayout);
+        }
+        this.createdAtMs = nowMs;
+    }
+
+    void record(long value, long timestampMs) {
+        long period = Math.floorDiv(timestampMs, sliceMs);
+        Slice slice = slices[(int) Math.floorMod(period, (long) slices.length)];
+        long slicePeriod = slice.period.get();
+        if (slicePeriod != period) {
+            if (period < slicePeriod) {
+                // the slice already holds a more recent period: this observation is out of the window
+                return;
+            }
+            slice.rotate(period);
+        }
+        slice.record(value);
+    }
+
+    MetricSnapshot snapshot(long nowMs) {
+        long currentPeriod = Math.floorDiv(nowMs, sliceMs);
+        long count = 0;
+        long sum = 0;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        BucketCounts distribution = BucketCounts.EMPTY;
+        for (Slice slice : slices) {
+            long period = slice.period.get();
+            if (period > currentPeriod - slices.length && period <= currentPeriod) {
+                long sliceCount = slice.count.sum();
+                if (sliceCount > 0) {
+                    count += sliceCount;
+                    sum += slice.sum.sum();
+                    min = Math.min(min, slice.min.get());
+                    max = Math.max(max, slice.max.get());
+                    distribution = BucketCounts.merge(distribution, slice.distribution.peek());
+                }
+            }
+        }
+        // the window covers the elapsed part of the current slice and the full previous ones,
+        // but not more than the lifetime of the window
+        long windowMs = (slices.length - 1) * sliceMs + (nowMs - currentPeriod * sliceMs) + 1;
+        windowMs = Math.max(1, Math.min(windowMs, nowMs - createdAtMs + 1));
+        return new MetricSnapshot(windowMs, count, sum, count > 0 ? min : 0, count > 0 ? max : 0, distribution);
+    }
+
+    private static final class Slice {
+        private final AtomicLong period = new AtomicLong(Long.MIN_VALUE);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+        private final BucketCounters distribution;
+
+        private Slice(BucketLayout bucketLayout) {
+            this.distribution = bucketLayout.newCounters();
+        }
+
+        private synchronized void rotate(long newPeriod) {
+            if (period.get() < newPeriod) {
+                count.reset();
+                sum.reset();
+                min.set(Long.MAX_VALUE);
+                max.set(Long.MIN_VALUE);
+                distribution.drain();
+                period.set(newPeriod);
+            }
+        }
+
+        private void record(long value) {
+            count.increment();
+            sum.add(value);
+            long current = min.get();
+            while (value < current && !min.compareAndSet(current, value)) {
+                current = min.get();
+            }
+            current = max.get();
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+            distribution.record(value);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A summary metric tracking the quantiles of the observed values with a mergeable, relative-error
+ * {@link QuantileSketch} instead of a bucketed distribution.
+ * <p>
+ * Unlike the {@code distribution} of a {@link HistogramMetric}, whose buckets depend on the configured layout, the
+ * sketches reported by summaries can be merged accurately across agents and over time (see
+ * {@link QuantileSketch#merge(QuantileSketch, QuantileSketch)}), and their size only grows with the logarithm of the
+ * value range. Samples carry the sketch in {@link MetricSample#getSketch()} along with exact {@code count}, {@code sum},
+ * {@code min}, {@code max} and {@code last}; their {@code distribution} is {@code null}.
+ * <p>
+ * Like {@link SampledMetric}, the interval accumulators are double-buffered and {@link #observe(long)} never blocks.
+ */
+public class SummaryMetric extends Metric {
+
+    private final double relativeAccuracy;
+    private final IntervalPhaser<SummaryInterval> intervals;
+    private final AtomicLong last = new AtomicLong();
+
+    public SummaryMetric(String name) {
+        this(name, new HashMap<>());
+    }
+
+    public SummaryMetric(String name, Map<String, String> labels) {
+        this(name, labels, QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    /**
+     * @param relativeAccuracy the relative accuracy of the estimated quantiles, between 0 and 1 (e.g. {@code 0.01} for 1%)
+     */
+    public SummaryMetric(String name, Map<String, String> labels, double relativeAccuracy) {
+        super(name, labels);
+        this.relativeAccuracy = QuantileSketch.checkRelativeAccuracy(relativeAccuracy);
+        this.intervals = new IntervalPhaser<>(new SummaryInterval(relativeAccuracy), new SummaryInterval(relativeAccuracy));
+    }
+
+    @Override
+    public InstrumentType getType() {
+        return InstrumentType.SUMMARY;
+    }
+
+    /**
+     * Returns the relative accuracy of the estimated quantiles.
+     */
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * Records a single observation, using the current wall-clock time as the observation
+     * timestamp for rate-limit decisions.
+     *
+     * @param value the observed value (e.g. a response time in ms)
+     */
+    public SummaryMetric observe(long value) {
+        return observe(value, getClock().currentTimeMillis());
+    }
+
+    /**
+     * Records a single observation, using the supplied timestamp as the observation
+     * timestamp for rate-limit decisions.
+     *
+     * @param value                  the observed value (e.g. a response time in ms)
+     * @param observationTimestampMs epoch milliseconds of this observation
+     */
+    public SummaryMetric observe(long value, long observationTimestampMs) {
+        IntervalPhaser.Phase<SummaryInterval> phase = intervals.enter();
+        try {
+            phase.value().record(value);
+        } finally {
+            phase.exit();
+        }
+        last.lazySet(value);
+        notifyObserved(observationTimestampMs);
+        return this;
+    }
+
+    /**
+     * Captures the accumulated statistics and sketch into a new {@link MetricSample},
+     * resets all accumulators except {@code last}, and returns the snapshot.
+     */
+    @Override
+    public synchronized MetricSample flush() {
+        SummaryInterval interval = intervals.flip();
+        return interval.drain(this, getLastObservedTimestampMs(), last.get());
+    }
+}
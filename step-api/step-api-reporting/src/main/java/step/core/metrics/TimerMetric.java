@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A histogram of durations measured with {@link System#nanoTime()} and recorded in a configurable
+ * {@link TimeUnit}, e.g. {@link TimeUnit#MICROSECONDS} to make sub-millisecond latencies measurable.
+ * <p>
+ * Durations can be measured without allocating:
+ * <ul>
+ *   <li>with a primitive start time: {@code long start = timer.start(); ...; timer.stop(start);}</li>
+ *   <li>with a {@link Stopwatch}, created once and reused (by a single thread at a time), optionally as a
+ *       try-with-resources scope: {@code try (TimerMetric.Stopwatch s = stopwatch.start()) { ... }}</li>
+ * </ul>
+ * Timers are reported as {@link InstrumentType#HISTOGRAM}s. Unless a layout is given, they use a
+ * {@link BucketLayout#logLinear(int, long) log-linear layout} with 2 significant digits tracking up to
+ * one hour in the recording unit, so that the same relative precision applies to short and long durations.
+ */
+public class TimerMetric extends HistogramMetric {
+
+    private final TimeUnit unit;
+
+    /**
+     * Creates a timer recording in milliseconds.
+     */
+    public TimerMetric(String name) {
+        this(name, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param unit the unit in which durations are recorded
+     */
+    public TimerMetric(String name, TimeUnit unit) {
+        this(name, new HashMap<>(), unit);
+    }
+
+    /**
+     * @param unit the unit in which durations are recorded
+     */
+    public TimerMetric(String name, Map<String, String> labels, TimeUnit unit) {
+        this(name, labels, unit, defaultBucketLayout(unit));
+    }
+
+    /**
+     * @param unit         the unit in which durations are recorded
+     * @param bucketLayout see {@link SampledMetric#SampledMetric(String, BucketLayout)}; bucket keys are
+     *                     expressed in {@code unit}
+     */
+    public TimerMetric(String name, Map<String, String> labels, TimeUnit unit, BucketLayout bucketLayout) {
+        super(name, labels, bucketLayout);
+        this.unit = Objects.requireNonNull(unit, "Time unit cannot be null");
+    }
+
+    private static BucketLayout defaultBucketLayout(TimeUnit unit) {
+        Objects.requireNonNull(unit, "Time unit cannot be null");
+        return BucketLayout.logLinear(2, Math.max(2, unit.convert(1, TimeUnit.HOURS)));
+    }
+
+    /**
+     * Returns the unit in which durations are recorded.
+     */
+    public TimeUnit getUnit() {
+        return unit;
+    }
+
+    /**
+     * Returns the start time of a measurement, to be passed to {@link #stop(long)}.
+     *
+     * @return the current value of the {@link step.core.time.Clock#nanoTime() clock}
+     */
+    public long start() {
+        return getClock().nanoTime();
+    }
+
+    /**
+     * Records the time elapsed since the given start time.
+     *
+     * @param startNanos the value returned by {@link #start()}
+     * @return the recorded duration, in the unit of this timer
+     */
+    public long stop(long startNanos) {
+        return recordNanos(getClock().nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a duration expressed in nanoseconds.
+     *
+     * @return the recorded duration, in the unit of this timer
+     */
+    public long recordNanos(long durationNanos) {
+        long duration = unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+        observe(duration);
+        return duration;
+    }
+
+    /**
+     * Records a duration expressed in the given unit.
+     *
+     * @return the recorded duration, in the unit of this timer
+     */
+    public long record(long duration, TimeUnit durationUnit) {
+        long converted = unit.convert(duration, durationUnit);
+        observe(converted);
+        return converted;
+    }
+
+    /**
+     * Creates a new {@link Stopwatch} recording into this timer. Create it once and reuse it.
+     */
+    public Stopwatch stopwatch() {
+        return new Stopwatch(this);
+    }
+
+    /**
+     * Reusable measurement handle of a {@link TimerMetric}. A stopwatch holds the start time of a
+     * single measurement and must therefore not be shared between concurrently measuring threads.
+     * Closing it stops the running measurement, allowing its use as a try-with-resources scope.
+     */
+    public static final class Stopwatch implements AutoCloseable {
+
+        private final TimerMetric timer;
+        private long startNanos;
+        private boolean running;
+
+        private Stopwatch(TimerMetric timer) {
+            this.timer = timer;
+        }
+
+        /**
+         * Starts a new measurement, discarding any running one.
+         *
+         * @return this stopwatch
+         */
+        public Stopwatch start() {
+            running = true;
+            startNanos = timer.start();
+            return this;
+        }
+
+        /**
+         * Stops the running measurement and records it.
+         *
+         * @return the recorded duration in the unit of the timer, or -1 if no measurement was running
+         */
+        public long stop() {
+            if (!running) {
+                return -1;
+            }
+            running = false;
+            return timer.stop(startNanos);
+        }
+
+        /**
+         * Same as {@link #stop()}.
+         */
+        @Override
+        public void close() {
+            stop();
+        }
+    }
+}
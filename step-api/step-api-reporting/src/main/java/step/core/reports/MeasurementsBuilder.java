@@ -18,19 +18,35 @@
  ******************************************************************************/
 package step.core.reports;
 
+import step.core.time.Clock;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Stack;
 
 public class MeasurementsBuilder {
 
+    private final Clock clock;
+
     private Stack<Measure> stack = new Stack<Measure>();
 
     private List<Measure> closedMeasures = new ArrayList<>();
 
+    public MeasurementsBuilder() {
+        this(Clock.system());
+    }
+
+    /**
+     * @param clock the clock providing the begin and end time of the measures when not given explicitly
+     */
+    public MeasurementsBuilder(Clock clock) {
+        this.clock = Objects.requireNonNull(clock, "Clock cannot be null");
+    }
+
     public void startMeasure(String name) {
-        pushMeasure(new Measure(name, 0, System.currentTimeMillis(), null));
+        pushMeasure(new Measure(name, 0, clock.currentTimeMillis(), null));
     }
 
     public void startMeasure(String name, long begin) {
@@ -64,11 +80,11 @@ public class MeasurementsBuilder {
     }
 
     public Measure stopMeasure(Map<String, Object> data, Measure.Status status) {
-        return stopMeasure(System.currentTimeMillis(), data, status);
+        return stopMeasure(clock.currentTimeMillis(), data, status);
     }
 
     public Measure stopMeasure(Map<String, Object> data) {
-        return stopMeasure(System.currentTimeMillis(), data, null);
+        return stopMeasure(clock.currentTimeMillis(), data, null);
     }
 
     public Measure stopMeasure() {
@@ -84,7 +100,7 @@ public class MeasurementsBuilder {
     }
 
     public void addMeasure(String measureName, long aDurationMillis, Map<String, Object> data) {
-        addMeasure(measureName, aDurationMillis, System.currentTimeMillis(), data);
+        addMeasure(measureName, aDurationMillis, clock.currentTimeMillis(), data);
     }
 
     public void addMeasure(String measureName, long aDurationMillis, long begin, Map<String, Object> data) {
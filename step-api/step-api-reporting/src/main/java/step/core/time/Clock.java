@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.time;
+
+/**
+ * Source of the current time used to timestamp metric observations and measures.
+ * <p>
+ * {@link #system()} reads the system clock on every call. {@link #coarse()} returns a cached value refreshed
+ * every millisecond by a single background thread, suited to hot paths where reading the system time for each
+ * event is a measurable cost. {@link ManualClock} lets tests control the time deterministically.
+ */
+public interface Clock {
+
+    /**
+     * Returns the current time in epoch milliseconds, see {@link System#currentTimeMillis()}.
+     */
+    long currentTimeMillis();
+
+    /**
+     * Returns the value of a monotonic time source in nanoseconds, only meaningful to compute durations,
+     * see {@link System#nanoTime()}.
+     */
+    long nanoTime();
+
+    /**
+     * Returns the clock reading the system time on every call.
+     */
+    static Clock system() {
+        return SystemClock.INSTANCE;
+    }
+
+    /**
+     * Returns the shared clock caching the system time with a millisecond resolution. The background thread
+     * refreshing it is started on first use. {@link #nanoTime()} is not cached.
+     */
+    static Clock coarse() {
+        return CoarseClock.get();
+    }
+}
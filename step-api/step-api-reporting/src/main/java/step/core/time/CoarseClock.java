@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.time;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link Clock} returning a cached system time, refreshed every millisecond by a single daemon thread, so that
+ * reading the time is a plain volatile read.
+ */
+final class CoarseClock implements Clock {
+
+    private static final long REFRESH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private volatile long currentTimeMillis = System.currentTimeMillis();
+
+    private CoarseClock() {
+    }
+
+    static CoarseClock get() {
+        return Holder.INSTANCE;
+    }
+
+    private static final class Holder {
+        private static final CoarseClock INSTANCE = start();
+
+        private static CoarseClock start() {
+            CoarseClock clock = new CoarseClock();
+            Thread thread = new Thread(clock::refresh, "step-coarse-clock");
+            thread.setDaemon(true);
+            thread.start();
+            return clock;
+        }
+    }
+
+    private void refresh() {
+        while (!Thread.currentThread().isInterrupted()) {
+            currentTimeMillis = System.currentTimeMillis();
+            LockSupport.parkNanos(REFRESH_INTERVAL_NANOS);
+        }
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTimeMillis;
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.core.time;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link Clock} whose time only changes when told to, for deterministic tests, e.g. of the rate-limited
+ * flushes of metrics without sleeping.
+ */
+public class ManualClock implements Clock {
+
+    private final AtomicLong currentTimeMillis;
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    /**
+     * @param initialTimeMillis the initial time, in epoch milliseconds
+     */
+    public ManualClock(long initialTimeMillis) {
+        this.currentTimeMillis = new AtomicLong(initialTimeMillis);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTimeMillis.get();
+    }
+
+    @Override
+    public long nanoTime() {
+        return nanoTime.get();
+    }
+
+    /**
+     * Moves the time forward by the given duration.
+     *
+     * @param duration the duration; must not be negative
+     * @param unit     the unit of the duration
+     * @return this clock
+     */
+    public ManualClock advance(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("The time cannot move backwards");
+        }
+        currentTimeMillis.addAndGet(unit.toMillis(duration));
+        nanoTime.addAndGet(unit.toNanos(duration));
+        return this;
+    }
+
+    /**
+     * Sets the current time. Unlike {@link #advance(long, TimeUnit)}, this doesn't affect {@link #nanoTime()},
+     * as a wall-clock adjustment wouldn't.
+     *
+     * @param timeMillis the new time, in epoch milliseconds
+     * @return this clock
+     */
+    public ManualClock setTimeMillis(long timeMillis) {
+        currentTimeMillis.set(timeMillis);
+        return this;
+    }
+}
@@ -29,6 +29,16 @@ public class CommonMimeTypes {
      */
     public static final String APPLICATION_PLAYWRIGHT_TRACE = "application/vnd.step.playwright-trace+zip";
 
+    /**
+     * MIME type for metric samples in the compact binary encoding of {@link step.core.metrics.MetricSampleCodec}.
+     */
+    public static final String APPLICATION_STEP_METRIC_SAMPLES = "application/vnd.step.metric-samples";
+
+    /**
+     * MIME type of the OpenMetrics text exposition format, as served to Prometheus scrapers.
+     */
+    public static final String APPLICATION_OPENMETRICS_TEXT = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
     private CommonMimeTypes() {
     }
 }
@@ -3,8 +3,10 @@ package step.reporting;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import step.core.reports.Measure;
+import step.core.time.Clock;
 import step.reporting.impl.LiveMeasureDestination;
 
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
@@ -23,6 +25,7 @@ public class LiveMeasures {
      * Concrete implementation class where measures are forwarded
      */
     public final LiveMeasureDestination destination;
+    private final Clock clock;
     // ConcurrentLinkedDeque is a thread-safe alternative to stacks
     private final ConcurrentLinkedDeque<Measure> ongoingStack = new ConcurrentLinkedDeque<>();
 
@@ -33,7 +36,19 @@ public class LiveMeasures {
      * @param destination data destination object, i.e., where measures are forwarded to
      */
     public LiveMeasures(LiveMeasureDestination destination) {
+        this(destination, Clock.system());
+    }
+
+    /**
+     * Instantiates a new LiveMeasures object using the given clock to time the measures.
+     * <b>Reserved for the framework</b>, do not use for normal API usage.
+     *
+     * @param destination data destination object, i.e., where measures are forwarded to
+     * @param clock       the clock providing the begin and end time of the measures
+     */
+    public LiveMeasures(LiveMeasureDestination destination, Clock clock) {
         this.destination = destination;
+        this.clock = Objects.requireNonNull(clock, "clock must not be null");
     }
 
 
@@ -53,6 +68,34 @@ public class LiveMeasures {
         destination.accept(measure);
     }
 
+    /**
+     * Immediately submits several pre-constructed {@link Measure}s in a single batch.
+     * <p>
+     * Prefer this over repeated calls to {@link #addMeasure(Measure)} when many measures are produced
+     * at once, as the destination can then ship them together.
+     * </p>
+     *
+     * @param measures the measures to submit; must not be {@code null}, nor contain {@code null} elements
+     */
+    public void addMeasures(List<Measure> measures) {
+        Objects.requireNonNull(measures, "measures must not be null");
+        for (Measure measure : measures) {
+            Objects.requireNonNull(measure, "measure must not be null");
+            Objects.requireNonNull(measure.getStatus(), "measure status must not be null");
+            Objects.requireNonNull(measure.getName(), "measure name must not be null");
+        }
+        if (!measures.isEmpty()) {
+            destination.acceptBatch(measures);
+        }
+    }
+
+    /**
+     * Asks the destination to deliver the measures it may have buffered so far.
+     */
+    public void flush() {
+        destination.flush();
+    }
+
     /**
      * Starts a new measure with the given name and pushes it onto the internal stack.
      * <p>
@@ -64,7 +107,7 @@ public class LiveMeasures {
     public void startMeasure(String measureName) {
         Measure measure = new Measure();
         measure.setName(Objects.requireNonNull(measureName));
-        measure.setBegin(System.currentTimeMillis());
+        measure.setBegin(clock.currentTimeMillis());
         ongoingStack.push(measure);
     }
 
@@ -100,7 +143,7 @@ public class LiveMeasures {
      * @throws IllegalArgumentException if called without a matching call to {@link #startMeasure(String)}
      */
     public void stopMeasure(Measure.Status status, Map<String, Object> data) {
-        long now = System.currentTimeMillis();
+        long now = clock.currentTimeMillis();
         try {
             Measure measure = ongoingStack.pop();
             measure.setDuration(now - measure.getBegin());
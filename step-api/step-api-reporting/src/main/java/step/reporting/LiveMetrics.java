@@ -20,26 +20,70 @@ package step.reporting;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import step.core.metrics.BucketLayout;
+import step.core.metrics.CardinalityLimiter;
+import step.core.metrics.CounterFamily;
 import step.core.metrics.CounterMetric;
+import step.core.metrics.DoubleGaugeMetric;
+import step.core.metrics.DoubleHistogramMetric;
 import step.core.metrics.GaugeMetric;
+import step.core.metrics.HistogramFamily;
 import step.core.metrics.HistogramMetric;
+import step.core.metrics.InstrumentType;
 import step.core.metrics.Metric;
+import step.core.metrics.MetricFamilies;
+import step.core.metrics.NoopMetrics;
+import step.core.metrics.ObservableDoubleGaugeMetric;
+import step.core.metrics.ObservableGaugeMetric;
+import step.core.metrics.OverflowMetric;
+import step.core.metrics.SummaryMetric;
+import step.core.metrics.TimerMetric;
 import step.reporting.impl.DelegatingLiveMetricDestination;
 import step.reporting.impl.LiveMetricDestination;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
 
 /**
  * Provides functionality for recording and streaming live metrics.
  * <p>
  * Metrics must be created using one of the registration function to be handled by the live reporting
+ * <p>
+ * The number of distinct series (metric name and labels) can be bounded, see {@link #LiveMetrics(LiveMetricDestination, int)}.
+ * <p>
+ * When live reporting is disabled, i.e. the destination is a {@link DelegatingLiveMetricDestination} without
+ * delegate, the registration functions return shared no-op metrics (see {@link NoopMetrics}) so that recording
+ * values costs nothing. The choice is made at registration time: a metric registered while live reporting is
+ * disabled stays a no-op one, even once a delegate is set. No-op metrics don't carry the requested name and labels
+ * (their name is {@link NoopMetrics#NAME}) and their snapshots are empty, so keywords should register their
+ * metrics once live reporting is set up and not rely on reading them back.
  */
 public class LiveMetrics implements AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(LiveMetrics.class);
 
     public final LiveMetricDestination destination;
+    private final MetricFamilies families = new MetricFamilies();
+    private final CardinalityLimiter cardinalityLimiter;
+    /**
+     * Overflow series by name and metric class, reporting all metrics folded because of the cardinality limit.
+     */
+    private final ConcurrentHashMap<List<Object>, OverflowMetric> overflowMetrics = new ConcurrentHashMap<>();
+    /**
+     * Metrics returned by the registration functions for the folded series, by name and metric class.
+     */
+    private final ConcurrentHashMap<List<Object>, Metric> overflowInstances = new ConcurrentHashMap<>();
+    private final AtomicBoolean limitReachedLogged = new AtomicBoolean();
 
     /**
      * Creates a {@code LiveMetrics} instance.
@@ -49,11 +93,35 @@ public class LiveMetrics implements AutoCloseable {
      *                    {@code null} installs a discarding default
      */
     public LiveMetrics(LiveMetricDestination destination) {
+        this(destination, null);
+    }
+
+    /**
+     * Creates a {@code LiveMetrics} instance limiting the number of distinct series.
+     * <b>Reserved for the framework.</b>
+     * <p>
+     * Once {@code maxSeries} distinct name and label combinations are registered, the registration functions
+     * return a metric shared by all further series of the same name and type, labeled with
+     * {@link CardinalityLimiter#OVERFLOW_LABELS}. Metrics created outside of this class and passed to
+     * {@link #register(Metric)} beyond the limit are reported in the same overflow series, their samples being
+     * merged at every flush (see {@link OverflowMetric}). {@link #getFoldedSeriesCount()} reports how many
+     * registrations were folded.
+     *
+     * @param destination sink where flushed metric snapshots are forwarded;
+     *                    {@code null} installs a discarding default
+     * @param maxSeries   the maximum number of distinct series; must be positive
+     */
+    public LiveMetrics(LiveMetricDestination destination, int maxSeries) {
+        this(destination, new CardinalityLimiter(maxSeries));
+    }
+
+    private LiveMetrics(LiveMetricDestination destination, CardinalityLimiter cardinalityLimiter) {
         if (destination == null) {
             logger.debug("LiveMetrics instantiated without a destination, discarding all metrics by default");
             destination = new DelegatingLiveMetricDestination();
         }
         this.destination = destination;
+        this.cardinalityLimiter = cardinalityLimiter;
     }
 
     /**
@@ -63,9 +131,7 @@ public class LiveMetrics implements AutoCloseable {
      * @return the registered CounterMetric
      */
     public CounterMetric registerCounter(String name) {
-        CounterMetric counterMetric = new CounterMetric(name);
-        destination.accept(counterMetric);
-        return counterMetric;
+        return registerCounter(name, new HashMap<>());
     }
 
     /**
@@ -76,9 +142,7 @@ public class LiveMetrics implements AutoCloseable {
      * @return the registered CounterMetric
      */
     public CounterMetric registerCounter(String name, Map<String, String> labels) {
-        CounterMetric counterMetric = new CounterMetric(name, labels);
-        destination.accept(counterMetric);
-        return counterMetric;
+        return registerOrFold(name, labels, CounterMetric.class, NoopMetrics.counter(), l -> new CounterMetric(name, l));
     }
 
     /**
@@ -88,9 +152,7 @@ public class LiveMetrics implements AutoCloseable {
      * @return the registered CounterMetric
      */
     public GaugeMetric registerGauge(String name) {
-        GaugeMetric gaugeMetric = new GaugeMetric(name);
-        destination.accept(gaugeMetric);
-        return gaugeMetric;
+        return registerGauge(name, new HashMap<>());
     }
 
     /**
@@ -101,9 +163,7 @@ public class LiveMetrics implements AutoCloseable {
      * @return the registered CounterMetric
      */
     public GaugeMetric registerGauge(String name, Map<String, String> labels) {
-        GaugeMetric gaugeMetric = new GaugeMetric(name, labels);
-        destination.accept(gaugeMetric);
-        return gaugeMetric;
+        return registerOrFold(name, labels, GaugeMetric.class, NoopMetrics.gauge(), l -> new GaugeMetric(name, l));
     }
 
     /**
@@ -113,9 +173,7 @@ public class LiveMetrics implements AutoCloseable {
      * @return the registered CounterMetric
      */
     public HistogramMetric registerHistogram(String name) {
-        HistogramMetric histogramMetric = new HistogramMetric(name);
-        destination.accept(histogramMetric);
-        return histogramMetric;
+        return registerHistogram(name, new HashMap<>());
     }
 
     /**
@@ -126,9 +184,140 @@ public class LiveMetrics implements AutoCloseable {
      * @return the registered CounterMetric
      */
     public HistogramMetric registerHistogram(String name, Map<String, String> labels) {
-        HistogramMetric histogramMetric = new HistogramMetric(name, labels);
-        destination.accept(histogramMetric);
-        return histogramMetric;
+        return registerOrFold(name, labels, HistogramMetric.class, NoopMetrics.histogram(), l -> new HistogramMetric(name, l));
+    }
+
+    /**
+     * Creates and registers an observable gauge, whose value is polled from the given supplier
+     * once per flush interval
+     *
+     * @param name          the name of the metric
+     * @param labels        an optional map with additional labels for this metric
+     * @param valueSupplier called once per flush interval to obtain the current value
+     * @return the registered ObservableGaugeMetric
+     */
+    public ObservableGaugeMetric registerObservableGauge(String name, Map<String, String> labels, LongSupplier valueSupplier) {
+        return registerOrFold(name, labels, ObservableGaugeMetric.class, NoopMetrics.observableGauge(), l -> new ObservableGaugeMetric(name, l, valueSupplier));
+    }
+
+    /**
+     * Creates and registers an observable gauge, whose value is polled from the given supplier
+     * once per flush interval
+     *
+     * @param name          the name of the metric
+     * @param labels        an optional map with additional labels for this metric
+     * @param valueSupplier called once per flush interval to obtain the current value
+     * @return the registered ObservableDoubleGaugeMetric
+     */
+    public ObservableDoubleGaugeMetric registerObservableGauge(String name, Map<String, String> labels, DoubleSupplier valueSupplier) {
+        return registerOrFold(name, labels, ObservableDoubleGaugeMetric.class, NoopMetrics.observableDoubleGauge(),
+            l -> new ObservableDoubleGaugeMetric(name, l, valueSupplier));
+    }
+
+    /**
+     * Creates and registers a floating-point gauge metric
+     *
+     * @param name   the name of the metric
+     * @param labels an optional map with additional labels for this metric
+     * @return the registered DoubleGaugeMetric
+     */
+    public DoubleGaugeMetric registerDoubleGauge(String name, Map<String, String> labels) {
+        return registerOrFold(name, labels, DoubleGaugeMetric.class, NoopMetrics.doubleGauge(), l -> new DoubleGaugeMetric(name, l));
+    }
+
+    /**
+     * Creates and registers a floating-point histogram metric
+     *
+     * @param name   the name of the metric
+     * @param labels an optional map with additional labels for this metric
+     * @return the registered DoubleHistogramMetric
+     */
+    public DoubleHistogramMetric registerDoubleHistogram(String name, Map<String, String> labels) {
+        return registerOrFold(name, labels, DoubleHistogramMetric.class, NoopMetrics.doubleHistogram(), l -> new DoubleHistogramMetric(name, l));
+    }
+
+    /**
+     * Creates and registers a summary metric, tracking quantiles with a mergeable sketch
+     *
+     * @param name   the name of the metric
+     * @param labels an optional map with additional labels for this metric
+     * @return the registered SummaryMetric
+     */
+    public SummaryMetric registerSummary(String name, Map<String, String> labels) {
+        return registerOrFold(name, labels, SummaryMetric.class, NoopMetrics.summary(), l -> new SummaryMetric(name, l));
+    }
+
+    /**
+     * Creates and registers a timer metric
+     *
+     * @param name the name of the metric
+     * @param unit the unit in which the durations are recorded
+     * @return the registered TimerMetric
+     */
+    public TimerMetric registerTimer(String name, TimeUnit unit) {
+        return registerTimer(name, new HashMap<>(), unit);
+    }
+
+    /**
+     * Creates and registers a timer metric
+     *
+     * @param name   the name of the metric
+     * @param labels an optional map with additional labels for this metric
+     * @param unit   the unit in which the durations are recorded
+     * @return the registered TimerMetric
+     */
+    public TimerMetric registerTimer(String name, Map<String, String> labels, TimeUnit unit) {
+        return registerOrFold(name, labels, TimerMetric.class, NoopMetrics.timer(), l -> new TimerMetric(name, l, unit));
+    }
+
+    /**
+     * Returns the counter family with the given name, creating it on first use. Each child returned by
+     * {@link CounterFamily#withLabels(String...)} is registered once, when first requested.
+     *
+     * @param name       the name of the metric
+     * @param labelNames the ordered names of the labels identifying each counter of the family
+     * @return the counter family, always the same instance for the same name
+     * @throws IllegalArgumentException if a family with the same name but another type or label names exists
+     */
+    public CounterFamily counterFamily(String name, String... labelNames) {
+        List<String> names = List.of(labelNames);
+        if (!isEnabled()) {
+            return NoopMetrics.counterFamily(name, names);
+        }
+        return families.getOrCreate(name, CounterFamily.class, names,
+            () -> new CounterFamily(name, names, cardinalityLimiter, destination::accept));
+    }
+
+    /**
+     * Returns the histogram family with the given name, creating it with the default bucket layout on first use.
+     * Each child returned by {@link HistogramFamily#withLabels(String...)} is registered once, when first requested.
+     *
+     * @param name       the name of the metric
+     * @param labelNames the ordered names of the labels identifying each histogram of the family
+     * @return the histogram family, always the same instance for the same name
+     * @throws IllegalArgumentException if a family with the same name but another type or label names exists
+     */
+    public HistogramFamily histogramFamily(String name, String... labelNames) {
+        return histogramFamily(name, null, labelNames);
+    }
+
+    /**
+     * Returns the histogram family with the given name, creating it on first use.
+     * The bucket layout is only used when the family is created.
+     *
+     * @param name         the name of the metric
+     * @param bucketLayout the bucket layout of the histograms; {@code null} for the default one
+     * @param labelNames   the ordered names of the labels identifying each histogram of the family
+     * @return the histogram family, always the same instance for the same name
+     * @throws IllegalArgumentException if a family with the same name but another type or label names exists
+     */
+    public HistogramFamily histogramFamily(String name, BucketLayout bucketLayout, String... labelNames) {
+        List<String> names = List.of(labelNames);
+        if (!isEnabled()) {
+            return NoopMetrics.histogramFamily(name, names);
+        }
+        return families.getOrCreate(name, HistogramFamily.class, names,
+            () -> new HistogramFamily(name, names, bucketLayout, cardinalityLimiter, destination::accept));
     }
 
     /**
@@ -138,7 +327,88 @@ public class LiveMetrics implements AutoCloseable {
      */
     public void register(Metric metric) {
         Objects.requireNonNull(metric, "Metric must not be null");
-        destination.accept(metric);
+        if (admit(metric)) {
+            destination.accept(metric);
+        }
+    }
+
+    /**
+     * Registers several metrics created outside of this class at once
+     *
+     * @param metrics the metrics to register; must not be {@code null}, nor contain {@code null} elements
+     */
+    public void registerAll(List<? extends Metric> metrics) {
+        Objects.requireNonNull(metrics, "Metrics must not be null");
+        metrics.forEach(metric -> Objects.requireNonNull(metric, "Metric must not be null"));
+        List<Metric> admitted = cardinalityLimiter != null
+            ? metrics.stream().filter(this::admit).collect(Collectors.toList())
+            : new ArrayList<>(metrics);
+        if (!admitted.isEmpty()) {
+            destination.acceptBatch(admitted);
+        }
+    }
+
+    /**
+     * Returns how many registrations were folded into an overflow series because of the
+     * cardinality limit; always 0 if no limit is set.
+     */
+    public long getFoldedSeriesCount() {
+        return cardinalityLimiter != null ? cardinalityLimiter.getFoldedCount() : 0;
+    }
+
+    /**
+     * Returns whether the registered metrics are reported. If not, the registration functions return no-op metrics,
+     * which stay no-op even if live reporting is enabled afterwards.
+     */
+    public boolean isEnabled() {
+        return !(destination instanceof DelegatingLiveMetricDestination)
+            || ((DelegatingLiveMetricDestination) destination).hasDelegate();
+    }
+
+    private boolean admit(Metric metric) {
+        if (cardinalityLimiter == null || cardinalityLimiter.tryAdmit(metric.getName(), metric.getLabels())) {
+            return true;
+        }
+        logLimitReached();
+        overflowMetric(metric.getName(), metric.getType(), metric.getClass()).fold(metric);
+        return false;
+    }
+
+    private <M extends Metric> M registerOrFold(String name, Map<String, String> labels, Class<M> type, M noop,
+                                                Function<Map<String, String>, M> factory) {
+        if (!isEnabled()) {
+            return noop;
+        }
+        if (cardinalityLimiter == null || cardinalityLimiter.tryAdmit(name, labels)) {
+            M metric = factory.apply(labels);
+            destination.accept(metric);
+            return metric;
+        }
+        logLimitReached();
+        return type.cast(overflowInstances.computeIfAbsent(List.of(name, type), k -> {
+            M metric = factory.apply(CardinalityLimiter.OVERFLOW_LABELS);
+            overflowMetric(name, metric.getType(), type).fold(metric);
+            return metric;
+        }));
+    }
+
+    /**
+     * Returns the overflow series of the given name and metric class, creating and registering it if needed.
+     */
+    private OverflowMetric overflowMetric(String name, InstrumentType type, Class<?> metricClass) {
+        return overflowMetrics.computeIfAbsent(List.of(name, metricClass), k -> {
+            OverflowMetric metric = new OverflowMetric(name, type);
+            destination.accept(metric);
+            return metric;
+        });
+    }
+
+    private void logLimitReached() {
+        // logged once: the number of folded series is exposed by getFoldedSeriesCount()
+        if (limitReachedLogged.compareAndSet(false, true)) {
+            logger.warn("Maximum number of metric series ({}) reached, further series are reported with the labels {}",
+                cardinalityLimiter.getMaxSeries(), CardinalityLimiter.OVERFLOW_LABELS);
+        }
     }
 
     /**
@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.reporting.impl;
+
+import step.core.metrics.Metric;
+import step.core.metrics.MetricSamplesAggregator;
+import step.core.metrics.MetricSamplesCollector;
+
+/**
+ * A {@link LiveMetricDestination} for a single keyword invocation, whose samples are merged by a shared
+ * {@link MetricSamplesAggregator} with those of the other invocations before being sent.
+ * <p>
+ * The framework doesn't set up this destination: to use it, the caller shares one aggregator among the invocations
+ * (e.g. one per agent) and passes a new destination to each {@link step.reporting.LiveMetrics} instance. The
+ * aggregator flushes the registered metrics at every interval until the destination is closed.
+ */
+public class AggregatingLiveMetricDestination implements LiveMetricDestination {
+
+    private final MetricSamplesAggregator aggregator;
+    private final MetricSamplesCollector collector;
+
+    /**
+     * @param aggregator the shared aggregator the samples are forwarded to
+     */
+    public AggregatingLiveMetricDestination(MetricSamplesAggregator aggregator) {
+        this.aggregator = aggregator;
+        this.collector = aggregator.newCollector();
+    }
+
+    @Override
+    public void accept(Metric metric) {
+        collector.register(metric);
+    }
+
+    /**
+     * Forwards the pending observations of the registered metrics to the aggregator. They are sent with the
+     * next delivery of the aggregator.
+     */
+    @Override
+    public void flush() {
+        collector.flush();
+    }
+
+    /**
+     * Performs the final flush of the registered metrics into the aggregator and stops flushing them.
+     */
+    @Override
+    public void close() {
+        aggregator.unregister(collector);
+        collector.close();
+    }
+}
@@ -4,8 +4,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import step.core.reports.Measure;
 
+import java.util.List;
+
 public class DelegatingLiveMeasureDestination implements LiveMeasureDestination {
     private static final Logger logger = LoggerFactory.getLogger(DelegatingLiveMeasureDestination.class);
+    private static final RateLimitedWarning discardWarning = new RateLimitedWarning(logger);
 
     private LiveMeasureDestination delegate;
 
@@ -16,12 +19,28 @@ public class DelegatingLiveMeasureDestination implements LiveMeasureDestination
     @Override
     public void accept(Measure measure) {
         if (delegate == null) {
-            logger.warn("No delegate set: received, but discarding live measure {}, duration={}", measure.getName(), measure.getDuration());
+            discardWarning.warn("No delegate set: received, but discarding live measure {}, duration={}", measure.getName(), measure.getDuration());
         } else {
             delegate.accept(measure);
         }
     }
 
+    @Override
+    public void acceptBatch(List<Measure> measures) {
+        if (delegate == null) {
+            discardWarning.warn("No delegate set: received, but discarding {} live measures", measures.size());
+        } else {
+            delegate.acceptBatch(measures);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (delegate != null) {
+            delegate.flush();
+        }
+    }
+
     @Override
     public void close() {
         if (delegate != null) {
@@ -22,33 +22,65 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import step.core.metrics.Metric;
 
+import java.util.List;
+
 /**
  * A {@link LiveMetricDestination} that forwards to a delegate set at runtime by the framework.
  * <p>
  * When no delegate is configured (e.g. in local/test executions), received metrics are discarded
- * with a warning rather than causing an error.
+ * with a warning rather than causing an error. The warning is logged at most once per minute; in this
+ * case, {@link step.reporting.LiveMetrics} doesn't even create metrics but returns no-op ones. Setting a delegate
+ * only affects the metrics registered afterwards.
  */
 public class DelegatingLiveMetricDestination implements LiveMetricDestination {
 
     private static final Logger logger = LoggerFactory.getLogger(DelegatingLiveMetricDestination.class);
+    private static final RateLimitedWarning discardWarning = new RateLimitedWarning(logger);
 
-    private LiveMetricDestination delegate;
+    private volatile LiveMetricDestination delegate;
 
     public void setDelegate(LiveMetricDestination delegate) {
         this.delegate = delegate;
     }
 
+    /**
+     * Returns whether a delegate is set, i.e. whether the received metrics are actually reported.
+     */
+    public boolean hasDelegate() {
+        return delegate != null;
+    }
+
     @Override
     public void accept(Metric metric) {
+        LiveMetricDestination delegate = this.delegate;
         if (delegate == null) {
-            logger.warn("No delegate set: discarding live metric '{}' (type={})", metric.getName(), metric.getType());
+            discardWarning.warn("No delegate set: discarding live metric '{}' (type={})", metric.getName(), metric.getType());
         } else {
             delegate.accept(metric);
         }
     }
 
+    @Override
+    public void acceptBatch(List<Metric> metrics) {
+        LiveMetricDestination delegate = this.delegate;
+        if (delegate == null) {
+            discardWarning.warn("No delegate set: discarding {} live metrics", metrics.size());
+        } else {
+            delegate.acceptBatch(metrics);
+        }
+    }
+
+    @Override
+    public void flush() {
+        LiveMetricDestination delegate = this.delegate;
+        if (delegate != null) {
+            delegate.flush();
+        }
+    }
+
     @Override
     public void close() {
+        LiveMetricDestination delegate = this.delegate;
         if (delegate != null) {
             delegate.close();
         }
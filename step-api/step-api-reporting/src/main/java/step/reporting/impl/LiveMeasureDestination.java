@@ -2,9 +2,37 @@ package step.reporting.impl;
 
 import step.core.reports.Measure;
 
+import java.util.List;
+
+/**
+ * Sink for live measures produced by {@link step.reporting.LiveMeasures}.
+ */
 public interface LiveMeasureDestination {
+
+    /**
+     * Forwards a single measure.
+     *
+     * @param measure the measure; must not be {@code null}
+     */
     void accept(Measure measure);
 
+    /**
+     * Forwards several measures at once. Implementations backed by a remote transport should override this
+     * to ship the whole list in a single round trip; the default implementation calls {@link #accept(Measure)}
+     * for each measure.
+     *
+     * @param measures the measures; must not be {@code null}
+     */
+    default void acceptBatch(List<Measure> measures) {
+        measures.forEach(this::accept);
+    }
+
+    /**
+     * Forces the delivery of any measures buffered by this destination. The default implementation does nothing.
+     */
+    default void flush() {
+    }
+
     default void close() {
     }
 }
@@ -20,6 +20,8 @@ package step.reporting.impl;
 
 import step.core.metrics.Metric;
 
+import java.util.List;
+
 /**
  * Sink for live metric data produced by {@link step.reporting.LiveMetrics}.
  * <p>
@@ -37,6 +39,23 @@ public interface LiveMetricDestination {
      */
     void accept(Metric metric);
 
+    /**
+     * Registers several live metrics at once. Implementations backed by a remote transport should
+     * override this to handle the whole list in a single round trip; the default implementation
+     * calls {@link #accept(Metric)} for each metric.
+     *
+     * @param metrics the live metrics to track; must not be {@code null}
+     */
+    default void acceptBatch(List<Metric> metrics) {
+        metrics.forEach(this::accept);
+    }
+
+    /**
+     * Forces the delivery of any data buffered by this destination. The default implementation does nothing.
+     */
+    default void flush() {
+    }
+
     /**
      * Releases any resources held by this destination (schedulers, HTTP clients, etc.).
      * Called by the framework when the keyword execution ends.
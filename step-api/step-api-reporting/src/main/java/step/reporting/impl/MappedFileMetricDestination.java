@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.reporting.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import step.core.metrics.BucketCounts;
+import step.core.metrics.BucketLayout;
+import step.core.metrics.Metric;
+import step.core.metrics.MetricSample;
+import step.core.metrics.MetricSamplesCollector;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static step.reporting.impl.MappedMetricsLayout.*;
+
+/**
+ * A {@link LiveMetricDestination} publishing the current values of the registered metrics into a memory-mapped
+ * file with fixed-layout slots, one per series (see {@link MappedMetricsLayout}). A sidecar or the agent process
+ * can read them at any time with {@link MappedFileMetricReader}, without copies through the keyword JVM nor
+ * serialization.
+ * <p>
+ * Observations are still recorded by the metrics themselves; the registered metrics are flushed at every update
+ * interval, and each sample is accumulated into the slot of its series: count, sum and distribution are
+ * cumulative, min, max and last are those of the most recent sample. Slots are updated under a sequence lock,
+ * so that readers never block the writer and never see a partially written slot.
+ * <p>
+ * Series beyond the number of slots, or whose name and labels exceed the key capacity of a slot, are not
+ * published. Distributions with more buckets than a slot holds have their highest buckets folded into the
+ * {@link BucketLayout#OVERFLOW_BUCKET}, where they stay for the following updates.
+ */
+public class MappedFileMetricDestination implements LiveMetricDestination {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedFileMetricDestination.class);
+
+    public static final int DEFAULT_SLOT_COUNT = 1024;
+    public static final int DEFAULT_MAX_BUCKETS = 64;
+    public static final long DEFAULT_UPDATE_INTERVAL_MS = 1000;
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    private final int slotSize;
+    private final int maxBuckets;
+    private final MetricSamplesCollector collector;
+    private final RateLimitedWarning rejectedSeriesWarning = new RateLimitedWarning(logger);
+    /**
+     * Slots by series; guarded by {@code this}, as are the slots.
+     */
+    private final Map<String, Slot> slots = new HashMap<>();
+
+    /**
+     * Creates the metrics table with {@value #DEFAULT_SLOT_COUNT} slots of {@value #DEFAULT_MAX_BUCKETS}
+     * buckets, updated every {@value #DEFAULT_UPDATE_INTERVAL_MS} ms.
+     *
+     * @param file the file to create or overwrite
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public MappedFileMetricDestination(Path file) throws IOException {
+        this(file, DEFAULT_SLOT_COUNT, DEFAULT_MAX_BUCKETS, DEFAULT_UPDATE_INTERVAL_MS);
+    }
+
+    /**
+     * @param file             the file to create or overwrite
+     * @param slotCount        the maximum number of published series; must be positive
+     * @param maxBuckets       the maximum number of distribution buckets per series; must be positive
+     * @param updateIntervalMs the interval at which the metrics are flushed to the table; must be positive
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public MappedFileMetricDestination(Path file, int slotCount, int maxBuckets, long updateIntervalMs) throws IOException {
+        if (slotCount <= 0 || maxBuckets <= 0) {
+            throw new IllegalArgumentException("The number of slots and buckets must be positive");
+        }
+        this.file = file;
+        this.slotCount = slotCount;
+        this.maxBuckets = maxBuckets;
+        this.slotSize = slotSize(maxBuckets);
+        long size = HEADER_SIZE + (long) slotCount * slotSize;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The metrics table cannot exceed 2GB, reduce the number of slots or buckets");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        buffer.order(BYTE_ORDER);
+        buffer.putInt(HEADER_VERSION, VERSION);
+        buffer.putInt(HEADER_SLOT_COUNT, slotCount);
+        buffer.putInt(HEADER_SLOT_SIZE, slotSize);
+        buffer.putInt(HEADER_MAX_BUCKETS, maxBuckets);
+        // written last: a reader only trusts the header once the magic is set
+        VarHandle.storeStoreFence();
+        buffer.putInt(HEADER_MAGIC, MAGIC);
+        collector = new MetricSamplesCollector(updateIntervalMs, this::write)
+            .withRetention(MetricSamplesCollector.Retention.NONE)
+            .startScheduledFlush();
+    }
+
+    /**
+     * Returns the path of the metrics table.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void accept(Metric metric) {
+        collector.register(metric);
+    }
+
+    /**
+     * Flushes all registered metrics to the table immediately.
+     */
+    @Override
+    public void flush() {
+        collector.flush();
+    }
+
+    /**
+     * Stops the updates after a final flush of the registered metrics. The file is left in place with the last
+     * published values.
+     */
+    @Override
+    public void close() {
+        collector.close();
+        buffer.force();
+    }
+
+    private synchronized void write(MetricSample sample) {
+        String key = seriesKey(sample);
+        Slot slot = slots.get(sample.getType() + ":" + key);
+        if (slot == null) {
+            slot = allocate(sample, key);
+            if (slot == null) {
+                return;
+            }
+        }
+        slot.count += sample.getCount();
+        slot.sum += sample.getSum();
+        if (sample.getDistribution() != null) {
+            slot.distribution = foldBuckets(BucketCounts.merge(slot.distribution, BucketCounts.of(sample.getDistribution())));
+        }
+
+        int offset = slotOffset(slot.index, slotSize);
+        LONG.setOpaque(buffer, offset + SLOT_SEQUENCE, ++slot.sequence);
+        VarHandle.storeStoreFence();
+        if (slot.sequence == 1) {
+            buffer.putInt(offset + SLOT_TYPE, sample.getType().ordinal());
+            buffer.putInt(offset + SLOT_KEY_LENGTH, slot.key.length);
+            buffer.put(offset + SLOT_KEY, slot.key);
+            buffer.putInt(offset + SLOT_STATE, STATE_USED);
+        }
+        buffer.putLong(offset + SLOT_COUNT, slot.count);
+        buffer.putLong(offset + SLOT_SUM, slot.sum);
+        buffer.putLong(offset + SLOT_MIN, sample.getMin());
+        buffer.putLong(offset + SLOT_MAX, sample.getMax());
+        buffer.putLong(offset + SLOT_LAST, sample.getLast());
+        buffer.putLong(offset + SLOT_SAMPLE_TIME, sample.getSampleTime());
+        writeBuckets(offset, slot.distribution);
+        LONG.setRelease(buffer, offset + SLOT_SEQUENCE, ++slot.sequence);
+        LONG.setRelease(buffer, HEADER_UPDATE_TIME, System.currentTimeMillis());
+    }
+
+    private Slot allocate(MetricSample sample, String key) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (slots.size() == slotCount) {
+            rejectedSeriesWarning.warn("All {} slots of the metrics table {} are used, metric '{}' is not published",
+                slotCount, file, sample.getName());
+            return null;
+        }
+        if (keyBytes.length > KEY_CAPACITY) {
+            rejectedSeriesWarning.warn("The name and labels of metric '{}' exceed {} bytes, it is not published",
+                sample.getName(), KEY_CAPACITY);
+            return null;
+        }
+        Slot slot = new Slot(slots.size(), keyBytes);
+        slots.put(sample.getType() + ":" + key, slot);
+        return slot;
+    }
+
+    /**
+     * Folds the buckets beyond the capacity of a slot into the {@link BucketLayout#OVERFLOW_BUCKET}, so that the
+     * cumulative distribution kept on the heap doesn't grow either. Buckets folded once stay in the overflow bucket.
+     */
+    private BucketCounts foldBuckets(BucketCounts distribution) {
+        if (distribution.size() <= maxBuckets) {
+            return distribution;
+        }
+        Map<Long, Long> folded = new HashMap<>();
+        for (int i = 0; i < maxBuckets - 1; i++) {
+            folded.put(distribution.keyAt(i), distribution.countAt(i));
+        }
+        long overflowCount = 0;
+        for (int i = maxBuckets - 1; i < distribution.size(); i++) {
+            overflowCount += distribution.countAt(i);
+        }
+        folded.put(BucketLayout.OVERFLOW_BUCKET, overflowCount);
+        return BucketCounts.of(folded);
+    }
+
+    private void writeBuckets(int offset, BucketCounts distribution) {
+        int position = offset + SLOT_BUCKETS;
+        for (int i = 0; i < distribution.size(); i++) {
+            buffer.putLong(position, distribution.keyAt(i));
+            buffer.putLong(position + Long.BYTES, distribution.countAt(i));
+            position += 2 * Long.BYTES;
+        }
+        buffer.putInt(offset + SLOT_BUCKET_COUNT, distribution.size());
+    }
+
+    /**
+     * The name then each label, sorted by key, as "\nkey=value". Line breaks within names and labels are replaced
+     * by spaces.
+     */
+    static String seriesKey(MetricSample sample) {
+        StringBuilder key = new StringBuilder(sample.getName().replace('\n', ' '));
+        if (sample.getLabels() != null) {
+            new TreeMap<>(sample.getLabels()).forEach((k, v) -> key.append('\n').append(k.replace('\n', ' '))
+                .append('=').append(v.replace('\n', ' ')));
+        }
+        return key.toString();
+    }
+
+    private static final class Slot {
+        private final int index;
+        private final byte[] key;
+        private long sequence;
+        private long count;
+        private long sum;
+        private BucketCounts distribution = BucketCounts.EMPTY;
+
+        private Slot(int index, byte[] key) {
+            this.index = index;
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.reporting.impl;
+
+import step.core.metrics.BucketCounts;
+import step.core.metrics.InstrumentType;
+import step.core.metrics.MetricSample;
+
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static step.reporting.impl.MappedMetricsLayout.*;
+
+/**
+ * Reads the metrics table published by a {@link MappedFileMetricDestination}, possibly from another process.
+ * Reading never blocks the writer: a slot being written is read again once consistent. A slot that stays
+ * inconsistent, e.g. because the writer died while updating it, is skipped after {@link #MAX_READ_ATTEMPTS}
+ * attempts, see {@link #getInconsistentSlotCount()}.
+ */
+public class MappedFileMetricReader {
+
+    /**
+     * The maximum number of attempts to read a consistent copy of a slot.
+     */
+    public static final int MAX_READ_ATTEMPTS = 10_000;
+
+    private final MappedByteBuffer buffer;
+    private final int slotCount;
+    private final int slotSize;
+    private int inconsistentSlotCount;
+
+    /**
+     * @param file the metrics table
+     * @throws IOException              if the file cannot be mapped
+     * @throws IllegalArgumentException if the file isn't a metrics table of a supported version
+     */
+    public MappedFileMetricReader(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IllegalArgumentException("Not a metrics table: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        buffer.order(BYTE_ORDER);
+        if (buffer.getInt(HEADER_MAGIC) != MAGIC) {
+            throw new IllegalArgumentException("Not a metrics table: " + file);
+        }
+        VarHandle.loadLoadFence();
+        if (buffer.getInt(HEADER_VERSION) != VERSION) {
+            throw new IllegalArgumentException("Unsupported metrics table version " + buffer.getInt(HEADER_VERSION));
+        }
+        slotCount = buffer.getInt(HEADER_SLOT_COUNT);
+        slotSize = buffer.getInt(HEADER_SLOT_SIZE);
+        if (HEADER_SIZE + (long) slotCount * slotSize > buffer.capacity()) {
+            throw new IllegalArgumentException("Truncated metrics table: " + file);
+        }
+    }
+
+    /**
+     * Returns the number of slots, i.e. the maximum number of series of the table.
+     */
+    public int getSlotCount() {
+        return slotCount;
+    }
+
+    /**
+     * Returns the time of the last update of the table, in epoch milliseconds, or 0 if it was never updated.
+     */
+    public long getLastUpdateTime() {
+        return (long) LONG.getAcquire(buffer, HEADER_UPDATE_TIME);
+    }
+
+    /**
+     * Returns the current values of all published series. Count, sum and distribution are cumulative since the
+     * series was first published; min, max and last are those of its most recent sample.
+     */
+    public List<MetricSample> read() {
+        List<MetricSample> samples = new ArrayList<>();
+        inconsistentSlotCount = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            MetricSample sample = readSlot(slotOffset(slot, slotSize));
+            if (sample != null) {
+                samples.add(sample);
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * Returns the number of slots skipped by the last {@link #read()} because no consistent copy of them could be
+     * read within {@link #MAX_READ_ATTEMPTS} attempts.
+     */
+    public int getInconsistentSlotCount() {
+        return inconsistentSlotCount;
+    }
+
+    private MetricSample readSlot(int offset) {
+        for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+            long sequence = (long) LONG.getAcquire(buffer, offset + SLOT_SEQUENCE);
+            if (sequence == 0) {
+                return null;
+            }
+            if ((sequence & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            MetricSample sample = copySlot(offset);
+            VarHandle.loadLoadFence();
+            if ((long) LONG.getVolatile(buffer, offset + SLOT_SEQUENCE) == sequence) {
+                return sample;
+            }
+        }
+        inconsistentSlotCount++;
+        return null;
+    }
+
+    /**
+     * Copies a slot; the result is only valid if the sequence didn't change meanwhile. Returns {@code null} if
+     * the slot is free or its content is invalid, e.g. because it was being written.
+     */
+    private MetricSample copySlot(int offset) {
+        if (buffer.getInt(offset + SLOT_STATE) != STATE_USED) {
+            return null;
+        }
+        int typeOrdinal = buffer.getInt(offset + SLOT_TYPE);
+        int keyLength = buffer.getInt(offset + SLOT_KEY_LENGTH);
+        int bucketCount = buffer.getInt(offset + SLOT_BUCKET_COUNT);
+        if (typeOrdinal < 0 || typeOrdinal >= InstrumentType.values().length || keyLength < 0 || keyLength > KEY_CAPACITY
+            || bucketCount < 0 || SLOT_BUCKETS + bucketCount * 2L * Long.BYTES > slotSize) {
+            return null;
+        }
+        byte[] keyBytes = new byte[keyLength];
+        buffer.get(offset + SLOT_KEY, keyBytes);
+        String[] keyParts = new String(keyBytes, StandardCharsets.UTF_8).split("\n");
+        Map<String, String> labels = new LinkedHashMap<>();
+        for (int i = 1; i < keyParts.length; i++) {
+            int separator = keyParts[i].indexOf('=');
+            if (separator < 0) {
+                return null;
+            }
+            labels.put(keyParts[i].substring(0, separator), keyParts[i].substring(separator + 1));
+        }
+        Map<Long, Long> distribution = null;
+        if (bucketCount > 0) {
+            distribution = new LinkedHashMap<>();
+            int position = offset + SLOT_BUCKETS;
+            for (int i = 0; i < bucketCount; i++) {
+                distribution.put(buffer.getLong(position), buffer.getLong(position + Long.BYTES));
+                position += 2 * Long.BYTES;
+            }
+            distribution = BucketCounts.of(distribution);
+        }
+        return new MetricSample(buffer.getLong(offset + SLOT_SAMPLE_TIME), keyParts[0], labels,
+            InstrumentType.values()[typeOrdinal], buffer.getLong(offset + SLOT_COUNT), buffer.getLong(offset + SLOT_SUM),
+            buffer.getLong(offset + SLOT_MIN), buffer.getLong(offset + SLOT_MAX), buffer.getLong(offset + SLOT_LAST),
+            distribution);
+    }
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.reporting.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed binary layout of the metrics table written by {@link MappedFileMetricDestination} and read by
+ * {@link MappedFileMetricReader}. All values are little-endian.
+ * <pre>
+ * header (64 bytes):
+ *   0  int   magic 'STMT'
+ *   4  int   layout version
+ *   8  int   number of slots
+ *   12 int   size of a slot in bytes
+ *   16 int   maximum number of distribution buckets per slot
+ *   24 long  time of the last update, epoch milliseconds
+ * slot (starting at 64 + index * slot size):
+ *   0  long  sequence: odd while the slot is being written
+ *   8  int   state: 0 free, 1 used
+ *   12 int   instrument type ordinal
+ *   16 long  cumulative count
+ *   24 long  cumulative sum
+ *   32 long  min of the last sample
+ *   40 long  max of the last sample
+ *   48 long  last value
+ *   56 long  time of the last sample, epoch milliseconds
+ *   64 int   length of the series key
+ *   72       series key, UTF-8: the name then each label as "\nkey=value"
+ *   256 int  number of distribution buckets
+ *   264      distribution buckets as pairs of longs (bucket key, cumulative count)
+ * </pre>
+ * A reader copies a slot when its sequence is even and retries if the sequence changed in the meantime.
+ */
+final class MappedMetricsLayout {
+
+    static final int MAGIC = 0x53544D54;
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 64;
+    static final int HEADER_MAGIC = 0;
+    static final int HEADER_VERSION = 4;
+    static final int HEADER_SLOT_COUNT = 8;
+    static final int HEADER_SLOT_SIZE = 12;
+    static final int HEADER_MAX_BUCKETS = 16;
+    static final int HEADER_UPDATE_TIME = 24;
+
+    static final int SLOT_SEQUENCE = 0;
+    static final int SLOT_STATE = 8;
+    static final int SLOT_TYPE = 12;
+    static final int SLOT_COUNT = 16;
+    static final int SLOT_SUM = 24;
+    static final int SLOT_MIN = 32;
+    static final int SLOT_MAX = 40;
+    static final int SLOT_LAST = 48;
+    static final int SLOT_SAMPLE_TIME = 56;
+    static final int SLOT_KEY_LENGTH = 64;
+    static final int SLOT_KEY = 72;
+    static final int KEY_CAPACITY = 184;
+    static final int SLOT_BUCKET_COUNT = 256;
+    static final int SLOT_BUCKETS = 264;
+
+    static final int STATE_USED = 1;
+
+    static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * Access to the aligned sequence fields with memory ordering guarantees.
+     */
+    static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, BYTE_ORDER);
+
+    private MappedMetricsLayout() {
+    }
+
+    static int slotSize(int maxBuckets) {
+        return SLOT_BUCKETS + maxBuckets * 2 * Long.BYTES;
+    }
+
+    static int slotOffset(int slot, int slotSize) {
+        return HEADER_SIZE + slot * slotSize;
+    }
+}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.reporting.impl;
+
+import step.core.reports.Measure;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of {@link Measure}s, used to spool them to disk.
+ * <p>
+ * Values of the measure data are written with their type for {@link String}, {@link Integer}, {@link Long},
+ * {@link Double}, {@link Float} and {@link Boolean} values; any other value is written as its
+ * {@link Object#toString() string representation}.
+ */
+final class MeasureCodec {
+
+    private static final byte VERSION = 1;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INTEGER = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_DOUBLE = 4;
+    private static final byte TYPE_FLOAT = 5;
+    private static final byte TYPE_BOOLEAN = 6;
+
+    private static final Measure.Status[] STATUSES = Measure.Status.values();
+
+    private MeasureCodec() {
+    }
+
+    static byte[] encode(List<Measure> measures) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(measures.size());
+            for (Measure measure : measures) {
+                writeString(out, measure.getName());
+                out.writeLong(measure.getDuration());
+                out.writeLong(measure.getBegin());
+                out.writeByte(measure.getStatus() == null ? -1 : measure.getStatus().ordinal());
+                Map<String, Object> data = measure.getData();
+                out.writeInt(data == null ? -1 : data.size());
+                if (data != null) {
+                    for (Map.Entry<String, Object> entry : data.entrySet()) {
+                        writeString(out, entry.getKey());
+                        writeValue(out, entry.getValue());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // not thrown by in-memory streams
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the bytes are not a valid encoding
+     */
+    static List<Measure> decode(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Unsupported measures encoding version " + version);
+            }
+            int count = in.readInt();
+            List<Measure> measures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Measure measure = new Measure();
+                measure.setName(readString(in));
+                measure.setDuration(in.readLong());
+                measure.setBegin(in.readLong());
+                byte status = in.readByte();
+                measure.setStatus(status < 0 ? null : STATUSES[status]);
+                int size = in.readInt();
+                if (size >= 0) {
+                    Map<String, Object> data = new LinkedHashMap<>();
+                    for (int k = 0; k < size; k++) {
+                        data.put(readString(in), readValue(in));
+                    }
+                    measure.setData(data);
+                }
+                measures.add(measure);
+            }
+            if (in.available() > 0) {
+                throw new IllegalArgumentException("Unexpected trailing bytes after the encoded measures");
+            }
+            return measures;
+        } catch (IOException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Not an encoded list of measures", e);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof Integer i) {
+            out.writeByte(TYPE_INTEGER);
+            out.writeInt(i);
+        } else if (value instanceof Long l) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong(l);
+        } else if (value instanceof Double d) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble(d);
+        } else if (value instanceof Float f) {
+            out.writeByte(TYPE_FLOAT);
+            out.writeFloat(f);
+        } else if (value instanceof Boolean b) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean(b);
+        } else {
+            out.writeByte(TYPE_STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return readString(in);
+            case TYPE_INTEGER:
+                return in.readInt();
+            case TYPE_LONG:
+                return in.readLong();
+            case TYPE_DOUBLE:
+                return in.readDouble();
+            case TYPE_FLOAT:
+                return in.readFloat();
+            case TYPE_BOOLEAN:
+                return in.readBoolean();
+            default:
+                throw new IllegalArgumentException("Unknown measure data type " + type);
+        }
+    }
+
+    // DataOutput#writeUTF is limited to 64KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new IllegalArgumentException("Truncated measure string");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
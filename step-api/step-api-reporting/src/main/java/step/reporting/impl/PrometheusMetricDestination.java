@@ -0,0 +1,247 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.reporting.impl;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import step.core.metrics.BucketLayout;
+import step.core.metrics.CounterMetric;
+import step.core.metrics.DoubleGaugeMetric;
+import step.core.metrics.GaugeMetric;
+import step.core.metrics.HistogramMetric;
+import step.core.metrics.Metric;
+import step.core.metrics.MetricSample;
+import step.reporting.CommonMimeTypes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link LiveMetricDestination} exposing the registered metrics in the OpenMetrics text format on an embedded
+ * HTTP endpoint ({@value #PATH}), so that a Prometheus server can scrape them directly from the agent.
+ * <p>
+ * Counters are exposed with their running total, gauges with their last value and histograms with their
+ * cumulative buckets, count and sum since registration. Scrapes only read the metrics: they don't flush them, and
+ * thus don't interfere with a {@link step.core.metrics.MetricSamplesCollector} reporting the same metrics.
+ * Other metric types are not exposed. A series (name and labels) is exposed once: a metric registered with the
+ * name and labels of an already registered one replaces it.
+ * <p>
+ * The endpoint binds to the loopback interface unless another address is given.
+ */
+public final class PrometheusMetricDestination implements LiveMetricDestination {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrometheusMetricDestination.class);
+
+    public static final String PATH = "/metrics";
+
+    /**
+     * Registered metrics by series, in registration order. Synchronized on itself.
+     */
+    private final Map<List<Object>, Metric> metrics = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final HttpServer server;
+
+    /**
+     * Starts the endpoint on the loopback interface.
+     *
+     * @param port the port to listen on, {@code 0} for an ephemeral port
+     * @throws IOException if the endpoint cannot be started
+     */
+    public PrometheusMetricDestination(int port) throws IOException {
+        this(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    /**
+     * Starts the endpoint on the given address.
+     *
+     * @param address the address to listen on
+     * @throws IOException if the endpoint cannot be started
+     */
+    public PrometheusMetricDestination(InetSocketAddress address) throws IOException {
+        server = HttpServer.create(address, 0);
+        server.createContext(PATH, this::handleScrape);
+        server.start();
+    }
+
+    /**
+     * Returns the address the endpoint listens on, e.g. to get the actual port.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    @Override
+    public void accept(Metric metric) {
+        if (metric instanceof HistogramMetric) {
+            ((HistogramMetric) metric).enableCumulative();
+        } else if (!(metric instanceof CounterMetric || metric instanceof GaugeMetric || metric instanceof DoubleGaugeMetric)) {
+            logger.debug("Metric '{}' of type {} is not exposed to Prometheus", metric.getName(), metric.getType());
+            return;
+        }
+        metrics.put(List.of(familyName(metric), new HashMap<>(metric.getLabels())), metric);
+    }
+
+    /**
+     * Stops the endpoint.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handleScrape(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CommonMimeTypes.APPLICATION_OPENMETRICS_TEXT);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Unexpected exception while serving the metrics", e);
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Renders the current values of all registered metrics in the OpenMetrics text format.
+     */
+    String scrape() {
+        // group the series by metric family, as required by the format
+        List<Metric> registered;
+        synchronized (metrics) {
+            registered = new ArrayList<>(metrics.values());
+        }
+        Map<String, List<Metric>> families = new LinkedHashMap<>();
+        for (Metric metric : registered) {
+            families.computeIfAbsent(familyName(metric), k -> new ArrayList<>()).add(metric);
+        }
+        StringBuilder out = new StringBuilder();
+        families.forEach((name, familyMetrics) -> {
+            Metric first = familyMetrics.get(0);
+            String type = first instanceof CounterMetric ? "counter" : first instanceof HistogramMetric ? "histogram" : "gauge";
+            out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+            for (Metric metric : familyMetrics) {
+                if (!sameKind(metric, first)) {
+                    // a family has a single type: skip the metrics of the same name but another kind
+                    continue;
+                }
+                appendSeries(out, name, metric);
+            }
+        });
+        out.append("# EOF\n");
+        return out.toString();
+    }
+
+    private static boolean sameKind(Metric a, Metric b) {
+        return a instanceof CounterMetric == b instanceof CounterMetric
+            && a instanceof HistogramMetric == b instanceof HistogramMetric;
+    }
+
+    private static void appendSeries(StringBuilder out, String name, Metric metric) {
+        Map<String, String> labels = metric.getLabels();
+        if (metric instanceof CounterMetric) {
+            appendLine(out, name + "_total", labels, null, Long.toString(((CounterMetric) metric).getTotal()));
+        } else if (metric instanceof HistogramMetric) {
+            HistogramMetric histogram = (HistogramMetric) metric;
+            BucketLayout layout = histogram.getBucketLayout();
+            MetricSample cumulative = histogram.peekCumulative();
+            Map<Long, Long> distribution = cumulative.getDistribution() != null ? cumulative.getDistribution() : Map.of();
+            long cumulativeCount = 0;
+            for (Map.Entry<Long, Long> bucket : distribution.entrySet()) {
+                cumulativeCount += bucket.getValue();
+                // the bound of a bucket comes from the layout, so that it doesn't change with the buckets observed
+                long upperBound = layout.upperBound(bucket.getKey());
+                if (upperBound != Long.MAX_VALUE) {
+                    appendLine(out, name + "_bucket", labels, Long.toString(upperBound), Long.toString(cumulativeCount));
+                }
+            }
+            appendLine(out, name + "_bucket", labels, "+Inf", Long.toString(cumulative.getCount()));
+            appendLine(out, name + "_count", labels, null, Long.toString(cumulative.getCount()));
+            appendLine(out, name + "_sum", labels, null, Long.toString(cumulative.getSum()));
+        } else if (metric instanceof GaugeMetric) {
+            appendLine(out, name, labels, null, Long.toString(((GaugeMetric) metric).getLast()));
+        } else {
+            appendLine(out, name, labels, null, Double.toString(((DoubleGaugeMetric) metric).getLast()));
+        }
+    }
+
+    private static void appendLine(StringBuilder out, String name, Map<String, String> labels, String le, String value) {
+        out.append(name);
+        if (!labels.isEmpty() || le != null) {
+            out.append('{');
+            String separator = "";
+            for (Map.Entry<String, String> label : labels.entrySet()) {
+                out.append(separator).append(sanitize(label.getKey())).append("=\"");
+                appendEscaped(out, label.getValue());
+                out.append('"');
+                separator = ",";
+            }
+            if (le != null) {
+                out.append(separator).append("le=\"").append(le).append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static void appendEscaped(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+    }
+
+    private static String familyName(Metric metric) {
+        String name = sanitize(metric.getName());
+        // the _total suffix is added to the samples of counters, not to their family
+        return metric instanceof CounterMetric && name.endsWith("_total") ? name.substring(0, name.length() - 6) : name;
+    }
+
+    /**
+     * Replaces the characters not allowed in metric and label names by underscores.
+     */
+    static String sanitize(String name) {
+        StringBuilder sanitized = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean allowed = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == ':'
+                || (i > 0 && c >= '0' && c <= '9');
+            sanitized.append(allowed ? c : '_');
+        }
+        return sanitized.length() > 0 ? sanitized.toString() : "_";
+    }
+}
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.reporting.impl;
+
+import org.slf4j.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logs a recurring warning at most once per interval, reporting how many occurrences were suppressed
+ * in between.
+ */
+class RateLimitedWarning {
+
+    static final long DEFAULT_INTERVAL_MS = 60_000;
+
+    private final Logger logger;
+    private final long intervalMs;
+    private final AtomicLong nextWarningMs = new AtomicLong(Long.MIN_VALUE);
+    private final LongAdder suppressed = new LongAdder();
+
+    RateLimitedWarning(Logger logger) {
+        this(logger, DEFAULT_INTERVAL_MS);
+    }
+
+    RateLimitedWarning(Logger logger, long intervalMs) {
+        this.logger = logger;
+        this.intervalMs = intervalMs;
+    }
+
+    /**
+     * Logs the warning if none was logged during the interval, counts it as suppressed otherwise.
+     *
+     * @param format the slf4j message format
+     * @param args   the message arguments
+     */
+    void warn(String format, Object... args) {
+        long now = System.currentTimeMillis();
+        long next = nextWarningMs.get();
+        if (now >= next && nextWarningMs.compareAndSet(next, now + intervalMs)) {
+            long suppressedCount = suppressed.sumThenReset();
+            if (suppressedCount > 0) {
+                logger.warn(format + " ({} similar warnings suppressed)", append(args, suppressedCount));
+            } else {
+                logger.warn(format, args);
+            }
+        } else {
+            suppressed.increment();
+        }
+    }
+
+    private static Object[] append(Object[] args, Object arg) {
+        Object[] result = new Object[args.length + 1];
+        System.arraycopy(args, 0, result, 0, args.length);
+        result[args.length] = arg;
+        return result;
+    }
+}
@@ -0,0 +1,465 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.reporting.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+/**
+ * Durable spool delivering items to a target, or keeping them in a segmented write-ahead log on disk while no
+ * target is set or the target fails.
+ * <p>
+ * {@link #submit(List)} only queues the items (a full queue drops them, the caller never blocks, neither on disk
+ * I/O nor on the target), and a dedicated writer thread takes everything queued at once. As long as nothing is
+ * spooled and the target accepts them, the writer delivers the items directly from memory. Otherwise, it appends
+ * them to the current segment file as a single checksummed record followed by a single fsync, so that fsyncs are
+ * batched under load. Segments are rotated once they exceed the configured size, and the total size of the
+ * segments is capped: items that would exceed it are dropped.
+ * <p>
+ * Once a target is set, the writer replays the segments in order and deletes each of them once delivered; a
+ * failing delivery is retried later from the first undelivered record. Segments found in the directory on
+ * creation, e.g. left by a previous process, are replayed first. Items still spooled on {@link #close()} are
+ * left on disk.
+ *
+ * @param <T> the type of the spooled items
+ */
+final class SegmentedSpool<T> implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedSpool.class);
+
+    static final String SEGMENT_SUFFIX = ".spool";
+    static final long RETRY_INTERVAL_MS = 1000;
+    private static final long CLOSE_TIMEOUT_MS = 10_000;
+
+    private static final int SEGMENT_MAGIC = 0x53504f4c; // "SPOL"
+    private static final int SEGMENT_HEADER_SIZE = Integer.BYTES;
+    // payload length, item count and CRC32 of the payload
+    private static final int RECORD_HEADER_SIZE = 3 * Integer.BYTES;
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final long maxSpoolBytes;
+    private final Function<List<T>, byte[]> encoder;
+    private final Function<byte[], List<T>> decoder;
+    private final BlockingQueue<List<T>> queue;
+    private final Thread writer;
+    /**
+     * Number of items queued or in segments, i.e. not delivered yet.
+     */
+    private final AtomicLong pending = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final RateLimitedWarning dropWarning = new RateLimitedWarning(logger);
+    private final RateLimitedWarning deliveryWarning = new RateLimitedWarning(logger);
+    private volatile Consumer<List<T>> target;
+    private volatile boolean closed;
+
+    // owned by the writer thread
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private Segment current;
+    private FileChannel currentChannel;
+    private long nextSequence;
+    /**
+     * Total size of the segments on disk.
+     */
+    private long spooledBytes;
+    private long replayPosition = SEGMENT_HEADER_SIZE;
+    private long nextReplayMs;
+
+    /**
+     * @param directory       the directory of the segment files, created if needed
+     * @param maxSegmentBytes the size above which a segment is rotated
+     * @param maxSpoolBytes   the maximum total size of the segments, beyond which items are dropped
+     * @param queueCapacity   the maximum number of submissions waiting for the writer
+     * @param encoder         encodes the items of a record
+     * @param decoder         decodes the items of a record, throwing an {@link IllegalArgumentException} if invalid
+     * @param threadName      the name of the writer thread
+     * @throws IOException if the directory or its segments cannot be read
+     */
+    SegmentedSpool(Path directory, long maxSegmentBytes, long maxSpoolBytes, int queueCapacity,
+                   Function<List<T>, byte[]> encoder, Function<byte[], List<T>> decoder, String threadName) throws IOException {
+        if (maxSegmentBytes <= 0 || maxSpoolBytes <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("The segment size, spool size and queue capacity must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSpoolBytes = maxSpoolBytes;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.encoder = encoder;
+        this.decoder = decoder;
+        recover();
+        writer = new Thread(this::run, threadName);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Sets the target the items are delivered to, or {@code null} to spool all items.
+     */
+    void setTarget(Consumer<List<T>> target) {
+        this.target = target;
+        // wakes the writer up to replay the segments
+        queue.offer(List.of());
+    }
+
+    /**
+     * Returns the number of items spooled but not delivered yet.
+     */
+    long getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Returns the number of items dropped because the queue or the spool was full, the spool closed or a segment
+     * unwritable.
+     */
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Queues the items for the writer thread, which delivers them to the target or spools them.
+     * Never blocks, neither on disk I/O nor on the target.
+     */
+    void submit(List<T> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        pending.addAndGet(items.size());
+        if (closed || !queue.offer(items)) {
+            pending.addAndGet(-items.size());
+            drop(items.size(), closed ? "the spool is closed" : "the spool queue is full");
+        }
+    }
+
+    /**
+     * Writes the queued items, attempts a last delivery if a target is set, and stops the writer.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.offer(List.of());
+        try {
+            writer.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            logger.warn("The spool writer did not stop within {} ms, {} items may not be written to {}",
+                CLOSE_TIMEOUT_MS, queue.size(), directory);
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                List<T> first = queue.poll(RETRY_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    List<List<T>> submissions = new ArrayList<>();
+                    submissions.add(first);
+                    queue.drainTo(submissions);
+                    deliver(submissions);
+                }
+                if (closed && queue.isEmpty()) {
+                    nextReplayMs = 0;
+                    replay();
+                    break;
+                }
+                replay();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeCurrent();
+        }
+    }
+
+    /**
+     * Delivers the submitted items from memory if nothing is spooled and the target accepts them, spools them
+     * otherwise.
+     */
+    private void deliver(List<List<T>> submissions) {
+        List<T> items = new ArrayList<>();
+        submissions.forEach(items::addAll);
+        if (items.isEmpty()) {
+            return;
+        }
+        // the spooled items go first: delivering from memory while some are left would reorder them
+        replay();
+        Consumer<List<T>> target = this.target;
+        if (target != null && segments.isEmpty()) {
+            try {
+                target.accept(items);
+                pending.addAndGet(-items.size());
+                return;
+            } catch (RuntimeException e) {
+                deliveryWarning.warn("Delivery of {} items failed, spooling them to {}", items.size(), directory, e);
+            }
+        }
+        write(items);
+    }
+
+    private void write(List<T> items) {
+        boolean written = false;
+        try {
+            byte[] payload = encoder.apply(items);
+            long recordBytes = RECORD_HEADER_SIZE + payload.length + (currentChannel == null ? SEGMENT_HEADER_SIZE : 0);
+            if (spooledBytes + recordBytes > maxSpoolBytes) {
+                pending.addAndGet(-items.size());
+                drop(items.size(), "the spool is full");
+                return;
+            }
+            if (currentChannel == null) {
+                openSegment();
+            }
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length)
+                .putInt(payload.length).putInt(items.size()).putInt((int) crc.getValue()).put(payload).flip();
+            while (record.hasRemaining()) {
+                currentChannel.write(record);
+            }
+            current.size += RECORD_HEADER_SIZE + payload.length;
+            spooledBytes += RECORD_HEADER_SIZE + payload.length;
+            current.items += items.size();
+            written = true;
+            currentChannel.force(false);
+            if (current.size >= maxSegmentBytes) {
+                closeCurrent();
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.error("Unable to write {} items to the spool segment {}", items.size(), current == null ? directory : current.path, e);
+            if (!written) {
+                pending.addAndGet(-items.size());
+                drop(items.size(), "they could not be written");
+            }
+            // continue with a new segment rather than after a possibly partial record
+            closeCurrent();
+        }
+    }
+
+    private void openSegment() throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", nextSequence++, SEGMENT_SUFFIX));
+        currentChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE).putInt(SEGMENT_MAGIC).flip();
+        while (header.hasRemaining()) {
+            currentChannel.write(header);
+        }
+        current = new Segment(path);
+        current.size = SEGMENT_HEADER_SIZE;
+        spooledBytes += SEGMENT_HEADER_SIZE;
+        segments.add(current);
+    }
+
+    /**
+     * Closes the current segment: the next write opens a new one, and the closed segment can be replayed.
+     */
+    private void closeCurrent() {
+        if (currentChannel != null) {
+            try {
+                currentChannel.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close the spool segment {}", current.path, e);
+            }
+            currentChannel = null;
+            current = null;
+        }
+    }
+
+    private void replay() {
+        Consumer<List<T>> target = this.target;
+        if (target == null || segments.isEmpty() || System.currentTimeMillis() < nextReplayMs) {
+            return;
+        }
+        closeCurrent();
+        while (!segments.isEmpty()) {
+            Segment segment = segments.peek();
+            if (!replay(segment, target)) {
+                nextReplayMs = System.currentTimeMillis() + RETRY_INTERVAL_MS;
+                return;
+            }
+            pending.addAndGet(-segment.items);
+            segments.poll();
+            spooledBytes -= segment.size;
+            replayPosition = SEGMENT_HEADER_SIZE;
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                logger.warn("Unable to delete the replayed spool segment {}", segment.path, e);
+            }
+        }
+    }
+
+    /**
+     * Delivers the records of the segment from {@link #replayPosition}. Returns {@code false} if the delivery
+     * failed, {@code true} once the segment is done, including when its remaining records are unreadable.
+     */
+    private boolean replay(Segment segment, Consumer<List<T>> target) {
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            Record record;
+            while ((record = readRecord(channel, replayPosition, segment.path)) != null) {
+                List<T> items;
+                try {
+                    items = decoder.apply(record.payload);
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Skipping the rest of the spool segment {} after an undecodable record", segment.path, e);
+                    break;
+                }
+                try {
+                    target.accept(items);
+                } catch (RuntimeException e) {
+                    deliveryWarning.warn("Replay of the spool segment {} failed, retrying later", segment.path, e);
+                    return false;
+                }
+                replayPosition = record.next;
+                segment.items -= record.items;
+                pending.addAndGet(-record.items);
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to read the spool segment {}, skipping it", segment.path, e);
+        }
+        if (segment.items > 0) {
+            drop(segment.items, "they could not be read");
+        }
+        return true;
+    }
+
+    /**
+     * Reads the record at the given position, or returns {@code null} at the end of the segment or if the
+     * record is truncated or corrupted.
+     */
+    private static Record readRecord(FileChannel channel, long position, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        if (!readFully(channel, header, position)) {
+            return null;
+        }
+        int length = header.getInt(0);
+        int items = header.getInt(Integer.BYTES);
+        int checksum = header.getInt(2 * Integer.BYTES);
+        if (length < 0 || items < 0 || length > channel.size() - position - RECORD_HEADER_SIZE) {
+            logger.warn("Truncated record at position {} of the spool segment {}", position, path);
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload, position + RECORD_HEADER_SIZE);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array());
+        if ((int) crc.getValue() != checksum) {
+            logger.warn("Corrupted record at position {} of the spool segment {}", position, path);
+            return null;
+        }
+        return new Record(payload.array(), items, position + RECORD_HEADER_SIZE + length);
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Registers the segments left in the directory, in order, and counts their items.
+     */
+    private void recover() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(paths::add);
+        }
+        paths.sort(null);
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            try {
+                nextSequence = Math.max(nextSequence, Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())) + 1);
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring the unexpected file {} in the spool directory", path);
+                continue;
+            }
+            Segment segment = new Segment(path);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+                if (readFully(channel, header, 0) && header.getInt(0) == SEGMENT_MAGIC) {
+                    long position = SEGMENT_HEADER_SIZE;
+                    Record record;
+                    while ((record = readRecord(channel, position, path)) != null) {
+                        segment.items += record.items;
+                        position = record.next;
+                    }
+                }
+            }
+            if (segment.items > 0) {
+                segment.size = Files.size(path);
+                segments.add(segment);
+                spooledBytes += segment.size;
+                pending.addAndGet(segment.items);
+            } else {
+                Files.deleteIfExists(path);
+            }
+        }
+        if (!segments.isEmpty()) {
+            logger.info("Recovered {} spooled items from {}", pending.get(), directory);
+        }
+    }
+
+    private void drop(long count, String reason) {
+        dropped.add(count);
+        dropWarning.warn("Dropping {} items of the spool {}: {}", count, directory, reason);
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private long size;
+        /**
+         * Number of items not delivered yet.
+         */
+        private long items;
+
+        private Segment(Path path) {
+            this.path = path;
+        }
+    }
+
+    private record Record(byte[] payload, int items, long next) {
+    }
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.reporting.impl;
+
+import step.core.reports.Measure;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A {@link LiveMeasureDestination} that forwards to a delegate set at runtime, and spools the measures to disk
+ * while no delegate is set or the delegate fails, e.g. while the controller restarts.
+ * <p>
+ * Spooled measures are appended to a segmented write-ahead log in the given directory by a background thread,
+ * so that reporting a measure never blocks on disk I/O nor on an unavailable delegate. Once a delegate is set, the
+ * spooled measures are replayed to it in order, before any new measure. Measures still spooled on {@link #close()}
+ * stay on disk and are replayed by the next destination created on the same directory.
+ */
+public class SpoolingLiveMeasureDestination implements LiveMeasureDestination {
+
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 16 * 1024 * 1024;
+    public static final long DEFAULT_MAX_SPOOL_BYTES = 1024 * 1024 * 1024;
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+    private final SegmentedSpool<Measure> spool;
+    private volatile LiveMeasureDestination delegate;
+
+    /**
+     * Creates the destination with segments of {@value #DEFAULT_MAX_SEGMENT_BYTES} bytes, at most
+     * {@value #DEFAULT_MAX_SPOOL_BYTES} bytes spooled and a queue of {@value #DEFAULT_QUEUE_CAPACITY} submissions.
+     *
+     * @param directory the spool directory, created if needed
+     * @throws IOException if the spool directory cannot be created or read
+     */
+    public SpoolingLiveMeasureDestination(Path directory) throws IOException {
+        this(directory, DEFAULT_MAX_SEGMENT_BYTES, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * @param directory       the spool directory, created if needed
+     * @param maxSegmentBytes the size above which a segment file is rotated; must be positive
+     * @param queueCapacity   the maximum number of submissions waiting to be spooled, beyond which measures are
+     *                        dropped; must be positive
+     * @throws IOException if the spool directory cannot be created or read
+     */
+    public SpoolingLiveMeasureDestination(Path directory, long maxSegmentBytes, int queueCapacity) throws IOException {
+        this(directory, maxSegmentBytes, DEFAULT_MAX_SPOOL_BYTES, queueCapacity);
+    }
+
+    /**
+     * @param directory       the spool directory, created if needed
+     * @param maxSegmentBytes the size above which a segment file is rotated; must be positive
+     * @param maxSpoolBytes   the maximum total size of the segment files, beyond which measures are dropped;
+     *                        must be positive
+     * @param queueCapacity   the maximum number of submissions waiting to be spooled, beyond which measures are
+     *                        dropped; must be positive
+     * @throws IOException if the spool directory cannot be created or read
+     */
+    public SpoolingLiveMeasureDestination(Path directory, long maxSegmentBytes, long maxSpoolBytes, int queueCapacity) throws IOException {
+        spool = new SegmentedSpool<>(directory, maxSegmentBytes, maxSpoolBytes, queueCapacity, MeasureCodec::encode,
+            MeasureCodec::decode, "step-measure-spool");
+    }
+
+    /**
+     * Sets the destination the measures are forwarded to, or {@code null} to spool all measures.
+     */
+    public void setDelegate(LiveMeasureDestination delegate) {
+        this.delegate = delegate;
+        spool.setTarget(delegate == null ? null : delegate::acceptBatch);
+    }
+
+    /**
+     * Returns the number of measures spooled but not forwarded yet.
+     */
+    public long getPendingCount() {
+        return spool.getPendingCount();
+    }
+
+    /**
+     * Returns the number of measures dropped because the spool could not keep up or write them.
+     */
+    public long getDroppedCount() {
+        return spool.getDroppedCount();
+    }
+
+    @Override
+    public void accept(Measure measure) {
+        spool.submit(List.of(measure));
+    }
+
+    @Override
+    public void acceptBatch(List<Measure> measures) {
+        spool.submit(measures);
+    }
+
+    @Override
+    public void flush() {
+        LiveMeasureDestination delegate = this.delegate;
+        if (delegate != null) {
+            delegate.flush();
+        }
+    }
+
+    /**
+     * Writes the queued measures, attempts to forward the spooled ones and closes the delegate.
+     */
+    @Override
+    public void close() {
+        spool.close();
+        LiveMeasureDestination delegate = this.delegate;
+        if (delegate != null) {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (C) 2026, exense GmbH
+ *
+ * This file is part of STEP
+ *
+ * STEP is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * STEP is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with STEP.  If not, see <http://www.gnu.org/licenses/>.
+ ******************************************************************************/
+package step.reporting.impl;
+
+import step.core.metrics.Metric;
+import step.core.metrics.MetricSample;
+import step.core.metrics.MetricSampleCodec;
+import step.core.metrics.MetricSamplesCollector;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A {@link LiveMetricDestination} delivering the samples of the registered metrics to a sink set at runtime, and
+ * spooling them to disk while no sink is set or the sink fails, e.g. while the controller restarts.
+ * <p>
+ * The registered metrics are flushed at every interval. Spooled samples are appended to a segmented write-ahead
+ * log in the given directory by a background thread (encoded with {@link MetricSampleCodec}), so that neither the
+ * flush nor the keyword threads block on disk I/O or on an unavailable sink. Once a sink is set, the spooled samples
+ * are replayed to it in order, before any new sample. Samples still spooled on {@link #close()} stay on disk and are
+ * replayed by the next destination created on the same directory.
+ */
+public class SpoolingLiveMetricDestination implements LiveMetricDestination {
+
+    public static final long DEFAULT_MAX_SEGMENT_BYTES = 16 * 1024 * 1024;
+    public static final long DEFAULT_MAX_SPOOL_BYTES = 1024 * 1024 * 1024;
+    public static final int DEFAULT_QUEUE_CAPACITY = 10_000;
+
+    private final SegmentedSpool<MetricSample> spool;
+    private final MetricSamplesCollector collector;
+
+    /**
+     * Creates the destination with segments of {@value #DEFAULT_MAX_SEGMENT_BYTES} bytes, at most
+     * {@value #DEFAULT_MAX_SPOOL_BYTES} bytes spooled, a queue of {@value #DEFAULT_QUEUE_CAPACITY} samples and the
+     * default flush interval of
+     * {@value MetricSamplesCollector#FLUSH_INTERVAL_MS} ms.
+     *
+     * @param directory the spool directory, created if needed
+     * @throws IOException if the spool directory cannot be created or read
+     */
+    public SpoolingLiveMetricDestination(Path directory) throws IOException {
+        this(directory, DEFAULT_MAX_SEGMENT_BYTES, DEFAULT_QUEUE_CAPACITY, MetricSamplesCollector.FLUSH_INTERVAL_MS);
+    }
+
+    /**
+     * @param directory       the spool directory, created if needed
+     * @param maxSegmentBytes the size above which a segment file is rotated; must be positive
+     * @param queueCapacity   the maximum number of samples waiting to be spooled, beyond which samples are
+     *                        dropped; must be positive
+     * @param flushIntervalMs the interval at which the registered metrics are flushed; must be positive
+     * @throws IOException if the spool directory cannot be created or read
+     */
+    public SpoolingLiveMetricDestination(Path directory, long maxSegmentBytes, int queueCapacity, long flushIntervalMs) throws IOException {
+        this(directory, maxSegmentBytes, DEFAULT_MAX_SPOOL_BYTES, queueCapacity, flushIntervalMs);
+    }
+
+    /**
+     * @param directory       the spool directory, created if needed
+     * @param maxSegmentBytes the size above which a segment file is rotated; must be positive
+     * @param maxSpoolBytes   the maximum total size of the segment files, beyond which samples are dropped;
+     *                        must be positive
+     * @param queueCapacity   the maximum number of samples waiting to be spooled, beyond which samples are
+     *                        dropped; must be positive
+     * @param flushIntervalMs the interval at which the registered metrics are flushed; must be positive
+     * @throws IOException if the spool directory cannot be created or read
+     */
+    public SpoolingLiveMetricDestination(Path directory, long maxSegmentBytes, long maxSpoolBytes, int queueCapacity,
+                                         long flushIntervalMs) throws IOException {
+        spool = new SegmentedSpool<>(directory, maxSegmentBytes, maxSpoolBytes, queueCapacity, MetricSampleCodec::encode,
+            MetricSampleCodec::decode, "step-metric-spool");
+        collector = new MetricSamplesCollector(flushIntervalMs, sample -> spool.submit(List.of(sample)))
+            .withRetention(MetricSamplesCollector.Retention.NONE)
+            .startScheduledFlush();
+    }
+
+    /**
+     * Sets the sink the samples are delivered to, or {@code null} to spool all samples.
+     */
+    public void setSink(Consumer<List<MetricSample>> sink) {
+        spool.setTarget(sink);
+    }
+
+    /**
+     * Returns the number of samples spooled but not delivered yet.
+     */
+    public long getPendingCount() {
+        return spool.getPendingCount();
+    }
+
+    /**
+     * Returns the number of samples dropped because the spool could not keep up or write them.
+     */
+    public long getDroppedCount() {
+        return spool.getDroppedCount();
+    }
+
+    @Override
+    public void accept(Metric metric) {
+        collector.register(metric);
+    }
+
+    /**
+     * Flushes all registered metrics immediately. Their samples are then delivered or spooled by the background
+     * thread.
+     */
+    @Override
+    public void flush() {
+        collector.flush();
+    }
+
+    /**
+     * Stops the scheduled flush after a final flush of the registered metrics, writes the queued samples and
+     * attempts to deliver the spooled ones.
+     */
+    @Override
+    public void close() {
+        collector.close();
+        spool.close();
+    }
+}
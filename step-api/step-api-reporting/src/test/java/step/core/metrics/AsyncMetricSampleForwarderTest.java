@@ -0,0 +1,144 @@
+package step.core.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncMetricSampleForwarderTest {
+
+    private static MetricSample sample(String name, long count) {
+        return new MetricSample(System.currentTimeMillis(), name, Collections.emptyMap(), InstrumentType.GAUGE,
+            count, count * 10, 10, 10, 10, Map.of(10L, count));
+    }
+
+    @Test
+    public void batchDeliveredWhenMaxBatchSizeReached() throws InterruptedException {
+        List<List<MetricSample>> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(1);
+        try (AsyncMetricSampleForwarder forwarder = new AsyncMetricSampleForwarder(batch -> {
+            batches.add(batch);
+            delivered.countDown();
+        }, 100, 3, 60_000, AsyncMetricSampleForwarder.OverflowPolicy.BLOCK)) {
+            forwarder.accept(sample("a", 1));
+            forwarder.accept(sample("b", 1));
+            forwarder.accept(sample("c", 1));
+
+            Assert.assertTrue("full batch must be delivered without waiting for its max age", delivered.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(3, batches.get(0).size());
+        }
+    }
+
+    @Test
+    public void batchDeliveredWhenMaxBatchAgeReached() throws InterruptedException {
+        List<List<MetricSample>> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(1);
+        try (AsyncMetricSampleForwarder forwarder = new AsyncMetricSampleForwarder(batch -> {
+            batches.add(batch);
+            delivered.countDown();
+        }, 100, 100, 50, AsyncMetricSampleForwarder.OverflowPolicy.BLOCK)) {
+            forwarder.accept(sample("a", 1));
+
+            Assert.assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(1, batches.get(0).size());
+            Assert.assertEquals(0, forwarder.getQueueDepth());
+        }
+    }
+
+    @Test
+    public void close_deliversPendingSamples() {
+        List<MetricSample> received = new CopyOnWriteArrayList<>();
+        AsyncMetricSampleForwarder forwarder = new AsyncMetricSampleForwarder(received::addAll, 100, 100, 60_000,
+            AsyncMetricSampleForwarder.OverflowPolicy.BLOCK);
+        for (int i = 0; i < 10; i++) {
+            forwarder.accept(sample("a", 1));
+        }
+        forwarder.close();
+
+        Assert.assertEquals(10, received.size());
+        Assert.assertEquals(10, forwarder.getDeliveredCount());
+
+        forwarder.accept(sample("late", 1));
+        Assert.assertEquals("samples received after close are dropped", 1, forwarder.getDroppedCount());
+    }
+
+    @Test
+    public void overflow_dropOldest() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        List<MetricSample> received = new CopyOnWriteArrayList<>();
+        AsyncMetricSampleForwarder forwarder = new AsyncMetricSampleForwarder(batch -> {
+            firstBatchStarted.countDown();
+            awaitQuietly(release);
+            received.addAll(batch);
+        }, 2, 1, 60_000, AsyncMetricSampleForwarder.OverflowPolicy.DROP_OLDEST);
+
+        forwarder.accept(sample("blocking", 1));
+        Assert.assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS)); // delivery thread is now busy
+        forwarder.accept(sample("a", 1));
+        forwarder.accept(sample("b", 1));
+        forwarder.accept(sample("c", 1)); // queue full: "a" is dropped
+
+        Assert.assertEquals(2, forwarder.getQueueDepth());
+        Assert.assertEquals(1, forwarder.getDroppedCount());
+
+        release.countDown();
+        forwarder.close();
+        Assert.assertEquals(List.of("blocking", "b", "c"), received.stream().map(MetricSample::getName).toList());
+    }
+
+    @Test
+    public void overflow_aggregate() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        List<MetricSample> received = new CopyOnWriteArrayList<>();
+        AsyncMetricSampleForwarder forwarder = new AsyncMetricSampleForwarder(batch -> {
+            firstBatchStarted.countDown();
+            awaitQuietly(release);
+            received.addAll(batch);
+        }, 1, 1, 60_000, AsyncMetricSampleForwarder.OverflowPolicy.AGGREGATE);
+
+        forwarder.accept(sample("blocking", 1));
+        Assert.assertTrue(firstBatchStarted.await(5, TimeUnit.SECONDS));
+        forwarder.accept(sample("a", 1));
+        forwarder.accept(sample("b", 2)); // queue full: aggregated
+        forwarder.accept(sample("b", 3)); // merged into the pending "b"
+
+        Assert.assertEquals(2, forwarder.getAggregatedCount());
+        Assert.assertEquals(0, forwarder.getDroppedCount());
+
+        release.countDown();
+        forwarder.close();
+        MetricSample b = received.stream().filter(s -> s.getName().equals("b")).findFirst().orElseThrow();
+        Assert.assertEquals(5, b.getCount());
+        Assert.assertEquals(50, b.getSum());
+        Assert.assertEquals(5, (long) b.getDistribution().get(10L));
+        Assert.assertEquals("no observation lost", 7, received.stream().mapToLong(MetricSample::getCount).sum());
+    }
+
+    @Test
+    public void failingConsumer_countsDroppedSamples() {
+        AsyncMetricSampleForwarder forwarder = new AsyncMetricSampleForwarder(batch -> {
+            throw new IllegalStateException("destination down");
+        }, 10, 10, 60_000, AsyncMetricSampleForwarder.OverflowPolicy.BLOCK);
+        forwarder.accept(sample("a", 1));
+        forwarder.accept(sample("b", 1));
+        forwarder.close();
+
+        Assert.assertEquals(2, forwarder.getDroppedCount());
+        Assert.assertEquals(0, forwarder.getDeliveredCount());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package step.core.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BucketCountsTest {
+
+    @Test
+    public void of_sortsBucketsAndKeepsMapView() {
+        Map<Long, Long> source = new HashMap<>();
+        source.put(300L, 3L);
+        source.put(-100L, 1L);
+        source.put(100L, 2L);
+
+        BucketCounts counts = BucketCounts.of(source);
+
+        assertEquals(3, counts.size());
+        assertEquals(-100L, counts.keyAt(0));
+        assertEquals(100L, counts.keyAt(1));
+        assertEquals(300L, counts.keyAt(2));
+        assertEquals(3L, counts.countAt(2));
+        assertEquals(6L, counts.totalCount());
+        assertEquals(Long.valueOf(2L), counts.get(100L));
+        assertNull(counts.get(200L));
+        assertEquals(0L, counts.getCount(200L));
+        assertTrue(counts.containsKey(-100L));
+        assertEquals(source, counts);
+        assertEquals(counts, source);
+        assertEquals(source.hashCode(), counts.hashCode());
+        assertSame(counts, BucketCounts.of(counts));
+    }
+
+    @Test
+    public void forEachBucket_visitsKeysInAscendingOrder() {
+        BucketCounts counts = BucketCounts.of(Map.of(5L, 1L, 1L, 1L, 3L, 1L));
+        List<Long> keys = new ArrayList<>();
+
+        counts.forEachBucket((key, count) -> keys.add(key));
+
+        assertEquals(List.of(1L, 3L, 5L), keys);
+        assertEquals(List.of(1L, 3L, 5L), new ArrayList<>(counts.keySet()));
+    }
+
+    @Test
+    public void merge_sumsMatchingBuckets() {
+        BucketCounts a = BucketCounts.of(Map.of(0L, 1L, 10L, 2L, 30L, 3L));
+        BucketCounts b = BucketCounts.of(Map.of(10L, 5L, 20L, 7L, 40L, 1L));
+
+        BucketCounts merged = BucketCounts.merge(a, b);
+
+        assertEquals(Map.of(0L, 1L, 10L, 7L, 20L, 7L, 30L, 3L, 40L, 1L), merged);
+        assertEquals(a.totalCount() + b.totalCount(), merged.totalCount());
+        assertSame(a, BucketCounts.merge(a, BucketCounts.EMPTY));
+    }
+
+    @Test
+    public void isReadOnly() {
+        BucketCounts counts = BucketCounts.of(Map.of(1L, 1L));
+        assertThrows(UnsupportedOperationException.class, () -> counts.put(2L, 2L));
+        assertThrows(IndexOutOfBoundsException.class, () -> counts.keyAt(1));
+    }
+
+    @Test
+    public void histogramFlush_producesSortedBucketCounts() {
+        for (BucketLayout layout : List.of(BucketLayout.linear(10), BucketLayout.logLinear(2))) {
+            HistogramMetric histogram = new HistogramMetric("h", layout);
+            for (long v = 2000; v >= 0; v -= 7) {
+                histogram.observe(v);
+            }
+
+            BucketCounts distribution = (BucketCounts) histogram.flush().getDistribution();
+
+            assertEquals(286, distribution.totalCount());
+            for (int i = 1; i < distribution.size(); i++) {
+                assertTrue(distribution.keyAt(i - 1) < distribution.keyAt(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package step.core.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class BucketLayoutTest {
+
+    @Test
+    public void linear_roundsDownToPrecision() {
+        BucketCounters counters = BucketLayout.linear(100).newCounters();
+        counters.record(120);
+        counters.record(199);
+        counters.record(250);
+
+        Map<Long, Long> distribution = counters.drain();
+        Assert.assertEquals(2, distribution.size());
+        Assert.assertEquals(2, (long) distribution.get(100L));
+        Assert.assertEquals(1, (long) distribution.get(200L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void linear_nonPositivePrecision_rejected() {
+        BucketLayout.linear(0);
+    }
+
+    @Test
+    public void logLinear_smallValuesAreExact() {
+        BucketCounters counters = BucketLayout.logLinear(2).newCounters();
+        for (long v = 0; v < 200; v++) {
+            counters.record(v);
+        }
+        Map<Long, Long> distribution = counters.drain();
+        Assert.assertEquals(200, distribution.size());
+        for (long v = 0; v < 200; v++) {
+            Assert.assertEquals(1, (long) distribution.get(v));
+        }
+    }
+
+    @Test
+    public void logLinear_relativeErrorIsBounded() {
+        LogLinearBucketLayout layout = (LogLinearBucketLayout) BucketLayout.logLinear(2, 60_000);
+        for (long v = 1; v <= 60_000; v += 7) {
+            long bucket = layout.lowestValueAt(layout.indexOf(v));
+            Assert.assertTrue("bucket must not exceed the value", bucket <= v);
+            Assert.assertTrue("relative error too large for " + v + " (bucket " + bucket + ")",
+                (double) (v - bucket) / v <= 0.01);
+        }
+    }
+
+    @Test
+    public void logLinear_fixedSizeRegardlessOfObservedRange() {
+        LogLinearBucketLayout layout = (LogLinearBucketLayout) BucketLayout.logLinear(2);
+        Assert.assertEquals(2048, layout.getCountsArrayLength());
+
+        BucketCounters counters = layout.newCounters();
+        counters.record(-5);
+        counters.record(Long.MAX_VALUE);
+        Map<Long, Long> distribution = counters.drain();
+        Assert.assertEquals("negative values are counted in the first bucket", 1, (long) distribution.get(0L));
+        long highestBucket = layout.lowestValueAt(layout.indexOf(BucketLayout.DEFAULT_HIGHEST_TRACKABLE_VALUE));
+        Assert.assertEquals("values above the trackable range are counted in the last bucket",
+            1, (long) distribution.get(highestBucket));
+    }
+
+    @Test
+    public void logLinear_drainResetsCounts() {
+        BucketCounters counters = BucketLayout.logLinear(3).newCounters();
+        counters.record(1234);
+        Assert.assertEquals(1, counters.drain().size());
+        Assert.assertTrue(counters.drain().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void logLinear_invalidDigits_rejected() {
+        BucketLayout.logLinear(6);
+    }
+
+    @Test
+    public void linear_maxBuckets_foldsExcessIntoOverflowBucket() {
+        HistogramMetric histogram = new HistogramMetric("h", BucketLayout.linear(10, 3));
+        for (long v = 0; v < 100; v += 10) {
+            histogram.observe(v);
+        }
+        histogram.observe(0);
+
+        Map<Long, Long> distribution = histogram.flush().getDistribution();
+        Assert.assertEquals(4, distribution.size());
+        Assert.assertEquals(2, (long) distribution.get(0L));
+        Assert.assertEquals(7, (long) distribution.get(BucketLayout.OVERFLOW_BUCKET));
+        Assert.assertEquals(7, histogram.getFoldedObservationCount());
+
+        // the limit applies per interval: the next one opens new buckets again
+        histogram.observe(15);
+        histogram.observe(95);
+        Assert.assertEquals(Map.of(10L, 1L, 90L, 1L), histogram.flush().getDistribution());
+        Assert.assertEquals(7, histogram.getFoldedObservationCount());
+    }
+
+    @Test
+    public void explicit_countsValuesInBoundaryBands() {
+        HistogramMetric histogram = new HistogramMetric("latency", BucketLayout.explicit(50, 100, 250, 500, 1000));
+        histogram.observe(-3);
+        histogram.observe(10);
+        histogram.observe(50);
+        histogram.observe(51);
+        histogram.observe(100);
+        histogram.observe(250);
+        histogram.observe(999);
+        histogram.observe(60_000);
+
+        MetricSample sample = histogram.flush();
+        // each boundary is the lowest value of its band, the values below the first one have their own band
+        Assert.assertEquals(Map.of(BucketLayout.UNDERFLOW_BUCKET, 2L, 50L, 2L, 100L, 1L, 250L, 1L, 500L, 1L, 1000L, 1L),
+            sample.getDistribution());
+        Assert.assertEquals(sample.getDistribution(), MetricSampleCodec.decode(MetricSampleCodec.encode(List.of(sample)))
+            .get(0).getDistribution());
+        Assert.assertEquals(-3, sample.getMin());
+        Assert.assertEquals(60_000, sample.getMax());
+        Assert.assertEquals(0, histogram.getFoldedObservationCount());
+        Assert.assertTrue(histogram.flush().getDistribution().isEmpty());
+    }
+
+    @Test
+    public void explicit_fixedSizeRegardlessOfObservedRange() {
+        ExplicitBucketLayout layout = (ExplicitBucketLayout) BucketLayout.explicit(10, 20);
+        Assert.assertEquals(3, layout.getBucketCount());
+        Assert.assertEquals(0, layout.indexOf(Long.MIN_VALUE));
+        Assert.assertEquals(0, layout.indexOf(9));
+        Assert.assertEquals(1, layout.indexOf(10));
+        Assert.assertEquals(1, layout.indexOf(19));
+        Assert.assertEquals(2, layout.indexOf(20));
+        Assert.assertEquals(2, layout.indexOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void explicit_invalidBoundaries_rejected() {
+        Assert.assertThrows(IllegalArgumentException.class, () -> BucketLayout.explicit());
+        Assert.assertThrows(IllegalArgumentException.class, () -> BucketLayout.explicit(10, 10));
+        Assert.assertThrows(IllegalArgumentException.class, () -> BucketLayout.explicit(100, 50));
+        Assert.assertThrows(IllegalArgumentException.class, () -> BucketLayout.explicit(Long.MIN_VALUE, 0));
+    }
+
+    @Test
+    public void upperBound_dependsOnlyOnTheLayout() {
+        BucketLayout linear = BucketLayout.linear(10);
+        Assert.assertEquals(9, linear.upperBound(0));
+        Assert.assertEquals(99, linear.upperBound(90));
+        Assert.assertEquals(-10, linear.upperBound(-10));
+        Assert.assertEquals(Long.MAX_VALUE, linear.upperBound(BucketLayout.OVERFLOW_BUCKET));
+
+        BucketLayout explicit = BucketLayout.explicit(50, 100);
+        Assert.assertEquals(49, explicit.upperBound(BucketLayout.UNDERFLOW_BUCKET));
+        Assert.assertEquals(99, explicit.upperBound(50));
+        Assert.assertEquals(Long.MAX_VALUE, explicit.upperBound(100));
+
+        LogLinearBucketLayout logLinear = (LogLinearBucketLayout) BucketLayout.logLinear(2, 10_000);
+        int lastIndex = logLinear.indexOf(10_000);
+        for (int index = 0; index < lastIndex; index++) {
+            long key = logLinear.lowestValueAt(index);
+            Assert.assertEquals(logLinear.lowestValueAt(index + 1) - 1, logLinear.upperBound(key));
+            Assert.assertEquals(index, logLinear.indexOf(logLinear.upperBound(key)));
+        }
+        Assert.assertEquals(Long.MAX_VALUE, logLinear.upperBound(logLinear.lowestValueAt(lastIndex)));
+    }
+}
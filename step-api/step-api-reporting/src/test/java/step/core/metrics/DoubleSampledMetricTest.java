@@ -0,0 +1,117 @@
+package step.core.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class DoubleSampledMetricTest {
+
+    @Test
+    public void flush_keepsFullPrecision() {
+        DoubleGaugeMetric gauge = new DoubleGaugeMetric("cpu_load");
+        gauge.observe(0.25);
+        gauge.observe(1.5);
+        gauge.observe(-0.125);
+
+        MetricSample sample = gauge.flush();
+
+        Assert.assertTrue(sample.isFloatingPoint());
+        Assert.assertEquals(InstrumentType.GAUGE, sample.getType());
+        Assert.assertEquals(3, sample.getCount());
+        Assert.assertEquals(1.625, sample.getDoubleSum(), 0);
+        Assert.assertEquals(-0.125, sample.getDoubleMin(), 0);
+        Assert.assertEquals(1.5, sample.getDoubleMax(), 0);
+        Assert.assertEquals(-0.125, sample.getDoubleLast(), 0);
+        // rounded values for consumers unaware of the floating-point fields
+        Assert.assertEquals(2, sample.getSum());
+        Assert.assertEquals(2, sample.getMax());
+    }
+
+    @Test
+    public void flush_resetsAccumulatorsButKeepsLast() {
+        DoubleHistogramMetric histogram = new DoubleHistogramMetric("throughput_mb_s");
+        histogram.observe(12.5);
+        histogram.flush();
+
+        MetricSample sample = histogram.flush();
+
+        Assert.assertEquals(0, sample.getCount());
+        Assert.assertEquals(0, sample.getDoubleSum(), 0);
+        Assert.assertEquals(0, sample.getDoubleMin(), 0);
+        Assert.assertEquals(12.5, sample.getDoubleLast(), 0);
+    }
+
+    @Test
+    public void distribution_isScaled() {
+        DoubleHistogramMetric histogram = new DoubleHistogramMetric("latency_ms", Map.of(), 100, BucketLayout.linear(1));
+        histogram.observe(0.42);
+        histogram.observe(0.425);
+        histogram.observe(3.14159);
+
+        MetricSample sample = histogram.flush();
+
+        Assert.assertEquals(100, sample.getDistributionScale(), 0);
+        Assert.assertEquals(Map.of(42L, 2L, 314L, 1L), sample.getDistribution());
+    }
+
+    @Test
+    public void concurrentObservations_noneLost() throws Exception {
+        DoubleHistogramMetric histogram = new DoubleHistogramMetric("h");
+        int threads = 4;
+        int perThread = 10_000;
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int t = 0; t < threads; t++) {
+                executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        histogram.observe(0.5);
+                    }
+                });
+            }
+        }
+
+        MetricSample sample = histogram.flush();
+        Assert.assertEquals(threads * perThread, sample.getCount());
+        Assert.assertEquals(threads * perThread * 0.5, sample.getDoubleSum(), 0);
+        Assert.assertEquals(threads * perThread, ((BucketCounts) sample.getDistribution()).totalCount());
+    }
+
+    @Test
+    public void merge_combinesExactValues() {
+        DoubleGaugeMetric gauge = new DoubleGaugeMetric("g");
+        gauge.observe(0.1);
+        MetricSample first = gauge.flush();
+        gauge.observe(-0.2);
+        MetricSample second = gauge.flush();
+
+        MetricSample merged = MetricSamples.merge(first, second);
+
+        Assert.assertTrue(merged.isFloatingPoint());
+        Assert.assertEquals(2, merged.getCount());
+        Assert.assertEquals(-0.1, merged.getDoubleSum(), 1e-12);
+        Assert.assertEquals(-0.2, merged.getDoubleMin(), 0);
+        Assert.assertEquals(0.1, merged.getDoubleMax(), 0);
+    }
+
+    @Test
+    public void codec_roundTripsFloatingPointSamples() {
+        DoubleHistogramMetric histogram = new DoubleHistogramMetric("h", Map.of("unit", "ms"));
+        histogram.observe(0.333);
+        histogram.observe(Math.PI);
+        MetricSample sample = histogram.flush();
+
+        MetricSample decoded = MetricSampleCodec.decode(MetricSampleCodec.encode(List.of(sample))).get(0);
+
+        Assert.assertTrue(decoded.isFloatingPoint());
+        Assert.assertEquals(sample.getDoubleSum(), decoded.getDoubleSum(), 0);
+        Assert.assertEquals(sample.getDoubleMin(), decoded.getDoubleMin(), 0);
+        Assert.assertEquals(sample.getDoubleMax(), decoded.getDoubleMax(), 0);
+        Assert.assertEquals(sample.getDoubleLast(), decoded.getDoubleLast(), 0);
+        Assert.assertEquals(sample.getDistributionScale(), decoded.getDistributionScale(), 0);
+        Assert.assertEquals(sample.getDistribution(), decoded.getDistribution());
+        Assert.assertEquals(sample.getSum(), decoded.getSum());
+    }
+}
@@ -0,0 +1,131 @@
+package step.core.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class EventTimeMetricTest {
+
+    private static final long T0 = 1_700_000_040_000L;
+
+    @Test
+    public void flushSamples_emitsOneSamplePerClosedSlice() {
+        HistogramMetric histogram = new HistogramMetric("h");
+        histogram.enableEventTime(10_000, 0);
+        histogram.observe(1, T0);
+        histogram.observe(2, T0 + 5_000);
+        histogram.observe(10, T0 + 12_000);
+        histogram.observe(20, T0 + 25_000);
+
+        List<MetricSample> samples = histogram.flushSamples(false);
+        Assert.assertEquals(2, samples.size());
+        Assert.assertEquals(T0, samples.get(0).getSampleTime());
+        Assert.assertEquals(2, samples.get(0).getCount());
+        Assert.assertEquals(3, samples.get(0).getSum());
+        Assert.assertEquals(2, samples.get(0).getLast());
+        Assert.assertEquals(T0 + 10_000, samples.get(1).getSampleTime());
+        Assert.assertEquals(10, samples.get(1).getSum());
+
+        // the slice of the watermark is still open until the final flush
+        Assert.assertTrue(histogram.flushSamples(false).isEmpty());
+        samples = histogram.flushSamples(true);
+        Assert.assertEquals(1, samples.size());
+        Assert.assertEquals(T0 + 20_000, samples.get(0).getSampleTime());
+        Assert.assertEquals(20, samples.get(0).getSum());
+    }
+
+    @Test
+    public void observe_withinAllowedLateness_isAccepted() {
+        GaugeMetric gauge = new GaugeMetric("g");
+        gauge.enableEventTime(10_000, 5_000);
+        gauge.observe(1, T0);
+        gauge.observe(2, T0 + 12_000);
+        Assert.assertTrue(gauge.flushSamples(false).isEmpty());
+
+        gauge.observe(3, T0 + 9_000);
+        gauge.observe(4, T0 + 15_000);
+        List<MetricSample> samples = gauge.flushSamples(false);
+        Assert.assertEquals(1, samples.size());
+        Assert.assertEquals(2, samples.get(0).getCount());
+        Assert.assertEquals(0, gauge.getLateObservationCount());
+    }
+
+    @Test
+    public void observe_afterSliceWasReported_isDroppedAndCounted() {
+        GaugeMetric gauge = new GaugeMetric("g");
+        gauge.enableEventTime(10_000, 0);
+        gauge.observe(1, T0);
+        gauge.observe(2, T0 + 10_000);
+        Assert.assertEquals(1, gauge.flushSamples(false).size());
+
+        gauge.observe(3, T0 + 1_000);
+        Assert.assertEquals(1, gauge.getLateObservationCount());
+        List<MetricSample> samples = gauge.flushSamples(true);
+        Assert.assertEquals(1, samples.size());
+        Assert.assertEquals(2, samples.get(0).getSum());
+    }
+
+    @Test
+    public void counter_runningTotalFollowsSlices() {
+        CounterMetric counter = new CounterMetric("c");
+        counter.enableEventTime(1_000, 0);
+        counter.increment(5, T0 + 1_500);
+        counter.increment(2, T0 + 100);
+        counter.increment(1, T0 + 2_000);
+
+        List<MetricSample> samples = counter.flushSamples(true);
+        Assert.assertEquals(3, samples.size());
+        Assert.assertEquals(T0, samples.get(0).getSampleTime());
+        Assert.assertEquals(2, samples.get(0).getMax());
+        Assert.assertEquals(2, samples.get(1).getMin());
+        Assert.assertEquals(7, samples.get(1).getMax());
+        Assert.assertEquals(8, samples.get(2).getLast());
+    }
+
+    @Test
+    public void collector_reportsSlicesWithTheirSampleTime() {
+        MetricSamplesCollector collector = new MetricSamplesCollector();
+        HistogramMetric histogram = new HistogramMetric("h");
+        histogram.enableEventTime(60_000, 0);
+        collector.register(histogram);
+        histogram.observe(100, T0);
+        histogram.observe(200, T0 + 60_000);
+        histogram.observe(300, T0 + 120_000);
+
+        List<MetricSample> samples = collector.getSamples();
+        Assert.assertEquals(List.of(T0, T0 + 60_000, T0 + 120_000),
+            samples.stream().map(MetricSample::getSampleTime).toList());
+    }
+
+    @Test
+    public void observe_concurrentlyWithFlushes_noObservationLost() throws InterruptedException {
+        HistogramMetric histogram = new HistogramMetric("h");
+        histogram.enableEventTime(10, 0);
+        int threads = 4;
+        int observationsPerThread = 20_000;
+        List<MetricSample> samples = new ArrayList<>();
+        try (ExecutorService pool = Executors.newFixedThreadPool(threads)) {
+            for (int i = 0; i < threads; i++) {
+                pool.submit(() -> {
+                    for (int j = 0; j < observationsPerThread; j++) {
+                        histogram.observe(1, T0 + j / 100);
+                    }
+                });
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.MILLISECONDS)) {
+                samples.addAll(histogram.flushSamples(false));
+            }
+        }
+        samples.addAll(histogram.flushSamples(true));
+
+        long recorded = samples.stream().mapToLong(MetricSample::getCount).sum();
+        Assert.assertEquals((long) threads * observationsPerThread, recorded + histogram.getLateObservationCount());
+        Assert.assertEquals(samples.size(), samples.stream().map(MetricSample::getSampleTime).distinct().count());
+    }
+}
@@ -3,6 +3,12 @@ package step.core.metrics;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
 public class HistogramMetricTest {
 
     @Test
@@ -36,4 +42,54 @@ public class HistogramMetricTest {
         Assert.assertEquals(1, snap.getCount());
         Assert.assertEquals(10, snap.getSum());
     }
+
+    @Test
+    public void logLinearLayout_boundedBucketsOverLargeRange() {
+        HistogramMetric histogram = new HistogramMetric("rt", BucketLayout.logLinear(2, 60_000));
+        for (long v = 1; v <= 60_000; v++) {
+            histogram.observe(v);
+        }
+        MetricSample snap = histogram.flush();
+
+        Assert.assertEquals(60_000, snap.getCount());
+        Assert.assertEquals(1, snap.getMin());
+        Assert.assertEquals(60_000, snap.getMax());
+        Assert.assertTrue("too many buckets: " + snap.getDistribution().size(), snap.getDistribution().size() < 1500);
+        Assert.assertEquals(60_000, snap.getDistribution().values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    public void concurrentFlush_eachSampleIsConsistent() throws InterruptedException {
+        HistogramMetric histogram = new HistogramMetric("h");
+        int threads = 4;
+        int observationsPerThread = 200_000;
+        List<MetricSample> samples = new ArrayList<>();
+        try (ExecutorService pool = Executors.newFixedThreadPool(threads)) {
+            for (int i = 0; i < threads; i++) {
+                pool.submit(() -> {
+                    for (int j = 0; j < observationsPerThread; j++) {
+                        histogram.observe(7);
+                    }
+                });
+            }
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.MILLISECONDS)) {
+                samples.add(histogram.flush());
+            }
+        }
+        samples.add(histogram.flush());
+
+        long totalCount = 0;
+        for (MetricSample sample : samples) {
+            long distributionTotal = sample.getDistribution().values().stream().mapToLong(Long::longValue).sum();
+            Assert.assertEquals("distribution total must match count", sample.getCount(), distributionTotal);
+            Assert.assertEquals("sum must match count", 7 * sample.getCount(), sample.getSum());
+            if (sample.getCount() > 0) {
+                Assert.assertEquals(7, sample.getMin());
+                Assert.assertEquals(7, sample.getMax());
+            }
+            totalCount += sample.getCount();
+        }
+        Assert.assertEquals((long) threads * observationsPerThread, totalCount);
+    }
 }
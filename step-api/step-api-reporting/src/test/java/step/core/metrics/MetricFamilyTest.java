@@ -0,0 +1,119 @@
+package step.core.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class MetricFamilyTest {
+
+    @Test
+    public void withLabels_returnsCachedChild() {
+        List<Metric> registered = new ArrayList<>();
+        CounterFamily family = new CounterFamily("requests", List.of("endpoint", "method", "status"), registered::add);
+
+        CounterMetric child = family.withLabels("/a", "GET", "200");
+
+        assertSame(child, family.withLabels("/a", "GET", "200"));
+        assertNotSame(child, family.withLabels("/a", "GET", "404"));
+        assertNotSame(child, family.withLabels("/b", "GET", "200"));
+        assertEquals(3, registered.size());
+        assertEquals("requests", child.getName());
+        assertEquals(List.of("endpoint", "method", "status"), new ArrayList<>(child.getLabels().keySet()));
+        assertEquals("GET", child.getLabels().get("method"));
+    }
+
+    @Test
+    public void withLabels_overloadsShareChildren() {
+        List<Metric> registered = new ArrayList<>();
+        CounterFamily single = new CounterFamily("c1", List.of("a"), registered::add);
+        CounterFamily pair = new CounterFamily("c2", List.of("a", "b"), registered::add);
+
+        assertSame(single.withLabels("x"), single.withLabels(new String[]{"x"}));
+        assertSame(pair.withLabels("x", "y"), pair.withLabels(new String[]{"x", "y"}));
+        assertEquals(2, registered.size());
+    }
+
+    @Test
+    public void withLabels_withoutLabelNames() {
+        List<Metric> registered = new ArrayList<>();
+        HistogramFamily family = new HistogramFamily("h", List.of(), BucketLayout.logLinear(2), registered::add);
+
+        HistogramMetric child = family.withLabels();
+
+        assertSame(child, family.withLabels());
+        assertEquals(Map.of(), child.getLabels());
+        assertTrue(child.getBucketLayout() != null);
+        assertEquals(1, registered.size());
+    }
+
+    @Test
+    public void withLabels_rejectsWrongLabelValues() {
+        CounterFamily family = new CounterFamily("c", List.of("a", "b"), m -> {
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> family.withLabels("x"));
+        assertThrows(IllegalArgumentException.class, () -> family.withLabels("x", "y", "z"));
+        assertThrows(NullPointerException.class, () -> family.withLabels("x", null));
+    }
+
+    @Test
+    public void withLabels_concurrentFirstUseRegistersOnce() throws Exception {
+        List<Metric> registered = Collections.synchronizedList(new ArrayList<>());
+        CounterFamily family = new CounterFamily("c", List.of("a", "b"), registered::add);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<CounterMetric>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    CounterMetric child = family.withLabels("x", "y");
+                    child.increment();
+                    return child;
+                }));
+            }
+            start.countDown();
+            for (Future<CounterMetric> result : results) {
+                result.get();
+            }
+        }
+
+        assertEquals(1, registered.size());
+        for (Future<CounterMetric> result : results) {
+            assertSame(registered.get(0), result.get());
+        }
+        assertEquals(threads, registered.get(0).flush().getSum());
+    }
+
+    @Test
+    public void withLabels_overflowChildCachedUpToTheLimit() {
+        List<Metric> registered = new ArrayList<>();
+        CardinalityLimiter limiter = new CardinalityLimiter(1);
+        CounterFamily family = new CounterFamily("c", List.of("a", "b"), limiter, registered::add);
+
+        CounterMetric admitted = family.withLabels("x", "1");
+        CounterMetric overflow = family.withLabels("x", "2");
+        assertEquals(CardinalityLimiter.OVERFLOW_LABELS, overflow.getLabels());
+        assertEquals(1, limiter.getFoldedCount());
+
+        // cached: looked up without asking the limiter again
+        assertSame(overflow, family.withLabels("x", "2"));
+        assertEquals(1, limiter.getFoldedCount());
+
+        // beyond as many cached label sets as the limit, the limiter is asked at each lookup
+        assertSame(overflow, family.withLabels("y", "3"));
+        assertSame(overflow, family.withLabels("y", "3"));
+        assertEquals(3, limiter.getFoldedCount());
+        assertSame(admitted, family.withLabels("x", "1"));
+        assertEquals(2, registered.size());
+    }
+}
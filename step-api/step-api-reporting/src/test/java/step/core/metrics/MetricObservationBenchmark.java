@@ -0,0 +1,85 @@
+package step.core.metrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of the observation path ({@link CounterMetric#increment()} and
+ * {@link SampledMetric#observe(long)}) for a single metric shared by all benchmark threads,
+ * registered with a {@link MetricSamplesCollector} in streaming mode like live metrics are.
+ * <p>
+ * Run {@link #main(String[])} from the test classpath; it executes the benchmarks with an
+ * increasing number of threads so that the scaling of the aggregate throughput can be compared.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricObservationBenchmark {
+
+    private MetricSamplesCollector collector;
+    private CounterMetric counter;
+    private HistogramMetric histogram;
+    private HistogramMetric logLinearHistogram;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        collector = new MetricSamplesCollector(100, blackhole::consume);
+        counter = new CounterMetric("counter");
+        histogram = new HistogramMetric("histogram");
+        logLinearHistogram = new HistogramMetric("logLinearHistogram", BucketLayout.logLinear(2));
+        collector.register(counter);
+        collector.register(histogram);
+        collector.register(logLinearHistogram);
+    }
+
+    @TearDown
+    public void tearDown() {
+        collector.close();
+    }
+
+    @Benchmark
+    public CounterMetric counterIncrement() {
+        return counter.increment();
+    }
+
+    @Benchmark
+    public SampledMetric histogramObserve() {
+        return histogram.observe(ThreadLocalRandom.current().nextLong(1000));
+    }
+
+    @Benchmark
+    public SampledMetric logLinearHistogramObserve() {
+        return logLinearHistogram.observe(ThreadLocalRandom.current().nextLong(60_000));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        int maxThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            Options options = new OptionsBuilder()
+                .include(MetricObservationBenchmark.class.getSimpleName())
+                .threads(threads)
+                .build();
+            new Runner(options).run();
+        }
+    }
+}
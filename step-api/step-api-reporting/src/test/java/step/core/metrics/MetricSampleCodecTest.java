@@ -0,0 +1,103 @@
+package step.core.metrics;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MetricSampleCodecTest {
+
+    @Test
+    public void roundTrip_preservesAllFields() {
+        MetricSample counter = new MetricSample(1_700_000_000_000L, "requests", Map.of("status", "ok"),
+                InstrumentType.COUNTER, 12, 12, 30, 42, 42, null);
+        MetricSample histogram = new MetricSample(1_700_000_001_000L, "latency", Map.of("status", "ok", "agent", "a1"),
+                InstrumentType.HISTOGRAM, 3, 260, 10, 200, 50, Map.of(0L, 1L, 50L, 1L, 200L, 1L));
+        MetricSample gauge = new MetricSample(1_700_000_000_500L, "temperature", null,
+                InstrumentType.GAUGE, 2, -10, -15, 5, -15, Map.of(-20L, 1L, 0L, 1L));
+
+        List<MetricSample> decoded = MetricSampleCodec.decode(MetricSampleCodec.encode(List.of(counter, histogram, gauge)));
+
+        assertEquals(3, decoded.size());
+        assertSampleEquals(counter, decoded.get(0));
+        assertSampleEquals(histogram, decoded.get(1));
+        assertSampleEquals(gauge, decoded.get(2));
+    }
+
+    @Test
+    public void roundTrip_extremeValues() {
+        MetricSample sample = new MetricSample(0, "extreme", Map.of(), InstrumentType.GAUGE,
+                Long.MAX_VALUE, Long.MIN_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, -1,
+                Map.of(Long.MIN_VALUE, 1L, -1L, 2L, Long.MAX_VALUE, 3L));
+
+        List<MetricSample> decoded = MetricSampleCodec.decode(MetricSampleCodec.encode(List.of(sample)));
+
+        assertSampleEquals(sample, decoded.get(0));
+    }
+
+    @Test
+    public void roundTrip_emptyList() {
+        assertTrue(MetricSampleCodec.decode(MetricSampleCodec.encode(List.of())).isEmpty());
+    }
+
+    @Test
+    public void roundTrip_samplesProducedByMetrics() {
+        HistogramMetric histogram = new HistogramMetric("duration", Map.of("keyword", "k"), BucketLayout.logLinear(2));
+        for (long v = 1; v < 100_000; v *= 3) {
+            histogram.observe(v);
+        }
+        MetricSample sample = histogram.flush();
+
+        assertSampleEquals(sample, MetricSampleCodec.decode(MetricSampleCodec.encode(List.of(sample))).get(0));
+    }
+
+    @Test
+    public void encode_isMoreCompactThanNames() {
+        List<MetricSample> samples = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            samples.add(new MetricSample(1_700_000_000_000L + i * 1000L, "keyword_duration_ms",
+                    Map.of("keyword", "MyKeyword", "status", "PASSED"), InstrumentType.HISTOGRAM,
+                    10, 1000, 50, 150, 100, Map.of(50L, 3L, 100L, 4L, 150L, 3L)));
+        }
+
+        byte[] encoded = MetricSampleCodec.encode(samples);
+
+        // names and labels are written once, each sample then only takes a few bytes per field
+        int namesLength = "keyword_duration_msMyKeywordPASSED".getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(encoded.length < 100 * namesLength);
+        assertEquals(100, MetricSampleCodec.decode(encoded).size());
+    }
+
+    @Test
+    public void decode_rejectsInvalidInput() {
+        byte[] encoded = MetricSampleCodec.encode(List.of(new MetricSample(1, "m", Map.of("a", "b"),
+                InstrumentType.COUNTER, 1, 1, 0, 1, 1, null)));
+
+        assertThrows(IllegalArgumentException.class, () -> MetricSampleCodec.decode(new byte[]{1, 2, 3}));
+        assertThrows(IllegalArgumentException.class,
+                () -> MetricSampleCodec.decode(Arrays.copyOf(encoded, encoded.length - 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> MetricSampleCodec.decode(Arrays.copyOf(encoded, encoded.length + 1)));
+        byte[] otherVersion = encoded.clone();
+        otherVersion[2] = 99;
+        assertThrows(IllegalArgumentException.class, () -> MetricSampleCodec.decode(otherVersion));
+    }
+
+    private static void assertSampleEquals(MetricSample expected, MetricSample actual) {
+        assertEquals(expected.getSampleTime(), actual.getSampleTime());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getLabels(), actual.getLabels());
+        assertEquals(expected.getType(), actual.getType());
+        assertEquals(expected.getCount(), actual.getCount());
+        assertEquals(expected.getSum(), actual.getSum());
+        assertEquals(expected.getMin(), actual.getMin());
+        assertEquals(expected.getMax(), actual.getMax());
+        assertEquals(expected.getLast(), actual.getLast());
+        assertEquals(expected.getDistribution(), actual.getDistribution());
+    }
+}
@@ -0,0 +1,153 @@
+package step.core.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+import step.core.time.ManualClock;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class MetricSamplesAggregatorTest {
+
+    @Test
+    public void flush_mergesSamplesOfManyInvocations() {
+        List<List<MetricSample>> delivered = new ArrayList<>();
+        MetricSamplesAggregator aggregator = new MetricSamplesAggregator(60_000, delivered::add);
+        ManualClock clock = new ManualClock(120_000);
+        for (int i = 0; i < 50; i++) {
+            MetricSamplesCollector collector = aggregator.newCollector();
+            CounterMetric counter = new CounterMetric("calls", Map.of("keyword", "k1"));
+            HistogramMetric latency = new HistogramMetric("latency", 10);
+            counter.setClock(clock);
+            latency.setClock(clock);
+            collector.register(counter);
+            collector.register(latency);
+            counter.increment();
+            latency.observe(i < 25 ? 10 : 20);
+            aggregator.unregister(collector);
+            collector.close();
+        }
+        Assert.assertTrue(delivered.isEmpty());
+
+        aggregator.flush();
+
+        Assert.assertEquals(100, aggregator.getReceivedCount());
+        Assert.assertEquals(2, aggregator.getDeliveredCount());
+        Assert.assertEquals(1, delivered.size());
+        List<MetricSample> samples = new ArrayList<>(delivered.get(0));
+        samples.sort(Comparator.comparing(MetricSample::getName));
+        MetricSample calls = samples.get(0);
+        Assert.assertEquals("calls", calls.getName());
+        Assert.assertEquals(Map.of("keyword", "k1"), calls.getLabels());
+        Assert.assertEquals(50, calls.getCount());
+        Assert.assertEquals(50, calls.getSum());
+        Assert.assertEquals(0, calls.getMin());
+        Assert.assertEquals(50, calls.getMax());
+        MetricSample latency = samples.get(1);
+        Assert.assertEquals(50, latency.getCount());
+        Assert.assertEquals(750, latency.getSum());
+        Assert.assertEquals(10, latency.getMin());
+        Assert.assertEquals(20, latency.getMax());
+        Assert.assertEquals(Map.of(10L, 25L, 20L, 25L), latency.getDistribution());
+
+        aggregator.flush();
+        Assert.assertEquals(1, delivered.size());
+    }
+
+    @Test
+    public void flush_keepsSeriesSeparate() {
+        List<MetricSample> delivered = new ArrayList<>();
+        MetricSamplesAggregator aggregator = new MetricSamplesAggregator(60_000, delivered::addAll);
+        aggregator.addSamples(List.of(
+            new MetricSample(1000, "calls", Map.of("status", "ok"), InstrumentType.COUNTER, 1, 1, 0, 1, 1, null),
+            new MetricSample(1001, "calls", Map.of("status", "ko"), InstrumentType.COUNTER, 1, 1, 0, 1, 1, null),
+            new MetricSample(1002, "calls", Map.of("status", "ok"), InstrumentType.COUNTER, 1, 1, 0, 1, 1, null)));
+        aggregator.close();
+
+        Assert.assertEquals(2, delivered.size());
+        delivered.sort(Comparator.comparing(sample -> sample.getLabels().get("status")));
+        Assert.assertEquals(1, delivered.get(0).getCount());
+        Assert.assertEquals(2, delivered.get(1).getCount());
+        Assert.assertEquals(1002, delivered.get(1).getSampleTime());
+    }
+
+    @Test
+    public void flush_keepsIntervalsSeparate() {
+        List<MetricSample> delivered = new ArrayList<>();
+        MetricSamplesAggregator aggregator = new MetricSamplesAggregator(60_000, delivered::addAll);
+        aggregator.addSamples(List.of(
+            new MetricSample(59_000, "h", Map.of(), InstrumentType.HISTOGRAM, 1, 5, 5, 5, 5, null),
+            new MetricSample(61_000, "h", Map.of(), InstrumentType.HISTOGRAM, 1, 7, 7, 7, 7, null),
+            new MetricSample(62_000, "h", Map.of(), InstrumentType.HISTOGRAM, 1, 9, 9, 9, 9, null)));
+        aggregator.flush();
+
+        Assert.assertEquals(2, delivered.size());
+        Assert.assertEquals(59_000, delivered.get(0).getSampleTime());
+        Assert.assertEquals(5, delivered.get(0).getSum());
+        Assert.assertEquals(62_000, delivered.get(1).getSampleTime());
+        Assert.assertEquals(16, delivered.get(1).getSum());
+    }
+
+    @Test
+    public void flush_rebasesCountersOntoTheAgentRunningTotal() {
+        List<MetricSample> delivered = new ArrayList<>();
+        MetricSamplesAggregator aggregator = new MetricSamplesAggregator(60_000, delivered::addAll);
+        // two invocations, each counting from zero
+        aggregator.addSamples(List.of(
+            new MetricSample(1000, "calls", Map.of(), InstrumentType.COUNTER, 2, 5, 0, 5, 5, null),
+            new MetricSample(1001, "calls", Map.of(), InstrumentType.COUNTER, 1, 3, 0, 3, 3, null)));
+        aggregator.flush();
+        aggregator.addSamples(List.of(
+            new MetricSample(61_000, "calls", Map.of(), InstrumentType.COUNTER, 1, 4, 3, 7, 7, null)));
+        aggregator.flush();
+
+        Assert.assertEquals(2, delivered.size());
+        MetricSample first = delivered.get(0);
+        Assert.assertEquals(8, first.getSum());
+        Assert.assertEquals(0, first.getMin());
+        Assert.assertEquals(8, first.getMax());
+        Assert.assertEquals(8, first.getLast());
+        MetricSample second = delivered.get(1);
+        Assert.assertEquals(4, second.getSum());
+        Assert.assertEquals(8, second.getMin());
+        Assert.assertEquals(12, second.getMax());
+        Assert.assertEquals(12, second.getLast());
+    }
+
+    @Test
+    public void flush_flushesRegisteredCollectors() {
+        List<MetricSample> delivered = new ArrayList<>();
+        MetricSamplesAggregator aggregator = new MetricSamplesAggregator(60_000, delivered::addAll);
+        MetricSamplesCollector collector = aggregator.newCollector();
+        GaugeMetric gauge = new GaugeMetric("queue");
+        collector.register(gauge);
+        gauge.observe(7);
+
+        // the invocation is still running: its metrics are flushed by the aggregator
+        aggregator.flush();
+        Assert.assertEquals(1, delivered.size());
+        Assert.assertEquals(7, delivered.get(0).getLast());
+
+        aggregator.unregister(collector);
+        gauge.observe(3);
+        aggregator.flush();
+        Assert.assertEquals(1, delivered.size());
+        collector.close();
+        aggregator.flush();
+        Assert.assertEquals(2, delivered.size());
+        Assert.assertEquals(3, delivered.get(1).getLast());
+    }
+
+    @Test
+    public void nextFlushDelay_alignedToTheClock() {
+        ManualClock clock = new ManualClock(121_000);
+        try (MetricSamplesAggregator aggregator = new MetricSamplesAggregator(60_000, samples -> {}).withClock(clock)) {
+            Assert.assertEquals(59_000, aggregator.nextFlushDelay());
+            clock.advance(58_500, TimeUnit.MILLISECONDS);
+            Assert.assertEquals(500, aggregator.nextFlushDelay());
+        }
+    }
+}
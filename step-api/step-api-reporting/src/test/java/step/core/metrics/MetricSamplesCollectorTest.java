@@ -2,10 +2,15 @@ package step.core.metrics;
 
 import org.junit.Assert;
 import org.junit.Test;
+import step.core.time.ManualClock;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 
 public class MetricSamplesCollectorTest {
 
@@ -255,6 +260,55 @@ public class MetricSamplesCollectorTest {
             1, all.size());
     }
 
+    // -------------------------------------------------------------------------
+    // Scheduled flush
+    // -------------------------------------------------------------------------
+
+    @Test
+    public void scheduledFlush_flushesQuietMetricsWithoutNewObservations() throws InterruptedException {
+        List<MetricSample> streamed = new CopyOnWriteArrayList<>();
+        MetricSamplesCollector builder = builderWithShortInterval(streamed).startScheduledFlush();
+        GaugeMetric gauge = new GaugeMetric("g");
+        builder.register(gauge);
+
+        gauge.observe(10);
+        gauge.observe(20);
+
+        Thread.sleep(SLEEP_MS * 2); // at least one scheduled flush, no further observations
+
+        // both observations may fall on either side of a window boundary
+        int scheduledSamples = streamed.size();
+        Assert.assertTrue("scheduled flush must report the quiet metric", scheduledSamples >= 1);
+        Assert.assertEquals(2, streamed.stream().mapToLong(MetricSample::getCount).sum());
+
+        builder.close();
+        Assert.assertEquals("nothing left for the final flush", scheduledSamples, streamed.size());
+    }
+
+    @Test
+    public void scheduledFlush_observationsNeverTriggerFlush() throws InterruptedException {
+        List<MetricSample> streamed = new CopyOnWriteArrayList<>();
+        MetricSamplesCollector builder = new MetricSamplesCollector(60_000, streamed::add).startScheduledFlush();
+        CounterMetric counter = new CounterMetric("c");
+        builder.register(counter);
+
+        counter.increment(1);
+        Thread.sleep(SLEEP_MS);
+        counter.increment(2);
+
+        Assert.assertEquals("observations must not flush when scheduled flushing is enabled", 0, streamed.size());
+        builder.close();
+        Assert.assertEquals(1, streamed.size());
+        Assert.assertEquals(3, streamed.get(0).getSum());
+    }
+
+    @Test
+    public void scheduledFlush_delayAlignedToWallClockBoundary() {
+        Assert.assertEquals(5000, MetricsScheduler.delayToNextBoundary(10_000, 5000));
+        Assert.assertEquals(1, MetricsScheduler.delayToNextBoundary(14_999, 5000));
+        Assert.assertEquals(4000, MetricsScheduler.delayToNextBoundary(11_000, 5000));
+    }
+
     // -------------------------------------------------------------------------
     // Batch mode and addSamples
     // -------------------------------------------------------------------------
@@ -295,4 +349,244 @@ public class MetricSamplesCollectorTest {
         builder.addSamples(Collections.emptyList());
         Assert.assertEquals(0, builder.getSamples().size());
     }
+
+    @Test
+    public void maxSeries_excessSeriesFoldedIntoOverflowSeries() {
+        MetricSamplesCollector collector = new MetricSamplesCollector().withMaxSeries(2);
+        for (int i = 0; i < 5; i++) {
+            CounterMetric counter = new CounterMetric("requests", Map.of("id", "request-" + i));
+            counter.increment();
+            collector.register(counter);
+        }
+
+        List<MetricSample> samples = collector.getSamples();
+
+        Assert.assertEquals(3, samples.size());
+        MetricSample overflow = samples.stream()
+            .filter(s -> s.getLabels().equals(CardinalityLimiter.OVERFLOW_LABELS)).findFirst().orElseThrow();
+        Assert.assertEquals(3, overflow.getSum());
+        Assert.assertEquals(3, collector.getFoldedSeriesCount());
+    }
+
+    @Test
+    public void maxSeries_overflowCounterKeepsItsOwnRunningTotal() {
+        MetricSamplesCollector collector = new MetricSamplesCollector().withMaxSeries(1);
+        collector.register(new CounterMetric("requests", Map.of("id", "0")));
+        CounterMetric folded1 = new CounterMetric("requests", Map.of("id", "1"));
+        CounterMetric folded2 = new CounterMetric("requests", Map.of("id", "2"));
+        collector.register(folded1);
+        collector.register(folded2);
+
+        folded1.increment(10);
+        folded2.increment(1);
+        collector.flush();
+        folded2.increment(2);
+        List<MetricSample> overflow = collector.getSamples().stream()
+            .filter(s -> s.getLabels().equals(CardinalityLimiter.OVERFLOW_LABELS)).toList();
+
+        Assert.assertEquals(2, overflow.size());
+        assertCounterSample(overflow.get(0), 11, 0, 11);
+        assertCounterSample(overflow.get(1), 2, 11, 13);
+    }
+
+    private static void assertCounterSample(MetricSample sample, long sum, long totalBefore, long totalAfter) {
+        Assert.assertEquals(sum, sample.getSum());
+        Assert.assertEquals(totalBefore, sample.getMin());
+        Assert.assertEquals(totalAfter, sample.getMax());
+        Assert.assertEquals(totalAfter, sample.getLast());
+    }
+
+    @Test
+    public void maxSeries_sameSeriesRegisteredTwiceIsNotFolded() {
+        MetricSamplesCollector collector = new MetricSamplesCollector().withMaxSeries(1);
+        collector.register(new CounterMetric("c", Map.of("a", "1")));
+        collector.register(new CounterMetric("c", Map.of("a", "1")));
+        MetricSample added = new MetricSample(0, "c", new HashMap<>(Map.of("a", "2")), InstrumentType.COUNTER,
+            1, 1, 0, 1, 1, null);
+        collector.addSamples(List.of(added));
+
+        List<MetricSample> samples = collector.getSamples();
+
+        Assert.assertEquals(1, samples.size());
+        Assert.assertEquals(CardinalityLimiter.OVERFLOW_LABELS, samples.get(0).getLabels());
+        Assert.assertEquals(1, collector.getFoldedSeriesCount());
+        // the folded sample is a copy, the caller's sample is left untouched
+        Assert.assertEquals(Map.of("a", "2"), added.getLabels());
+        Assert.assertEquals(1, samples.get(0).getSum());
+    }
+
+    // -------------------------------------------------------------------------
+    // Retention and incremental reads
+    // -------------------------------------------------------------------------
+
+    @Test
+    public void retentionNone_forwardsWithoutRetaining() {
+        List<MetricSample> streamed = new ArrayList<>();
+        MetricSamplesCollector collector = builderWithLargeInterval(streamed).withRetention(MetricSamplesCollector.Retention.NONE);
+        CounterMetric counter = new CounterMetric("c");
+        collector.register(counter);
+        counter.increment();
+
+        Assert.assertTrue(collector.getSamples().isEmpty());
+        Assert.assertEquals(1, streamed.size());
+    }
+
+    @Test
+    public void retentionBounded_keepsMostRecentSamples() {
+        List<MetricSample> streamed = new ArrayList<>();
+        MetricSamplesCollector collector = builderWithLargeInterval(streamed).withRetention(MetricSamplesCollector.Retention.BOUNDED, 2);
+        CounterMetric counter = new CounterMetric("c");
+        collector.register(counter);
+        for (int i = 1; i <= 4; i++) {
+            counter.increment(i);
+            collector.flush();
+        }
+
+        List<MetricSample> samples = collector.getSamples();
+        Assert.assertEquals(4, streamed.size());
+        Assert.assertEquals(List.of(3L, 4L), samples.stream().map(MetricSample::getSum).toList());
+    }
+
+    @Test
+    public void retentionFinalOnly_keepsFinalFlushSamples() {
+        List<MetricSample> streamed = new ArrayList<>();
+        MetricSamplesCollector collector = builderWithLargeInterval(streamed).withRetention(MetricSamplesCollector.Retention.FINAL_ONLY);
+        CounterMetric counter = new CounterMetric("c");
+        collector.register(counter);
+        counter.increment(1);
+        Assert.assertTrue(collector.drainSince(0).getSamples().isEmpty());
+        counter.increment(2);
+
+        List<MetricSample> samples = collector.getSamples();
+        Assert.assertEquals(2, streamed.size());
+        Assert.assertEquals(1, samples.size());
+        Assert.assertEquals(2, samples.get(0).getSum());
+    }
+
+    @Test
+    public void retention_inBatchMode_isRejected() {
+        MetricSamplesCollector collector = new MetricSamplesCollector();
+        Assert.assertThrows(IllegalStateException.class, () -> collector.withRetention(MetricSamplesCollector.Retention.NONE));
+        Assert.assertThrows(IllegalArgumentException.class,
+            () -> new MetricSamplesCollector(s -> {}).withRetention(MetricSamplesCollector.Retention.BOUNDED));
+    }
+
+    @Test
+    public void flush_forwardsSamplesWithoutClosingOpenSlices() {
+        List<MetricSample> streamed = new ArrayList<>();
+        MetricSamplesCollector collector = builderWithLargeInterval(streamed);
+        CounterMetric counter = new CounterMetric("c");
+        HistogramMetric histogram = new HistogramMetric("h");
+        histogram.enableEventTime(60_000, 0);
+        collector.register(counter);
+        collector.register(histogram);
+        counter.increment(3);
+        histogram.observe(5, 120_000);
+
+        collector.flush();
+        Assert.assertEquals(1, streamed.size());
+        Assert.assertEquals("c", streamed.get(0).getName());
+
+        collector.close();
+        Assert.assertEquals(2, streamed.size());
+        Assert.assertEquals("h", streamed.get(1).getName());
+    }
+
+    @Test
+    public void drainSince_returnsOnlyNewSamples() {
+        MetricSamplesCollector collector = new MetricSamplesCollector();
+        CounterMetric counter = new CounterMetric("c");
+        collector.register(counter);
+        counter.increment(1);
+
+        MetricSamplesCollector.SampleBatch first = collector.drainSince(0);
+        Assert.assertEquals(1, first.getSamples().size());
+        Assert.assertTrue(collector.drainSince(first.getCursor()).getSamples().isEmpty());
+
+        counter.increment(5);
+        MetricSamplesCollector.SampleBatch second = collector.drainSince(first.getCursor());
+        Assert.assertEquals(1, second.getSamples().size());
+        Assert.assertEquals(5, second.getSamples().get(0).getSum());
+        Assert.assertEquals(2, collector.drainSince(0).getSamples().size());
+    }
+
+    @Test
+    public void coalescing_mergesSamplesOfTheSameSeriesAndWindow() {
+        MetricSamplesCollector collector = new MetricSamplesCollector().withCoalescing(60_000);
+        collector.addSamples(List.of(
+            new MetricSample(120_000, "h", new HashMap<>(), InstrumentType.HISTOGRAM, 1, 5, 5, 5, 5, Map.of(0L, 1L)),
+            new MetricSample(130_000, "h", new HashMap<>(), InstrumentType.HISTOGRAM, 2, 30, 10, 20, 20, Map.of(10L, 2L)),
+            new MetricSample(130_000, "h", new HashMap<>(Map.of("a", "1")), InstrumentType.HISTOGRAM, 1, 1, 1, 1, 1, null),
+            new MetricSample(190_000, "h", new HashMap<>(), InstrumentType.HISTOGRAM, 1, 7, 7, 7, 7, null)));
+
+        List<MetricSample> samples = collector.getSamples();
+
+        Assert.assertEquals(3, samples.size());
+        MetricSample merged = samples.get(0);
+        Assert.assertEquals(3, merged.getCount());
+        Assert.assertEquals(35, merged.getSum());
+        Assert.assertEquals(5, merged.getMin());
+        Assert.assertEquals(20, merged.getMax());
+        Assert.assertEquals(130_000, merged.getSampleTime());
+        Assert.assertEquals(Map.of(0L, 1L, 10L, 2L), merged.getDistribution());
+        Assert.assertEquals(Map.of("a", "1"), samples.get(1).getLabels());
+        Assert.assertEquals(190_000, samples.get(2).getSampleTime());
+    }
+
+    @Test
+    public void coalescing_rebasesCountersOfDifferentSourcesOntoARunningTotal() {
+        MetricSamplesCollector collector = new MetricSamplesCollector().withCoalescing(60_000);
+        CounterMetric counter = new CounterMetric("c");
+        counter.setClock(new ManualClock(130_000));
+        counter.increment(3);
+        collector.register(counter);
+        // samples of another counter of the same series, e.g. from a child output, with their own running total
+        collector.addSamples(List.of(
+            new MetricSample(120_000, "c", new HashMap<>(), InstrumentType.COUNTER, 1, 5, 0, 5, 5, null),
+            new MetricSample(190_000, "c", new HashMap<>(), InstrumentType.COUNTER, 1, 2, 5, 7, 7, null)));
+
+        List<MetricSample> samples = collector.getSamples();
+
+        Assert.assertEquals(2, samples.size());
+        MetricSample merged = samples.get(0);
+        Assert.assertEquals(8, merged.getSum());
+        Assert.assertEquals(0, merged.getMin());
+        Assert.assertEquals(8, merged.getMax());
+        Assert.assertEquals(8, merged.getLast());
+        MetricSample next = samples.get(1);
+        Assert.assertEquals(2, next.getSum());
+        Assert.assertEquals(8, next.getMin());
+        Assert.assertEquals(10, next.getMax());
+        Assert.assertEquals(10, next.getLast());
+    }
+
+    @Test
+    public void manualClock_alignsScheduledFlushes() {
+        ManualClock clock = new ManualClock(122_000);
+        MetricSamplesCollector collector = new MetricSamplesCollector(5_000, null).withClock(clock);
+        Assert.assertEquals(3_000, collector.nextFlushDelay());
+        clock.setTimeMillis(125_000);
+        Assert.assertEquals(5_000, collector.nextFlushDelay());
+    }
+
+    @Test
+    public void manualClock_drivesRateLimitWithoutSleeping() {
+        List<MetricSample> streamed = new ArrayList<>();
+        MetricSamplesCollector collector = new MetricSamplesCollector(1_000, streamed::add);
+        ManualClock clock = new ManualClock(10_000);
+        CounterMetric counter = new CounterMetric("c");
+        counter.setClock(clock);
+        collector.register(counter);
+
+        counter.increment();
+        clock.advance(999, TimeUnit.MILLISECONDS);
+        counter.increment();
+        Assert.assertEquals(0, streamed.size());
+
+        clock.advance(1, TimeUnit.MILLISECONDS);
+        counter.increment();
+        Assert.assertEquals(1, streamed.size());
+        Assert.assertEquals(3, streamed.get(0).getSum());
+        Assert.assertEquals(11_000, streamed.get(0).getSampleTime());
+    }
 }
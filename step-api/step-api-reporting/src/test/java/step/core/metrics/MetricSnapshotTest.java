@@ -0,0 +1,74 @@
+package step.core.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetricSnapshotTest {
+
+    @Test
+    public void snapshot_withoutEnableSnapshots_throws() {
+        HistogramMetric histogram = new HistogramMetric("h");
+        Assert.assertThrows(IllegalStateException.class, histogram::snapshot);
+    }
+
+    @Test
+    public void snapshot_returnsStatisticsOfTheWindow() {
+        HistogramMetric histogram = new HistogramMetric("h", 1);
+        histogram.enableSnapshots(60_000);
+        for (int i = 1; i <= 100; i++) {
+            histogram.observe(i);
+        }
+        MetricSnapshot snapshot = histogram.snapshot();
+
+        Assert.assertEquals(100, snapshot.getCount());
+        Assert.assertEquals(5050, snapshot.getSum());
+        Assert.assertEquals(1, snapshot.getMin());
+        Assert.assertEquals(100, snapshot.getMax());
+        Assert.assertEquals(50.5, snapshot.getMean(), 0.0001);
+        Assert.assertEquals(50, snapshot.getPercentile(50), 0);
+        Assert.assertEquals(95, snapshot.getPercentile(95), 0);
+        Assert.assertEquals(100, snapshot.getPercentile(100), 0);
+        Assert.assertTrue(snapshot.getRatePerSecond() > 0);
+    }
+
+    @Test
+    public void snapshot_doesNotAffectFlushedSamples() {
+        HistogramMetric histogram = new HistogramMetric("h");
+        histogram.enableSnapshots(60_000);
+        histogram.observe(100);
+        histogram.observe(200);
+
+        histogram.snapshot();
+        MetricSample sample = histogram.flush();
+        Assert.assertEquals(2, sample.getCount());
+        Assert.assertEquals(300, sample.getSum());
+
+        // the window isn't reset by the flush either
+        Assert.assertEquals(2, histogram.snapshot().getCount());
+        Assert.assertEquals(0, histogram.flush().getCount());
+    }
+
+    @Test
+    public void snapshot_excludesObservationsOutsideTheWindow() {
+        GaugeMetric gauge = new GaugeMetric("g");
+        gauge.enableSnapshots(1_000, 10);
+        long now = System.currentTimeMillis();
+        gauge.observe(10, now - 5_000);
+        gauge.observe(20, now);
+
+        MetricSnapshot snapshot = gauge.snapshot();
+        Assert.assertEquals(1, snapshot.getCount());
+        Assert.assertEquals(20, snapshot.getMax());
+    }
+
+    @Test
+    public void snapshot_emptyWindow() {
+        GaugeMetric gauge = new GaugeMetric("g");
+        gauge.enableSnapshots(1_000);
+        MetricSnapshot snapshot = gauge.snapshot();
+        Assert.assertEquals(0, snapshot.getCount());
+        Assert.assertTrue(Double.isNaN(snapshot.getMean()));
+        Assert.assertTrue(Double.isNaN(snapshot.getPercentile(99)));
+        Assert.assertThrows(IllegalArgumentException.class, () -> snapshot.getPercentile(101));
+    }
+}
@@ -0,0 +1,73 @@
+package step.core.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ObservableGaugeMetricTest {
+
+    @Test
+    public void flush_pollsSupplierOnce() {
+        AtomicLong value = new AtomicLong(5);
+        ObservableGaugeMetric gauge = new ObservableGaugeMetric("queue_depth", value::getAndIncrement);
+
+        MetricSample first = gauge.flush();
+        MetricSample second = gauge.flush();
+
+        Assert.assertEquals(InstrumentType.GAUGE, first.getType());
+        Assert.assertEquals(1, first.getCount());
+        Assert.assertEquals(5, first.getLast());
+        Assert.assertEquals(6, second.getLast());
+    }
+
+    @Test
+    public void flush_doubleSupplierKeepsPrecision() {
+        ObservableDoubleGaugeMetric gauge = new ObservableDoubleGaugeMetric("load", Map.of(), () -> 0.7d);
+        MetricSample sample = gauge.flush();
+        Assert.assertTrue(sample.isFloatingPoint());
+        Assert.assertEquals(0.7d, sample.getDoubleLast(), 0);
+        Assert.assertEquals(1, sample.getLast());
+    }
+
+    @Test
+    public void flush_doesNotNotifyObservationListener() {
+        ObservableGaugeMetric gauge = new ObservableGaugeMetric("queue_depth", () -> 5);
+        ObservableDoubleGaugeMetric doubleGauge = new ObservableDoubleGaugeMetric("load", Map.of(), () -> 0.7d);
+        AtomicLong notifications = new AtomicLong();
+        gauge.setObservationListener(timestamp -> notifications.incrementAndGet());
+        doubleGauge.setObservationListener(timestamp -> notifications.incrementAndGet());
+
+        Assert.assertEquals(5, gauge.flush().getLast());
+        Assert.assertEquals(0.7d, doubleGauge.flush().getDoubleLast(), 0);
+        Assert.assertEquals(0, notifications.get());
+    }
+
+    @Test
+    public void flush_failingSupplierReportsNoValue() {
+        ObservableGaugeMetric gauge = new ObservableGaugeMetric("broken", () -> {
+            throw new IllegalStateException("unavailable");
+        });
+
+        Assert.assertEquals(0, gauge.flush().getCount());
+    }
+
+    @Test
+    public void collector_pollsObservableGaugeEveryInterval() throws InterruptedException {
+        List<MetricSample> forwarded = new CopyOnWriteArrayList<>();
+        AtomicLong polls = new AtomicLong();
+        try (MetricSamplesCollector collector = new MetricSamplesCollector(20, forwarded::add)) {
+            collector.register(new ObservableGaugeMetric("pool_size", polls::incrementAndGet));
+            long deadline = System.currentTimeMillis() + 5000;
+            while (forwarded.size() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+
+        Assert.assertTrue(forwarded.size() >= 3);
+        Assert.assertEquals(polls.get(), forwarded.size());
+    }
+}
@@ -0,0 +1,121 @@
+package step.core.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+public class SummaryMetricTest {
+
+    @Test
+    public void flush_quantilesWithinRelativeAccuracy() {
+        SummaryMetric summary = new SummaryMetric("latency");
+        long[] values = new long[10_000];
+        Random random = new Random(42);
+        for (int i = 0; i < values.length; i++) {
+            // log-uniform values between 1 and ~1e6
+            values[i] = (long) Math.exp(random.nextDouble() * 14) + 1;
+            summary.observe(values[i]);
+        }
+        Arrays.sort(values);
+
+        MetricSample sample = summary.flush();
+
+        Assert.assertEquals(InstrumentType.SUMMARY, sample.getType());
+        Assert.assertNull(sample.getDistribution());
+        Assert.assertEquals(values.length, sample.getCount());
+        Assert.assertEquals(values[0], sample.getMin());
+        Assert.assertEquals(values[values.length - 1], sample.getMax());
+        QuantileSketch sketch = sample.getSketch();
+        Assert.assertEquals(values.length, sketch.totalCount());
+        for (double q : new double[]{0, 0.5, 0.9, 0.99, 1}) {
+            double expected = values[(int) (q * (values.length - 1))];
+            Assert.assertEquals(expected, sketch.quantile(q), expected * QuantileSketch.DEFAULT_RELATIVE_ACCURACY);
+        }
+        Assert.assertTrue(sketch.getPositiveBuckets().size() < 1000);
+        Assert.assertEquals(0, summary.flush().getSketch().totalCount());
+    }
+
+    @Test
+    public void sketch_handlesZeroAndNegativeValues() {
+        SummaryMetric summary = new SummaryMetric("delta");
+        summary.observe(-100);
+        summary.observe(-1);
+        summary.observe(0);
+        summary.observe(10);
+
+        QuantileSketch sketch = summary.flush().getSketch();
+
+        Assert.assertEquals(1, sketch.getZeroCount());
+        Assert.assertEquals(-100, sketch.quantile(0), 1);
+        Assert.assertEquals(-1, sketch.quantile(1 / 3d), 0.01);
+        Assert.assertEquals(0, sketch.quantile(2 / 3d), 0);
+        Assert.assertEquals(10, sketch.quantile(1), 0.1);
+        Assert.assertTrue(Double.isNaN(new QuantileSketch().quantile(0.5)));
+    }
+
+    @Test
+    public void merge_acrossAgentsMatchesSingleSketch() {
+        SummaryMetric all = new SummaryMetric("all");
+        SummaryMetric[] agents = new SummaryMetric[50];
+        for (int a = 0; a < agents.length; a++) {
+            agents[a] = new SummaryMetric("agent");
+            for (int v = 1; v <= 200; v++) {
+                long value = (long) v * (a + 1);
+                agents[a].observe(value);
+                all.observe(value);
+            }
+        }
+
+        QuantileSketch merged = agents[0].flush().getSketch();
+        for (int a = 1; a < agents.length; a++) {
+            merged = QuantileSketch.merge(merged, agents[a].flush().getSketch());
+        }
+        QuantileSketch expected = all.flush().getSketch();
+
+        Assert.assertEquals(expected.totalCount(), merged.totalCount());
+        Assert.assertEquals(expected.getPositiveBuckets(), merged.getPositiveBuckets());
+        Assert.assertEquals(expected.quantile(0.99), merged.quantile(0.99), 0);
+    }
+
+    @Test
+    public void merge_differentAccuraciesUsesCoarserOne() {
+        SummaryMetric fine = new SummaryMetric("s", Map.of(), 0.001);
+        SummaryMetric coarse = new SummaryMetric("s", Map.of(), 0.02);
+        for (int v = 1; v <= 1000; v++) {
+            fine.observe(v);
+            coarse.observe(v);
+        }
+
+        QuantileSketch merged = QuantileSketch.merge(fine.flush().getSketch(), coarse.flush().getSketch());
+
+        Assert.assertEquals(0.02, merged.getRelativeAccuracy(), 0);
+        Assert.assertEquals(2000, merged.totalCount());
+        // the remapping adds the error of the finer sketch to the one of the coarser sketch
+        Assert.assertEquals(500, merged.quantile(0.5), 500 * 0.021);
+    }
+
+    @Test
+    public void samples_mergeAndRoundTripWithSketch() {
+        SummaryMetric summary = new SummaryMetric("s", Map.of("agent", "a"));
+        summary.observe(5);
+        summary.observe(500);
+        MetricSample first = summary.flush();
+        summary.observe(-7);
+        MetricSample second = summary.flush();
+
+        MetricSample merged = MetricSamples.merge(first, second);
+        Assert.assertEquals(3, merged.getSketch().totalCount());
+        Assert.assertEquals(-7, merged.getMin());
+
+        MetricSample decoded = MetricSampleCodec.decode(MetricSampleCodec.encode(List.of(merged))).get(0);
+        Assert.assertEquals(InstrumentType.SUMMARY, decoded.getType());
+        Assert.assertEquals(merged.getSketch().getRelativeAccuracy(), decoded.getSketch().getRelativeAccuracy(), 0);
+        Assert.assertEquals(merged.getSketch().getZeroCount(), decoded.getSketch().getZeroCount());
+        Assert.assertEquals(merged.getSketch().getPositiveBuckets(), decoded.getSketch().getPositiveBuckets());
+        Assert.assertEquals(merged.getSketch().getNegativeBuckets(), decoded.getSketch().getNegativeBuckets());
+    }
+}
@@ -0,0 +1,67 @@
+package step.core.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class TimerMetricTest {
+
+    @Test
+    public void recordNanos_convertsToTimerUnit() {
+        TimerMetric timer = new TimerMetric("t", TimeUnit.MICROSECONDS);
+        timer.recordNanos(1_500);
+        timer.recordNanos(250_000);
+        timer.record(2, TimeUnit.MILLISECONDS);
+
+        MetricSample sample = timer.flush();
+        Assert.assertEquals(InstrumentType.HISTOGRAM, sample.getType());
+        Assert.assertEquals(3, sample.getCount());
+        Assert.assertEquals(1 + 250 + 2000, sample.getSum());
+        Assert.assertEquals(1, sample.getMin());
+        Assert.assertEquals(2000, sample.getMax());
+    }
+
+    @Test
+    public void startStop_recordsElapsedTime() throws InterruptedException {
+        TimerMetric timer = new TimerMetric("t", TimeUnit.NANOSECONDS);
+        long start = timer.start();
+        Thread.sleep(2);
+        long elapsed = timer.stop(start);
+
+        Assert.assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(2));
+        Assert.assertEquals(elapsed, timer.flush().getSum());
+    }
+
+    @Test
+    public void stopwatch_isReusableAsTryWithResourcesScope() {
+        TimerMetric timer = new TimerMetric("t", Map.of("op", "fast"), TimeUnit.NANOSECONDS);
+        TimerMetric.Stopwatch stopwatch = timer.stopwatch();
+        for (int i = 0; i < 3; i++) {
+            try (TimerMetric.Stopwatch running = stopwatch.start()) {
+                Assert.assertSame(stopwatch, running);
+            }
+        }
+        // stopping a stopwatch which isn't running records nothing
+        Assert.assertEquals(-1, stopwatch.stop());
+
+        MetricSample sample = timer.flush();
+        Assert.assertEquals(3, sample.getCount());
+        Assert.assertEquals("fast", sample.getLabels().get("op"));
+    }
+
+    @Test
+    public void defaultLayout_keepsRelativePrecisionForSubMillisecondDurations() {
+        TimerMetric timer = new TimerMetric("t", TimeUnit.MICROSECONDS);
+        timer.record(123, TimeUnit.MICROSECONDS);
+        timer.record(1234, TimeUnit.MICROSECONDS);
+
+        Map<Long, Long> distribution = timer.flush().getDistribution();
+        Assert.assertEquals(2, distribution.size());
+        for (long key : distribution.keySet()) {
+            long expected = key < 1000 ? 123 : 1234;
+            Assert.assertTrue(Math.abs(expected - key) <= expected / 100);
+        }
+    }
+}
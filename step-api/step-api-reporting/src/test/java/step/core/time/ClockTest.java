@@ -0,0 +1,36 @@
+package step.core.time;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class ClockTest {
+
+    @Test
+    public void manualClock_onlyMovesWhenAdvanced() {
+        ManualClock clock = new ManualClock(1_000);
+        Assert.assertEquals(1_000, clock.currentTimeMillis());
+        Assert.assertEquals(0, clock.nanoTime());
+
+        clock.advance(1500, TimeUnit.MICROSECONDS);
+        Assert.assertEquals(1_001, clock.currentTimeMillis());
+        Assert.assertEquals(1_500_000, clock.nanoTime());
+
+        clock.setTimeMillis(5_000);
+        Assert.assertEquals(5_000, clock.currentTimeMillis());
+        Assert.assertEquals(1_500_000, clock.nanoTime());
+        Assert.assertThrows(IllegalArgumentException.class, () -> clock.advance(-1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void coarseClock_followsSystemTime() throws InterruptedException {
+        Clock clock = Clock.coarse();
+        Assert.assertSame(clock, Clock.coarse());
+        long before = System.currentTimeMillis();
+        Thread.sleep(20);
+        long coarse = clock.currentTimeMillis();
+        Assert.assertTrue(coarse >= before);
+        Assert.assertTrue(coarse <= System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,99 @@
+package step.reporting;
+
+import org.junit.Assert;
+import org.junit.Test;
+import step.core.reports.Measure;
+import step.core.time.ManualClock;
+import step.reporting.impl.DelegatingLiveMeasureDestination;
+import step.reporting.impl.LiveMeasureDestination;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class LiveMeasuresTest {
+
+    /** Records single and batch deliveries separately. */
+    private static class RecordingDestination implements LiveMeasureDestination {
+        final List<Measure> single = new ArrayList<>();
+        final List<List<Measure>> batches = new ArrayList<>();
+        int flushes;
+
+        @Override
+        public void accept(Measure measure) {
+            single.add(measure);
+        }
+
+        @Override
+        public void acceptBatch(List<Measure> measures) {
+            batches.add(measures);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+
+    private static Measure measure(String name) {
+        return new Measure(name, 10, System.currentTimeMillis(), null, Measure.Status.PASSED);
+    }
+
+    @Test
+    public void addMeasures_deliveredAsOneBatch() {
+        RecordingDestination destination = new RecordingDestination();
+        LiveMeasures measures = new LiveMeasures(destination);
+
+        measures.addMeasures(List.of(measure("a"), measure("b"), measure("c")));
+        measures.flush();
+
+        Assert.assertEquals(0, destination.single.size());
+        Assert.assertEquals(1, destination.batches.size());
+        Assert.assertEquals(3, destination.batches.get(0).size());
+        Assert.assertEquals(1, destination.flushes);
+    }
+
+    @Test
+    public void startStopMeasure_usesClock() {
+        RecordingDestination destination = new RecordingDestination();
+        ManualClock clock = new ManualClock(1_000);
+        LiveMeasures measures = new LiveMeasures(destination, clock);
+
+        measures.startMeasure("m");
+        clock.advance(250, TimeUnit.MILLISECONDS);
+        measures.stopMeasure();
+
+        Assert.assertEquals(1_000, destination.single.get(0).getBegin());
+        Assert.assertEquals(250, destination.single.get(0).getDuration());
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void addMeasures_measureWithoutStatus_rejected() {
+        LiveMeasures measures = new LiveMeasures(new RecordingDestination());
+        measures.addMeasures(List.of(new Measure("a", 10, 0, null, null)));
+    }
+
+    @Test
+    public void defaultAcceptBatch_callsAcceptForEachMeasure() {
+        List<Measure> received = new ArrayList<>();
+        LiveMeasureDestination destination = received::add;
+
+        destination.acceptBatch(List.of(measure("a"), measure("b")));
+
+        Assert.assertEquals(2, received.size());
+    }
+
+    @Test
+    public void delegatingDestination_forwardsBatch() {
+        RecordingDestination delegate = new RecordingDestination();
+        DelegatingLiveMeasureDestination delegating = new DelegatingLiveMeasureDestination();
+        delegating.acceptBatch(List.of(measure("discarded"))); // no delegate yet: discarded
+        delegating.setDelegate(delegate);
+
+        delegating.acceptBatch(List.of(measure("a"), measure("b")));
+        delegating.flush();
+
+        Assert.assertEquals(1, delegate.batches.size());
+        Assert.assertEquals(1, delegate.flushes);
+    }
+}
@@ -2,14 +2,21 @@ package step.reporting;
 
 import org.junit.Assert;
 import org.junit.Test;
+import step.core.metrics.CardinalityLimiter;
+import step.core.metrics.CounterFamily;
 import step.core.metrics.CounterMetric;
+import step.core.metrics.HistogramFamily;
 import step.core.metrics.MetricSample;
 import step.core.metrics.GaugeMetric;
 import step.core.metrics.Metric;
+import step.core.metrics.NoopMetrics;
+import step.core.metrics.OverflowMetric;
+import step.reporting.impl.DelegatingLiveMetricDestination;
 import step.reporting.impl.LiveMetricDestination;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class LiveMetricsTest {
@@ -92,4 +99,181 @@ public class LiveMetricsTest {
         Assert.assertEquals(10, snap2.getMax());
         Assert.assertEquals(1, dest.received.size()); // registered metrics
     }
+
+    @Test
+    public void registerAll_defaultBatchDelegatesToAccept() {
+        CapturingDestination dest = new CapturingDestination();
+        LiveMetrics liveMetrics = new LiveMetrics(dest);
+
+        CounterMetric c = new CounterMetric("c");
+        GaugeMetric g = new GaugeMetric("g");
+        liveMetrics.registerAll(List.of(c, g));
+
+        Assert.assertEquals(List.of(c, g), dest.received);
+    }
+
+    @Test
+    public void registerAll_acceptsListsOfMetricSubtypes() {
+        CapturingDestination dest = new CapturingDestination();
+        LiveMetrics liveMetrics = new LiveMetrics(dest);
+
+        List<CounterMetric> counters = List.of(new CounterMetric("a"), new CounterMetric("b"));
+        liveMetrics.registerAll(counters);
+
+        Assert.assertEquals(counters, dest.received);
+    }
+
+    @Test
+    public void delegatingDestination_forwardsBatchAndFlush() {
+        List<List<Metric>> batches = new ArrayList<>();
+        int[] flushes = {0};
+        DelegatingLiveMetricDestination delegating = new DelegatingLiveMetricDestination();
+        delegating.setDelegate(new LiveMetricDestination() {
+            @Override
+            public void accept(Metric metric) {
+                Assert.fail("batch must be forwarded as a whole");
+            }
+
+            @Override
+            public void acceptBatch(List<Metric> metrics) {
+                batches.add(metrics);
+            }
+
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        });
+
+        delegating.acceptBatch(List.of(new CounterMetric("a"), new CounterMetric("b")));
+        delegating.flush();
+
+        Assert.assertEquals(1, batches.size());
+        Assert.assertEquals(2, batches.get(0).size());
+        Assert.assertEquals(1, flushes[0]);
+    }
+
+    @Test
+    public void counterFamily_registersEachChildOnce() {
+        CapturingDestination dest = new CapturingDestination();
+        LiveMetrics liveMetrics = new LiveMetrics(dest);
+
+        CounterFamily family = liveMetrics.counterFamily("http_requests", "endpoint", "status");
+        CounterMetric ok = family.withLabels("/login", "200");
+        ok.increment();
+        family.withLabels("/login", "200").increment();
+        family.withLabels("/login", "500").increment();
+
+        Assert.assertSame(family, liveMetrics.counterFamily("http_requests", "endpoint", "status"));
+        Assert.assertEquals(2, dest.received.size());
+        Assert.assertEquals(Map.of("endpoint", "/login", "status", "200"), ok.getLabels());
+        Assert.assertEquals(2, ok.flush().getSum());
+    }
+
+    @Test
+    public void metricFamily_conflictingDefinitionIsRejected() {
+        LiveMetrics liveMetrics = new LiveMetrics(new CapturingDestination());
+        liveMetrics.counterFamily("requests", "endpoint");
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> liveMetrics.counterFamily("requests", "status"));
+        Assert.assertThrows(IllegalArgumentException.class, () -> liveMetrics.histogramFamily("requests", "endpoint"));
+        HistogramFamily durations = liveMetrics.histogramFamily("durations", "endpoint");
+        Assert.assertSame(durations, liveMetrics.histogramFamily("durations", "endpoint"));
+    }
+
+    @Test
+    public void maxSeries_excessRegistrationsShareOverflowMetric() {
+        CapturingDestination dest = new CapturingDestination();
+        LiveMetrics liveMetrics = new LiveMetrics(dest, 2);
+
+        CounterMetric first = liveMetrics.registerCounter("requests", Map.of("id", "1"));
+        liveMetrics.registerCounter("requests", Map.of("id", "2"));
+        CounterMetric overflow = liveMetrics.registerCounter("requests", Map.of("id", "3"));
+        Assert.assertSame(overflow, liveMetrics.registerCounter("requests", Map.of("id", "4")));
+        Assert.assertNotSame(first, overflow);
+        Assert.assertEquals(CardinalityLimiter.OVERFLOW_LABELS, overflow.getLabels());
+
+        CounterFamily family = liveMetrics.counterFamily("calls", "endpoint");
+        Assert.assertEquals(CardinalityLimiter.OVERFLOW_LABELS, family.withLabels("/a").getLabels());
+        liveMetrics.register(new CounterMetric("external"));
+
+        // 2 admitted series, the counter overflow series, the family overflow child and the external overflow series
+        Assert.assertEquals(5, dest.received.size());
+        Assert.assertEquals(4, liveMetrics.getFoldedSeriesCount());
+    }
+
+    @Test
+    public void maxSeries_excessExternalMetricsFoldedIntoOverflowSeries() {
+        CapturingDestination dest = new CapturingDestination();
+        LiveMetrics liveMetrics = new LiveMetrics(dest, 1);
+
+        CounterMetric admitted = new CounterMetric("requests", Map.of("id", "1"));
+        CounterMetric folded1 = new CounterMetric("requests", Map.of("id", "2"));
+        CounterMetric folded2 = new CounterMetric("requests", Map.of("id", "3"));
+        liveMetrics.registerAll(List.of(admitted, folded1, folded2));
+        CounterMetric returned = liveMetrics.registerCounter("requests", Map.of("id", "4"));
+
+        Assert.assertEquals(2, dest.received.size());
+        Assert.assertTrue(dest.received.contains(admitted));
+        OverflowMetric overflow = (OverflowMetric) dest.received.stream()
+            .filter(metric -> metric instanceof OverflowMetric).findFirst().orElseThrow();
+        Assert.assertEquals(List.of(folded1, folded2, returned), overflow.getFoldedMetrics());
+
+        folded1.increment(2);
+        folded2.increment(3);
+        returned.increment();
+        MetricSample sample = overflow.flush();
+        Assert.assertEquals("requests", sample.getName());
+        Assert.assertEquals(CardinalityLimiter.OVERFLOW_LABELS, sample.getLabels());
+        Assert.assertEquals(3, sample.getCount());
+        Assert.assertEquals(6, sample.getSum());
+        Assert.assertEquals(3, liveMetrics.getFoldedSeriesCount());
+        // the totals are the running total of the overflow series, not the one of a folded counter
+        Assert.assertEquals(0, sample.getMin());
+        Assert.assertEquals(6, sample.getMax());
+        Assert.assertEquals(6, sample.getLast());
+
+        folded2.increment(4);
+        sample = overflow.flush();
+        Assert.assertEquals(4, sample.getSum());
+        Assert.assertEquals(6, sample.getMin());
+        Assert.assertEquals(10, sample.getMax());
+        Assert.assertEquals(10, sample.getLast());
+    }
+
+    @Test
+    public void withoutDelegate_registrationsReturnSharedNoopMetrics() {
+        LiveMetrics liveMetrics = new LiveMetrics(null);
+        Assert.assertFalse(liveMetrics.isEnabled());
+
+        CounterMetric counter = liveMetrics.registerCounter("c");
+        Assert.assertSame(NoopMetrics.counter(), counter);
+        Assert.assertSame(counter, liveMetrics.registerCounter("other", Map.of("a", "1")));
+        Assert.assertSame(NoopMetrics.histogram(), liveMetrics.registerHistogram("h"));
+        Assert.assertSame(NoopMetrics.counter(), liveMetrics.counterFamily("f", "a").withLabels("1"));
+
+        counter.increment(5);
+        Assert.assertEquals(0, counter.flush().getSum());
+        GaugeMetric gauge = liveMetrics.registerGauge("g");
+        gauge.enableSnapshots(1000).observe(10);
+        Assert.assertEquals(0, gauge.snapshot().getCount());
+    }
+
+    @Test
+    public void delegatingDestination_enabledOnceDelegateIsSet() {
+        DelegatingLiveMetricDestination delegating = new DelegatingLiveMetricDestination();
+        LiveMetrics liveMetrics = new LiveMetrics(delegating);
+        Assert.assertFalse(liveMetrics.isEnabled());
+        CounterMetric early = liveMetrics.registerCounter("early");
+
+        CapturingDestination dest = new CapturingDestination();
+        delegating.setDelegate(dest);
+        Assert.assertTrue(liveMetrics.isEnabled());
+        CounterMetric counter = liveMetrics.registerCounter("c");
+        Assert.assertNotSame(NoopMetrics.counter(), counter);
+        Assert.assertEquals(List.of(counter), dest.received);
+        // the no-op choice is made at registration time
+        Assert.assertSame(NoopMetrics.counter(), early);
+        Assert.assertEquals(NoopMetrics.NAME, early.getName());
+    }
 }
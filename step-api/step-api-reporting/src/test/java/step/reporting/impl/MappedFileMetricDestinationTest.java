@@ -0,0 +1,129 @@
+package step.reporting.impl;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import step.core.metrics.BucketLayout;
+import step.core.metrics.CounterMetric;
+import step.core.metrics.HistogramMetric;
+import step.core.metrics.InstrumentType;
+import step.core.metrics.MetricSample;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+public class MappedFileMetricDestinationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void flush_publishesCumulativeValues() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("metrics.bin");
+        MappedFileMetricDestination destination = new MappedFileMetricDestination(file, 8, 4, 60_000);
+        try {
+            CounterMetric counter = new CounterMetric("requests", Map.of("status", "ok"));
+            HistogramMetric histogram = new HistogramMetric("latency", 1);
+            destination.accept(counter);
+            destination.accept(histogram);
+            counter.increment(3);
+            histogram.observe(5);
+            destination.flush();
+            counter.increment(2);
+            histogram.observe(7);
+            destination.flush();
+
+            MappedFileMetricReader reader = new MappedFileMetricReader(file);
+            Assert.assertEquals(8, reader.getSlotCount());
+            Assert.assertTrue(reader.getLastUpdateTime() > 0);
+            List<MetricSample> samples = reader.read();
+            Assert.assertEquals(2, samples.size());
+
+            MetricSample requests = samples.get(0);
+            Assert.assertEquals("requests", requests.getName());
+            Assert.assertEquals(Map.of("status", "ok"), requests.getLabels());
+            Assert.assertEquals(InstrumentType.COUNTER, requests.getType());
+            Assert.assertEquals(2, requests.getCount());
+            Assert.assertEquals(5, requests.getSum());
+
+            MetricSample latency = samples.get(1);
+            Assert.assertEquals(2, latency.getCount());
+            Assert.assertEquals(12, latency.getSum());
+            Assert.assertEquals(7, latency.getMin());
+            Assert.assertEquals(Map.of(5L, 1L, 7L, 1L), latency.getDistribution());
+        } finally {
+            destination.close();
+        }
+    }
+
+    @Test
+    public void distribution_beyondMaxBuckets_foldedIntoOverflowBucket() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("metrics.bin");
+        MappedFileMetricDestination destination = new MappedFileMetricDestination(file, 1, 2, 60_000);
+        try {
+            HistogramMetric histogram = new HistogramMetric("latency", 1);
+            destination.accept(histogram);
+            destination.accept(new CounterMetric("ignored").increment());
+            histogram.observe(1);
+            histogram.observe(2);
+            histogram.observe(3);
+            destination.flush();
+
+            List<MetricSample> samples = new MappedFileMetricReader(file).read();
+            Assert.assertEquals(1, samples.size());
+            Assert.assertEquals(Map.of(1L, 1L, BucketLayout.OVERFLOW_BUCKET, 2L), samples.get(0).getDistribution());
+
+            // the cumulative distribution stays folded: new buckets are added to the overflow one
+            histogram.observe(4);
+            histogram.observe(5);
+            destination.flush();
+            Assert.assertEquals(Map.of(1L, 1L, BucketLayout.OVERFLOW_BUCKET, 4L),
+                new MappedFileMetricReader(file).read().get(0).getDistribution());
+            histogram.observe(0);
+            destination.flush();
+            Assert.assertEquals(Map.of(0L, 1L, BucketLayout.OVERFLOW_BUCKET, 5L),
+                new MappedFileMetricReader(file).read().get(0).getDistribution());
+        } finally {
+            destination.close();
+        }
+    }
+
+    @Test
+    public void reader_rejectsOtherFiles() throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, new byte[128]);
+        Assert.assertThrows(IllegalArgumentException.class, () -> new MappedFileMetricReader(file));
+    }
+
+    @Test
+    public void reader_skipsSlotLeftInconsistentByTheWriter() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("metrics.bin");
+        MappedFileMetricDestination destination = new MappedFileMetricDestination(file, 4, 2, 60_000);
+        try {
+            destination.accept(new CounterMetric("first").increment());
+            destination.accept(new CounterMetric("second").increment());
+            destination.flush();
+        } finally {
+            destination.close();
+        }
+        // simulate a writer that died while updating the first slot: its sequence stays odd
+        int slotSize = MappedMetricsLayout.slotSize(2);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            ByteBuffer sequence = ByteBuffer.allocate(Long.BYTES).order(MappedMetricsLayout.BYTE_ORDER).putLong(0, 3);
+            channel.write(sequence, MappedMetricsLayout.slotOffset(0, slotSize) + MappedMetricsLayout.SLOT_SEQUENCE);
+        }
+
+        MappedFileMetricReader reader = new MappedFileMetricReader(file);
+        List<MetricSample> samples = reader.read();
+        Assert.assertEquals(1, samples.size());
+        Assert.assertEquals("second", samples.get(0).getName());
+        Assert.assertEquals(1, reader.getInconsistentSlotCount());
+    }
+}
@@ -0,0 +1,131 @@
+package step.reporting.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+import step.core.metrics.BucketLayout;
+import step.core.metrics.CounterMetric;
+import step.core.metrics.GaugeMetric;
+import step.core.metrics.HistogramMetric;
+import step.core.metrics.MetricSample;
+import step.core.metrics.SummaryMetric;
+import step.reporting.CommonMimeTypes;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+
+public class PrometheusMetricDestinationTest {
+
+    @Test
+    public void scrape_rendersOpenMetricsText() throws IOException {
+        PrometheusMetricDestination destination = new PrometheusMetricDestination(0);
+        try {
+            CounterMetric ok = new CounterMetric("requests_total", Map.of("status", "ok"));
+            CounterMetric failed = new CounterMetric("requests_total", Map.of("status", "fail\"ed"));
+            HistogramMetric latency = new HistogramMetric("http.latency", 10);
+            GaugeMetric queue = new GaugeMetric("queue");
+            destination.accept(ok);
+            destination.accept(failed);
+            destination.accept(latency);
+            destination.accept(queue);
+            destination.accept(new SummaryMetric("ignored"));
+            ok.increment(3);
+            latency.observe(5);
+            latency.observe(15);
+            latency.observe(18);
+            queue.observe(7);
+
+            Assert.assertEquals("# TYPE requests counter\n"
+                + "requests_total{status=\"ok\"} 3\n"
+                + "requests_total{status=\"fail\\\"ed\"} 0\n"
+                + "# TYPE http_latency histogram\n"
+                + "http_latency_bucket{le=\"9\"} 1\n"
+                + "http_latency_bucket{le=\"19\"} 3\n"
+                + "http_latency_bucket{le=\"+Inf\"} 3\n"
+                + "http_latency_count 3\n"
+                + "http_latency_sum 38\n"
+                + "# TYPE queue gauge\n"
+                + "queue 7\n"
+                + "# EOF\n", destination.scrape());
+        } finally {
+            destination.close();
+        }
+    }
+
+    @Test
+    public void scrape_doesNotAffectFlushes() throws Exception {
+        PrometheusMetricDestination destination = new PrometheusMetricDestination(0);
+        try {
+            CounterMetric counter = new CounterMetric("c");
+            HistogramMetric histogram = new HistogramMetric("h");
+            destination.accept(counter);
+            destination.accept(histogram);
+            counter.increment(2);
+            histogram.observe(10);
+
+            HttpClient client = HttpClient.newHttpClient();
+            URI uri = URI.create("http://localhost:" + destination.getAddress().getPort() + PrometheusMetricDestination.PATH);
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+            Assert.assertEquals(200, response.statusCode());
+            Assert.assertEquals(CommonMimeTypes.APPLICATION_OPENMETRICS_TEXT, response.headers().firstValue("Content-Type").orElse(null));
+            Assert.assertTrue(response.body().contains("c_total 2\n"));
+
+            MetricSample counterSample = counter.flush();
+            Assert.assertEquals(2, counterSample.getSum());
+            Assert.assertEquals(1, histogram.flush().getCount());
+            // flushes don't reset the exposed cumulative values either
+            counter.increment();
+            Assert.assertTrue(destination.scrape().contains("c_total 3\n"));
+            Assert.assertTrue(destination.scrape().contains("h_count 1\n"));
+        } finally {
+            destination.close();
+        }
+    }
+
+    @Test
+    public void scrape_bucketBoundsComeFromTheLayout() throws IOException {
+        PrometheusMetricDestination destination = new PrometheusMetricDestination(0);
+        try {
+            HistogramMetric linear = new HistogramMetric("linear", 10);
+            HistogramMetric explicit = new HistogramMetric("explicit", BucketLayout.explicit(50, 100, 250));
+            destination.accept(linear);
+            destination.accept(explicit);
+            linear.observe(5);
+            explicit.observe(10);
+            explicit.observe(60);
+            explicit.observe(300);
+
+            String scrape = destination.scrape();
+            // the bound of a bucket doesn't depend on the next populated bucket
+            Assert.assertTrue(scrape.contains("linear_bucket{le=\"9\"} 1\n"));
+            Assert.assertTrue(scrape.contains("explicit_bucket{le=\"49\"} 1\nexplicit_bucket{le=\"99\"} 2\n"));
+            Assert.assertTrue(scrape.contains("explicit_bucket{le=\"+Inf\"} 3\n"));
+            linear.observe(95);
+            Assert.assertTrue(destination.scrape().contains("linear_bucket{le=\"9\"} 1\nlinear_bucket{le=\"99\"} 2\n"));
+        } finally {
+            destination.close();
+        }
+    }
+
+    @Test
+    public void accept_sameSeriesTwice_exposedOnce() throws IOException {
+        PrometheusMetricDestination destination = new PrometheusMetricDestination(0);
+        try {
+            CounterMetric first = new CounterMetric("c", Map.of("a", "1"));
+            CounterMetric second = new CounterMetric("c", Map.of("a", "1"));
+            destination.accept(first);
+            destination.accept(second);
+            first.increment(1);
+            second.increment(2);
+
+            Assert.assertEquals("# TYPE c counter\n"
+                + "c_total{a=\"1\"} 2\n"
+                + "# EOF\n", destination.scrape());
+        } finally {
+            destination.close();
+        }
+    }
+}
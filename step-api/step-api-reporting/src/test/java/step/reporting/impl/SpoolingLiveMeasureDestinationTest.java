@@ -0,0 +1,189 @@
+package step.reporting.impl;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import step.core.reports.Measure;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class SpoolingLiveMeasureDestinationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void setDelegate_replaysSpooledMeasuresInOrder() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("spool");
+        SpoolingLiveMeasureDestination destination = new SpoolingLiveMeasureDestination(directory, 1, 100);
+        try {
+            for (int i = 0; i < 20; i++) {
+                destination.accept(new Measure("m" + i, i, 1000 + i, Map.of()));
+                // every record exceeds the segment size and is written to its own segment
+                int segments = i + 1;
+                waitFor(() -> segmentCount(directory) == segments);
+            }
+
+            RecordingDestination delegate = new RecordingDestination();
+            destination.setDelegate(delegate);
+            waitFor(() -> destination.getPendingCount() == 0);
+            destination.accept(new Measure("live", 1, 2000, Map.of()));
+            waitFor(() -> delegate.measures.size() == 21);
+
+            List<String> expected = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                expected.add("m" + i);
+            }
+            expected.add("live");
+            Assert.assertEquals(expected, delegate.names());
+            Assert.assertEquals(0, destination.getDroppedCount());
+            Assert.assertEquals(0, segmentCount(directory));
+        } finally {
+            destination.close();
+        }
+    }
+
+    @Test
+    public void close_keepsSpooledMeasuresForNextDestination() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("spool");
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("rnStatus", "OK");
+        data.put("size", 42L);
+        data.put("count", 3);
+        data.put("ratio", 0.5);
+        data.put("cached", true);
+        data.put("missing", null);
+        SpoolingLiveMeasureDestination destination = new SpoolingLiveMeasureDestination(directory);
+        destination.accept(new Measure("transaction", 12, 1000, data, Measure.Status.FAILED));
+        destination.close();
+        Assert.assertEquals(1, segmentCount(directory));
+
+        SpoolingLiveMeasureDestination restarted = new SpoolingLiveMeasureDestination(directory);
+        try {
+            Assert.assertEquals(1, restarted.getPendingCount());
+            RecordingDestination delegate = new RecordingDestination();
+            restarted.setDelegate(delegate);
+            waitFor(() -> restarted.getPendingCount() == 0);
+
+            Measure measure = delegate.measures.get(0);
+            Assert.assertEquals("transaction", measure.getName());
+            Assert.assertEquals(12, measure.getDuration());
+            Assert.assertEquals(1000, measure.getBegin());
+            Assert.assertEquals(Measure.Status.FAILED, measure.getStatus());
+            Assert.assertEquals(data, measure.getData());
+        } finally {
+            restarted.close();
+        }
+    }
+
+    @Test
+    public void accept_failingDelegate_spoolsAndRetries() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("spool");
+        SpoolingLiveMeasureDestination destination = new SpoolingLiveMeasureDestination(directory);
+        try {
+            RecordingDestination delegate = new RecordingDestination();
+            delegate.failing = true;
+            destination.setDelegate(delegate);
+            destination.accept(new Measure("first", 1, 1000, Map.of()));
+            destination.accept(new Measure("second", 1, 1001, Map.of()));
+            Assert.assertEquals(2, destination.getPendingCount());
+            Assert.assertTrue(delegate.names().isEmpty());
+
+            delegate.failing = false;
+            waitFor(() -> destination.getPendingCount() == 0);
+            Assert.assertEquals(List.of("first", "second"), delegate.names());
+        } finally {
+            destination.close();
+        }
+    }
+
+    @Test
+    public void accept_deliversOnTheWriterThread() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("spool");
+        SpoolingLiveMeasureDestination destination = new SpoolingLiveMeasureDestination(directory);
+        try {
+            List<Thread> deliveryThreads = Collections.synchronizedList(new ArrayList<>());
+            destination.setDelegate(new LiveMeasureDestination() {
+                @Override
+                public void accept(Measure measure) {
+                    deliveryThreads.add(Thread.currentThread());
+                }
+            });
+            destination.accept(new Measure("m", 1, 1000, Map.of()));
+            waitFor(() -> destination.getPendingCount() == 0);
+
+            Assert.assertEquals(1, deliveryThreads.size());
+            Assert.assertNotSame(Thread.currentThread(), deliveryThreads.get(0));
+            // delivered from memory: nothing was written to disk
+            Assert.assertEquals(0, segmentCount(directory));
+        } finally {
+            destination.close();
+        }
+    }
+
+    @Test
+    public void accept_beyondMaxSpoolBytes_dropped() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("spool");
+        SpoolingLiveMeasureDestination destination = new SpoolingLiveMeasureDestination(directory, 1024, 200, 100);
+        try {
+            for (int i = 0; i < 10; i++) {
+                destination.accept(new Measure("m" + i, i, 1000 + i, Map.of()));
+            }
+            waitFor(() -> destination.getDroppedCount() > 0);
+            try (Stream<Path> files = Files.list(directory)) {
+                Assert.assertTrue(files.mapToLong(path -> path.toFile().length()).sum() <= 200);
+            }
+        } finally {
+            destination.close();
+        }
+    }
+
+    private static long segmentCount(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    static void waitFor(ThrowingCondition condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.test()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail("Condition not met within 10s");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    interface ThrowingCondition {
+        boolean test() throws Exception;
+    }
+
+    private static class RecordingDestination implements LiveMeasureDestination {
+        private final List<Measure> measures = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean failing;
+
+        @Override
+        public void accept(Measure measure) {
+            if (failing) {
+                throw new IllegalStateException("unavailable");
+            }
+            measures.add(measure);
+        }
+
+        private List<String> names() {
+            synchronized (measures) {
+                return measures.stream().map(Measure::getName).collect(Collectors.toList());
+            }
+        }
+    }
+}
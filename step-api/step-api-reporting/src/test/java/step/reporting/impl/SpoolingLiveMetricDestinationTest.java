@@ -0,0 +1,53 @@
+package step.reporting.impl;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import step.core.metrics.CounterMetric;
+import step.core.metrics.MetricSample;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static step.reporting.impl.SpoolingLiveMeasureDestinationTest.waitFor;
+
+public class SpoolingLiveMetricDestinationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void setSink_replaysSpooledSamplesInOrder() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("spool");
+        SpoolingLiveMetricDestination destination = new SpoolingLiveMetricDestination(directory, 1024, 100, 60_000);
+        try {
+            CounterMetric counter = new CounterMetric("requests", Map.of("status", "ok"));
+            destination.accept(counter);
+            counter.increment(3);
+            destination.flush();
+            counter.increment(2);
+            destination.flush();
+            waitFor(() -> destination.getPendingCount() == 2);
+
+            List<MetricSample> received = Collections.synchronizedList(new ArrayList<>());
+            destination.setSink(received::addAll);
+            waitFor(() -> destination.getPendingCount() == 0);
+            counter.increment(4);
+            destination.flush();
+            waitFor(() -> received.size() == 3);
+
+            Assert.assertEquals(3, received.size());
+            Assert.assertEquals("requests", received.get(0).getName());
+            Assert.assertEquals(Map.of("status", "ok"), received.get(0).getLabels());
+            Assert.assertEquals(3, received.get(0).getSum());
+            Assert.assertEquals(2, received.get(1).getSum());
+            Assert.assertEquals(4, received.get(2).getSum());
+        } finally {
+            destination.close();
+        }
+    }
+}